@@ -83,6 +83,97 @@ public class Constants {
      */
     public static final String BCRYPT_WORK_ENV = "DOCS_BCRYPT_WORK";
 
+    /**
+     * Lucene index commit policy environment variables (seconds between commits, operations between commits).
+     */
+    public static final String LUCENE_COMMIT_INTERVAL_ENV = "DOCS_LUCENE_COMMIT_INTERVAL";
+    public static final String LUCENE_COMMIT_MAX_OPERATIONS_ENV = "DOCS_LUCENE_COMMIT_MAX_OPERATIONS";
+
+    /**
+     * Safety margin in seconds when replaying uncommitted index operations at startup.
+     */
+    public static final String LUCENE_REPLAY_MARGIN_ENV = "DOCS_LUCENE_REPLAY_MARGIN";
+
+    /**
+     * Number of threads used to rebuild the index.
+     */
+    public static final String LUCENE_REBUILD_THREADS_ENV = "DOCS_LUCENE_REBUILD_THREADS";
+
+    /**
+     * Number of threads processing the files.
+     */
+    public static final String FILE_PROCESSING_THREADS_ENV = "DOCS_FILE_PROCESSING_THREADS";
+
+    /**
+     * Maximum number of files waiting to be processed for each priority.
+     */
+    public static final String FILE_PROCESSING_QUEUE_SIZE_ENV = "DOCS_FILE_PROCESSING_QUEUE_SIZE";
+
+    /**
+     * Number of threads rendering and OCR-izing the pages of scanned PDFs.
+     */
+    public static final String OCR_PAGE_THREADS_ENV = "DOCS_OCR_PAGE_THREADS";
+
+    /**
+     * Maximum number of tesseract processes running at the same time.
+     */
+    public static final String OCR_MAX_PROCESSES_ENV = "DOCS_OCR_MAX_PROCESSES";
+
+    /**
+     * Time to live of the cached principals in seconds.
+     */
+    public static final String PRINCIPAL_CACHE_TTL_ENV = "DOCS_PRINCIPAL_CACHE_TTL";
+
+    /**
+     * Maximum number of cached principals.
+     */
+    public static final String PRINCIPAL_CACHE_SIZE_ENV = "DOCS_PRINCIPAL_CACHE_SIZE";
+
+    /**
+     * Interval between the writes of the tokens last connection dates in seconds.
+     */
+    public static final String TOKEN_ACTIVITY_FLUSH_INTERVAL_ENV = "DOCS_TOKEN_ACTIVITY_FLUSH_INTERVAL";
+
+    /**
+     * Number of threads sending the webhook deliveries.
+     */
+    public static final String WEBHOOK_THREADS_ENV = "DOCS_WEBHOOK_THREADS";
+
+    /**
+     * Maximum number of batches sent at the same time to a webhook endpoint.
+     */
+    public static final String WEBHOOK_ENDPOINT_CONCURRENCY_ENV = "DOCS_WEBHOOK_ENDPOINT_CONCURRENCY";
+
+    /**
+     * Maximum number of attempts of a webhook delivery.
+     */
+    public static final String WEBHOOK_MAX_ATTEMPTS_ENV = "DOCS_WEBHOOK_MAX_ATTEMPTS";
+
+    /**
+     * Timeout of the webhook calls in seconds.
+     */
+    public static final String WEBHOOK_TIMEOUT_ENV = "DOCS_WEBHOOK_TIMEOUT";
+
+    /**
+     * Maximum size of an uploaded file kept unencrypted for its processing in bytes.
+     */
+    public static final String UPLOAD_SPOOL_SIZE_ENV = "DOCS_UPLOAD_SPOOL_SIZE";
+
+    /**
+     * Maximum size of the temporary files in bytes, new temporary files wait for some space to be freed.
+     */
+    public static final String TEMPORARY_FILES_MAX_SIZE_ENV = "DOCS_TEMPORARY_FILES_MAX_SIZE";
+
+    /**
+     * Age after which a temporary file not released is deleted in hours.
+     */
+    public static final String TEMPORARY_FILES_MAX_AGE_ENV = "DOCS_TEMPORARY_FILES_MAX_AGE";
+
+    /**
+     * Store the files with identical content only once, true to enable.
+     */
+    public static final String FILE_DEDUPLICATION_ENV = "DOCS_FILE_DEDUPLICATION";
+
     /**
      * Expiration time of the password recovery in hours.
      */
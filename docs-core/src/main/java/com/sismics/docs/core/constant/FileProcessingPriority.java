@@ -0,0 +1,23 @@
+package com.sismics.docs.core.constant;
+
+/**
+ * Priority of a file processing, in decreasing order.
+ *
+ * @author bgamard
+ */
+public enum FileProcessingPriority {
+    /**
+     * File uploaded or reprocessed by a user waiting for it.
+     */
+    INTERACTIVE,
+
+    /**
+     * File from a bulk import or a workflow action.
+     */
+    BULK,
+
+    /**
+     * File imported from the inbox.
+     */
+    INBOX
+}
@@ -0,0 +1,28 @@
+package com.sismics.docs.core.constant;
+
+/**
+ * Webhook delivery status.
+ *
+ * @author bgamard
+ */
+public enum WebhookDeliveryStatus {
+    /**
+     * Waiting to be sent, or to be retried.
+     */
+    PENDING,
+
+    /**
+     * Being sent.
+     */
+    SENDING,
+
+    /**
+     * Sent successfully.
+     */
+    SENT,
+
+    /**
+     * Given up after too many attempts.
+     */
+    FAILED
+}
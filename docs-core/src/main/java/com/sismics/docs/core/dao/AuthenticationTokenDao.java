@@ -1,13 +1,19 @@
 package com.sismics.docs.core.dao;
 
 import com.sismics.docs.core.model.jpa.AuthenticationToken;
+import com.sismics.docs.core.util.PrincipalCacheUtil;
 import com.sismics.util.context.ThreadLocalContext;
+import org.hibernate.Session;
 import org.joda.time.DateTime;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.Query;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -54,6 +60,7 @@ public class AuthenticationTokenDao {
         AuthenticationToken authenticationToken = em.find(AuthenticationToken.class, authenticationTokenId);
         if (authenticationToken != null) {
             em.remove(authenticationToken);
+            PrincipalCacheUtil.invalidateToken(authenticationTokenId);
         } else {
             throw new Exception("Token not found: " + authenticationTokenId);
         }
@@ -76,24 +83,27 @@ public class AuthenticationTokenDao {
         q.setParameter("longLasted", false);
         q.setParameter("minDate", DateTime.now().minusDays(1).toDate());
         q.executeUpdate();
+        PrincipalCacheUtil.invalidateUser(userId);
     }
 
     /**
-     * Deletes old short lived tokens.
+     * Updates the last connection date of several tokens in one batch.
      *
-     * @param id Token id
-     * @throws Exception
+     * @param dateMap Last connection date by token ID
      */
-    public void updateLastConnectionDate(String id) {
-        StringBuilder sb = new StringBuilder("update T_AUTHENTICATION_TOKEN ato ");
-        sb.append(" set AUT_LASTCONNECTIONDATE_D = :currentDate ");
-        sb.append(" where ato.AUT_ID_C = :id");
-
+    public void updateLastConnectionDate(Map<String, Date> dateMap) {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
-        Query q = em.createNativeQuery(sb.toString());
-        q.setParameter("currentDate", new Date());
-        q.setParameter("id", id);
-        q.executeUpdate();
+        em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "update T_AUTHENTICATION_TOKEN set AUT_LASTCONNECTIONDATE_D = ? where AUT_ID_C = ?")) {
+                for (Map.Entry<String, Date> entry : dateMap.entrySet()) {
+                    ps.setTimestamp(1, new Timestamp(entry.getValue().getTime()));
+                    ps.setString(2, entry.getKey());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        });
     }
     
     /**
@@ -121,5 +131,7 @@ public class AuthenticationTokenDao {
         q.setParameter("userId", userId);
         q.setParameter("id", id);
         q.executeUpdate();
+        ThreadLocalContext.get().clearEntityManager();
+        PrincipalCacheUtil.invalidateUser(userId);
     }
 }
@@ -45,16 +45,52 @@ public class DocumentDao {
     }
     
     /**
-     * Returns the list of all active documents.
+     * Returns the IDs of the active documents following an ID, in ID order.
      *
-     * @param offset Offset
+     * @param lastId Last ID returned, null to start from the beginning
      * @param limit Limit
+     * @return List of document IDs
+     */
+    public List<String> findIdsAfter(String lastId, int limit) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<String> q = em.createQuery("select d.id from Document d where d.deleteDate is null"
+                + (lastId == null ? "" : " and d.id > :lastId") + " order by d.id", String.class);
+        if (lastId != null) {
+            q.setParameter("lastId", lastId);
+        }
+        q.setMaxResults(limit);
+        return q.getResultList();
+    }
+
+    /**
+     * Returns a list of active documents.
+     *
+     * @param ids Document IDs
      * @return List of documents
      */
-    public List<Document> findAll(int offset, int limit) {
+    public List<Document> getDocuments(List<String> ids) {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
-        TypedQuery<Document> q = em.createQuery("select d from Document d where d.deleteDate is null", Document.class);
-        q.setFirstResult(offset);
+        TypedQuery<Document> q = em.createQuery("select d from Document d where d.id in :ids and d.deleteDate is null", Document.class);
+        q.setParameter("ids", ids);
+        return q.getResultList();
+    }
+
+    /**
+     * Returns a page of the documents updated or deleted since a date, in ID order.
+     *
+     * @param since Date
+     * @param lastId Last ID of the previous page, null for the first page
+     * @param limit Page size
+     * @return List of documents, including deleted ones
+     */
+    public List<Document> findModifiedSince(Date since, String lastId, int limit) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<Document> q = em.createQuery("select d from Document d where (d.updateDate >= :since or d.deleteDate >= :since)"
+                + (lastId == null ? "" : " and d.id > :lastId") + " order by d.id", Document.class);
+        q.setParameter("since", since);
+        if (lastId != null) {
+            q.setParameter("lastId", lastId);
+        }
         q.setMaxResults(limit);
         return q.getResultList();
     }
@@ -166,6 +202,7 @@ public class DocumentDao {
         q.setParameter("documentId", id);
         q.setParameter("dateNow", dateNow);
         q.executeUpdate();
+        ThreadLocalContext.get().clearEntityManager();
         
         // Create audit log
         AuditLogUtil.create(documentDb, AuditLogType.DELETE, userId);
@@ -179,13 +216,11 @@ public class DocumentDao {
      */
     public Document getById(String id) {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
-        TypedQuery<Document> q = em.createQuery("select d from Document d where d.id = :id and d.deleteDate is null", Document.class);
-        q.setParameter("id", id);
-        try {
-            return q.getSingleResult();
-        } catch (NoResultException e) {
+        Document document = em.find(Document.class, id);
+        if (document == null || document.getDeleteDate() != null) {
             return null;
         }
+        return document;
     }
     
     /**
@@ -196,12 +231,8 @@ public class DocumentDao {
      * @return Updated document
      */
     public Document update(Document document, String userId) {
-        EntityManager em = ThreadLocalContext.get().getEntityManager();
-
-        // Get the document
-        TypedQuery<Document> q = em.createQuery("select d from Document d where d.id = :id and d.deleteDate is null", Document.class);
-        q.setParameter("id", document.getId());
-        Document documentDb = q.getSingleResult();
+        // Get the document, usually already loaded in this unit of work
+        Document documentDb = getById(document.getId());
 
         // Update the document
         documentDb.setTitle(document.getTitle());
@@ -237,6 +268,7 @@ public class DocumentDao {
         query.setParameter("fileId", document.getFileId());
         query.setParameter("id", document.getId());
         query.executeUpdate();
+        ThreadLocalContext.get().clearEntityManager();
     }
 
     /**
@@ -1,7 +1,9 @@
 package com.sismics.docs.core.dao;
 
+import com.google.common.collect.Iterables;
 import com.sismics.docs.core.constant.AuditLogType;
 import com.sismics.docs.core.model.jpa.File;
+import com.sismics.docs.core.model.jpa.FileContent;
 import com.sismics.docs.core.util.AuditLogUtil;
 import com.sismics.util.context.ThreadLocalContext;
 import jakarta.persistence.EntityManager;
@@ -22,6 +24,11 @@ import java.util.UUID;
  * @author bgamard
  */
 public class FileDao {
+    /**
+     * Maximum number of files which content is loaded by a single query.
+     */
+    private static final int CONTENT_BATCH_SIZE = 500;
+
     /**
      * Creates a new file.
      * 
@@ -35,7 +42,9 @@ public class FileDao {
         
         // Create the file
         EntityManager em = ThreadLocalContext.get().getEntityManager();
-        file.setCreateDate(new Date());
+        Date dateNow = new Date();
+        file.setCreateDate(dateNow);
+        file.setUpdateDate(dateNow);
         em.persist(file);
         
         // Create audit log
@@ -59,6 +68,55 @@ public class FileDao {
         return q.getResultList();
     }
     
+    /**
+     * Returns the IDs of the active files following an ID, in ID order.
+     *
+     * @param lastId Last ID returned, null to start from the beginning
+     * @param limit Limit
+     * @return List of file IDs
+     */
+    public List<String> findIdsAfter(String lastId, int limit) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<String> q = em.createQuery("select f.id from File f where f.deleteDate is null"
+                + (lastId == null ? "" : " and f.id > :lastId") + " order by f.id", String.class);
+        if (lastId != null) {
+            q.setParameter("lastId", lastId);
+        }
+        q.setMaxResults(limit);
+        return q.getResultList();
+    }
+
+    /**
+     * Returns the number of active files.
+     *
+     * @return Number of files
+     */
+    public long getFileCount() {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query query = em.createNativeQuery("select count(f.FIL_ID_C) from T_FILE f where f.FIL_DELETEDATE_D is null");
+        return ((Number) query.getSingleResult()).longValue();
+    }
+
+    /**
+     * Returns a page of the files created, updated or deleted since a date, in ID order.
+     *
+     * @param since Date
+     * @param lastId Last ID of the previous page, null for the first page
+     * @param limit Page size
+     * @return List of files, including deleted ones
+     */
+    public List<File> findModifiedSince(Date since, String lastId, int limit) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<File> q = em.createQuery("select f from File f where (f.createDate >= :since or f.updateDate >= :since or f.deleteDate >= :since)"
+                + (lastId == null ? "" : " and f.id > :lastId") + " order by f.id", File.class);
+        q.setParameter("since", since);
+        if (lastId != null) {
+            q.setParameter("lastId", lastId);
+        }
+        q.setMaxResults(limit);
+        return q.getResultList();
+    }
+
     /**
      * Returns the list of all files from a user.
      * 
@@ -148,26 +206,77 @@ public class FileDao {
      * @return Updated file
      */
     public File update(File file) {
-        EntityManager em = ThreadLocalContext.get().getEntityManager();
-        
-        // Get the file
-        TypedQuery<File> q = em.createQuery("select f from File f where f.id = :id and f.deleteDate is null", File.class);
-        q.setParameter("id", file.getId());
-        File fileDb = q.getSingleResult();
+        // Get the file, usually already loaded in this unit of work
+        File fileDb = getActiveById(file.getId());
 
         // Update the file
         fileDb.setDocumentId(file.getDocumentId());
         fileDb.setName(file.getName());
-        fileDb.setContent(file.getContent());
         fileDb.setOrder(file.getOrder());
         fileDb.setMimeType(file.getMimeType());
         fileDb.setVersionId(file.getVersionId());
         fileDb.setLatestVersion(file.isLatestVersion());
         fileDb.setSize(file.getSize());
+        fileDb.setHash(file.getHash());
+        fileDb.setUpdateDate(new Date());
 
         return file;
     }
 
+    /**
+     * Returns the content extracted from a file.
+     *
+     * @param id File ID
+     * @return Content or null
+     */
+    public String getContent(String id) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        FileContent fileContent = em.find(FileContent.class, id);
+        return fileContent == null ? null : fileContent.getContent();
+    }
+
+    /**
+     * Load the extracted content into files.
+     *
+     * @param fileList Files
+     * @return Files
+     */
+    public List<File> loadContent(List<File> fileList) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Map<String, File> fileMap = new HashMap<>();
+        for (File file : fileList) {
+            fileMap.put(file.getId(), file);
+        }
+        for (List<String> ids : Iterables.partition(fileMap.keySet(), CONTENT_BATCH_SIZE)) {
+            TypedQuery<Object[]> q = em.createQuery("select c.fileId, c.content from FileContent c where c.fileId in :ids", Object[].class);
+            q.setParameter("ids", ids);
+            for (Object[] o : q.getResultList()) {
+                fileMap.get((String) o[0]).setContent((String) o[1]);
+            }
+        }
+        return fileList;
+    }
+
+    /**
+     * Update the content extracted from a file.
+     *
+     * @param id File ID
+     * @param content Content, can be null
+     */
+    public void updateContent(String id, String content) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        FileContent fileContent = em.find(FileContent.class, id);
+        if (fileContent == null) {
+            if (content != null) {
+                em.persist(new FileContent().setFileId(id).setContent(content));
+            }
+        } else if (content == null) {
+            em.remove(fileContent);
+        } else {
+            fileContent.setContent(content);
+        }
+    }
+
     /**
      * Gets a file by its ID.
      * 
@@ -176,13 +285,11 @@ public class FileDao {
      */
     public File getActiveById(String id) {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
-        TypedQuery<File> q = em.createQuery("select f from File f where f.id = :id and f.deleteDate is null", File.class);
-        q.setParameter("id", id);
-        try {
-            return q.getSingleResult();
-        } catch (NoResultException e) {
+        File file = em.find(File.class, id);
+        if (file == null || file.getDeleteDate() != null) {
             return null;
         }
+        return file;
     }
     
     /**
@@ -247,6 +354,25 @@ public class FileDao {
         return q.getResultList();
     }
 
+    /**
+     * Returns the oldest active file of a user with the same content than a file.
+     *
+     * @param userId User ID
+     * @param hash Content hash
+     * @param excludedId ID of the file looking for a duplicate
+     * @return Duplicate file or null
+     */
+    public File getDuplicate(String userId, String hash, String excludedId) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<File> q = em.createQuery("select f from File f where f.userId = :userId and f.hash = :hash and f.id != :id and f.deleteDate is null order by f.createDate asc", File.class);
+        q.setParameter("userId", userId);
+        q.setParameter("hash", hash);
+        q.setParameter("id", excludedId);
+        q.setMaxResults(1);
+        List<File> fileList = q.getResultList();
+        return fileList.isEmpty() ? null : fileList.get(0);
+    }
+
     public List<File> getFilesWithUnknownSize(int limit) {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         TypedQuery<File> q = em.createQuery("select f from File f where f.size = :size and f.deleteDate is null order by f.order asc", File.class);
@@ -7,10 +7,12 @@ import com.sismics.docs.core.dao.dto.GroupDto;
 import com.sismics.docs.core.model.jpa.Group;
 import com.sismics.docs.core.model.jpa.UserGroup;
 import com.sismics.docs.core.util.AuditLogUtil;
+import com.sismics.docs.core.util.PrincipalCacheUtil;
 import com.sismics.docs.core.util.jpa.QueryParam;
 import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.docs.core.util.jpa.SortCriteria;
 import com.sismics.util.context.ThreadLocalContext;
+import org.hibernate.jpa.HibernateHints;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
@@ -32,6 +34,7 @@ public class GroupDao {
     public Group getActiveByName(String name) {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         Query q = em.createQuery("select g from Group g where g.name = :name and g.deleteDate is null");
+        q.setHint(HibernateHints.HINT_CACHEABLE, true);
         q.setParameter("name", name);
         try {
             return (Group) q.getSingleResult();
@@ -49,6 +52,7 @@ public class GroupDao {
     public Group getActiveById(String id) {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         Query q = em.createQuery("select g from Group g where g.id = :id and g.deleteDate is null");
+        q.setHint(HibernateHints.HINT_CACHEABLE, true);
         q.setParameter("id", id);
         try {
             return (Group) q.getSingleResult();
@@ -110,6 +114,8 @@ public class GroupDao {
         q = em.createQuery("update Group g set g.parentId = null where g.parentId = :groupId and g.deleteDate is null");
         q.setParameter("groupId", groupDb.getId());
         q.executeUpdate();
+        ThreadLocalContext.get().clearEntityManager();
+        PrincipalCacheUtil.invalidateAll();
 
         // Create audit log
         AuditLogUtil.create(groupDb, AuditLogType.DELETE, userId);
@@ -128,6 +134,7 @@ public class GroupDao {
         // Create the user group
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         em.persist(userGroup);
+        PrincipalCacheUtil.invalidateUser(userGroup.getUserId());
         
         return userGroup.getId();
     }
@@ -150,6 +157,7 @@ public class GroupDao {
         // Delete the user group
         Date dateNow = new Date();
         userGroupDb.setDeleteDate(dateNow);
+        PrincipalCacheUtil.invalidateUser(userId);
     }
     
     /**
@@ -211,10 +219,14 @@ public class GroupDao {
         
         // Post-query filtering for recursive groups
         if (criteria.getUserId() != null && criteria.isRecursive()) {
+            Map<String, GroupDto> groupDtoMap = new HashMap<>();
+            for (GroupDto groupDto : groupDtoList) {
+                groupDtoMap.put(groupDto.getId(), groupDto);
+            }
             Set<GroupDto> filteredGroupDtoSet = new HashSet<>();
             for (GroupDto userGroupDto : userGroupDtoList) {
                 filteredGroupDtoSet.add(userGroupDto); // Direct group
-                findGroupParentHierarchy(filteredGroupDtoSet, groupDtoList, userGroupDto, 0); // Indirect groups
+                findGroupParentHierarchy(filteredGroupDtoSet, groupDtoMap, userGroupDto); // Indirect groups
             }
             groupDtoList = new ArrayList<>(filteredGroupDtoSet);
         }
@@ -223,23 +235,20 @@ public class GroupDao {
     }
     
     /**
-     * Recursively search group's parents.
+     * Search group's parents.
      * 
      * @param parentGroupDtoSet Resulting parents
-     * @param groupDtoList All groups
+     * @param groupDtoMap All groups by ID
      * @param userGroupDto Reference group to search from
-     * @param depth Depth
      */
-    private void findGroupParentHierarchy(Set<GroupDto> parentGroupDtoSet, List<GroupDto> groupDtoList, GroupDto userGroupDto, int depth) {
-        if (userGroupDto.getParentId() == null || depth == 10) { // Max depth 10 to avoid infinite loop
-            return;
-        }
-        
-        for (GroupDto groupDto : groupDtoList) {
-            if (groupDto.getId().equals(userGroupDto.getParentId())) {
-                parentGroupDtoSet.add(groupDto); // Add parent
-                findGroupParentHierarchy(parentGroupDtoSet, groupDtoList, groupDto, depth + 1); // Find parent's parents
+    private void findGroupParentHierarchy(Set<GroupDto> parentGroupDtoSet, Map<String, GroupDto> groupDtoMap, GroupDto userGroupDto) {
+        GroupDto groupDto = userGroupDto;
+        for (int depth = 0; depth < 10; depth++) { // Max depth 10 to avoid infinite loop
+            groupDto = groupDto.getParentId() == null ? null : groupDtoMap.get(groupDto.getParentId());
+            if (groupDto == null) {
+                return;
             }
+            parentGroupDtoSet.add(groupDto); // Add parent
         }
     }
     
@@ -261,6 +270,7 @@ public class GroupDao {
         // Update the group
         groupDb.setName(group.getName());
         groupDb.setParentId(group.getParentId());
+        PrincipalCacheUtil.invalidateAll();
         
         // Create audit log
         AuditLogUtil.create(groupDb, AuditLogType.UPDATE, userId);
@@ -11,6 +11,7 @@ import com.sismics.docs.core.util.jpa.QueryParam;
 import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.docs.core.util.jpa.SortCriteria;
 import com.sismics.util.context.ThreadLocalContext;
+import org.hibernate.jpa.HibernateHints;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
@@ -78,6 +79,7 @@ public class MetadataDao {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         try {
             Query q = em.createQuery("select r from Metadata r where r.id = :id and r.deleteDate is null");
+            q.setHint(HibernateHints.HINT_CACHEABLE, true);
             q.setParameter("id", id);
             return (Metadata) q.getSingleResult();
         } catch (NoResultException e) {
@@ -64,5 +64,6 @@ public class PasswordRecoveryDao {
         q.setParameter("deleteDate", new Date());
         q.setParameter("createDateMin", new DateTime().withFieldAdded(DurationFieldType.hours(), -1 * Constants.PASSWORD_RECOVERY_EXPIRATION_HOUR).toDate());
         q.executeUpdate();
+        ThreadLocalContext.get().clearEntityManager();
     }
 }
@@ -11,6 +11,7 @@ import com.sismics.docs.core.util.jpa.QueryParam;
 import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.docs.core.util.jpa.SortCriteria;
 import com.sismics.util.context.ThreadLocalContext;
+import org.hibernate.jpa.HibernateHints;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
@@ -81,6 +82,7 @@ public class RouteModelDao {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         try {
             Query q = em.createQuery("select r from RouteModel r where r.id = :id and r.deleteDate is null");
+            q.setHint(HibernateHints.HINT_CACHEABLE, true);
             q.setParameter("id", id);
             return (RouteModel) q.getSingleResult();
         } catch (NoResultException e) {
@@ -97,6 +99,7 @@ public class RouteModelDao {
     public List<RouteModel> findAll() {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         Query q = em.createQuery("select r from RouteModel r where r.deleteDate is null");
+        q.setHint(HibernateHints.HINT_CACHEABLE, true);
         return q.getResultList();
     }
 
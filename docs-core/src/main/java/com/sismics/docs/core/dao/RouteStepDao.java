@@ -150,5 +150,6 @@ public class RouteStepDao {
         q.setParameter("validatorUserId", validatorUserId);
         q.setParameter("id", id);
         q.executeUpdate();
+        ThreadLocalContext.get().clearEntityManager();
     }
 }
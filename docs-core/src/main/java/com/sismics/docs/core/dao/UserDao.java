@@ -14,6 +14,7 @@ import com.sismics.docs.core.dao.dto.UserDto;
 import com.sismics.docs.core.model.jpa.User;
 import com.sismics.docs.core.util.AuditLogUtil;
 import com.sismics.docs.core.util.EncryptionUtil;
+import com.sismics.docs.core.util.PrincipalCacheUtil;
 import com.sismics.docs.core.util.jpa.QueryParam;
 import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.docs.core.util.jpa.SortCriteria;
@@ -22,6 +23,7 @@ import com.sismics.util.context.ThreadLocalContext;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
 import java.sql.Timestamp;
 import java.util.*;
 
@@ -114,6 +116,7 @@ public class UserDao {
         userDb.setStorageCurrent(user.getStorageCurrent());
         userDb.setTotpKey(user.getTotpKey());
         userDb.setDisableDate(user.getDisableDate());
+        PrincipalCacheUtil.invalidateUser(userDb.getId());
 
         // Create audit log
         AuditLogUtil.create(userDb, AuditLogType.UPDATE, userId);
@@ -217,6 +220,19 @@ public class UserDao {
         }
     }
     
+    /**
+     * Gets a list of users by their IDs.
+     *
+     * @param ids User IDs
+     * @return List of users, including deleted ones
+     */
+    public List<User> getUsers(Collection<String> ids) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<User> q = em.createQuery("select u from User u where u.id in :ids", User.class);
+        q.setParameter("ids", ids);
+        return q.getResultList();
+    }
+
     /**
      * Gets an active user by its username.
      * 
@@ -251,6 +267,7 @@ public class UserDao {
         // Delete the user
         Date dateNow = new Date();
         userDb.setDeleteDate(dateNow);
+        EncryptionUtil.invalidateSecretKey(userDb.getPrivateKey());
 
         // Delete linked data
         q = em.createQuery("delete from AuthenticationToken at where at.userId = :userId");
@@ -276,6 +293,8 @@ public class UserDao {
         q.setParameter("userId", userDb.getId());
         q.setParameter("dateNow", dateNow);
         q.executeUpdate();
+        ThreadLocalContext.get().clearEntityManager();
+        PrincipalCacheUtil.invalidateUser(userDb.getId());
         
         // Create audit log
         AuditLogUtil.create(userDb, AuditLogType.DELETE, userId);
@@ -0,0 +1,170 @@
+package com.sismics.docs.core.dao;
+
+import com.sismics.docs.core.constant.WebhookDeliveryStatus;
+import com.sismics.docs.core.dao.dto.WebhookDeliveryDto;
+import com.sismics.docs.core.model.jpa.WebhookDelivery;
+import com.sismics.util.context.ThreadLocalContext;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import java.util.*;
+
+/**
+ * Webhook delivery DAO.
+ * 
+ * @author bgamard
+ */
+public class WebhookDeliveryDao {
+    /**
+     * Creates a new delivery.
+     *
+     * @param webhookDelivery Webhook delivery
+     * @return New ID
+     */
+    public String create(WebhookDelivery webhookDelivery) {
+        // Create the UUID
+        webhookDelivery.setId(UUID.randomUUID().toString());
+
+        // Create the delivery
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        webhookDelivery.setCreateDate(new Date());
+        em.persist(webhookDelivery);
+
+        return webhookDelivery.getId();
+    }
+
+    /**
+     * Returns a delivery by ID.
+     *
+     * @param id Delivery ID
+     * @return Webhook delivery
+     */
+    public WebhookDelivery getById(String id) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        return em.find(WebhookDelivery.class, id);
+    }
+
+    /**
+     * Returns the URLs of the endpoints having pending deliveries due now, of the active webhooks.
+     *
+     * @return List of URLs
+     */
+    public List<String> findDueUrls() {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createNativeQuery("select distinct w.WHK_URL_C from T_WEBHOOK_DELIVERY d " +
+                " join T_WEBHOOK w on w.WHK_ID_C = d.WHD_IDWEBHOOK_C and w.WHK_DELETEDATE_D is null " +
+                " where d.WHD_STATUS_C = :status and d.WHD_NEXTATTEMPTDATE_D <= :now ");
+        q.setParameter("status", WebhookDeliveryStatus.PENDING.name());
+        q.setParameter("now", new Date());
+        @SuppressWarnings("unchecked")
+        List<String> l = q.getResultList();
+        return l;
+    }
+
+    /**
+     * Returns the pending deliveries due now, of the active webhooks, oldest first.
+     *
+     * @param url Endpoint URL, null for all the endpoints
+     * @param limit Maximum number of deliveries
+     * @return List of deliveries
+     */
+    public List<WebhookDeliveryDto> findDue(String url, int limit) {
+        StringBuilder sb = new StringBuilder("select d.WHD_ID_C, w.WHK_URL_C, d.WHD_EVENT_C, d.WHD_ENTITYID_C, d.WHD_ATTEMPTS_N ");
+        sb.append(" from T_WEBHOOK_DELIVERY d ");
+        sb.append(" join T_WEBHOOK w on w.WHK_ID_C = d.WHD_IDWEBHOOK_C and w.WHK_DELETEDATE_D is null ");
+        sb.append(" where d.WHD_STATUS_C = :status and d.WHD_NEXTATTEMPTDATE_D <= :now ");
+        if (url != null) {
+            sb.append(" and w.WHK_URL_C = :url ");
+        }
+        sb.append(" order by d.WHD_CREATEDATE_D asc ");
+
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createNativeQuery(sb.toString());
+        q.setParameter("status", WebhookDeliveryStatus.PENDING.name());
+        q.setParameter("now", new Date());
+        if (url != null) {
+            q.setParameter("url", url);
+        }
+        q.setMaxResults(limit);
+        @SuppressWarnings("unchecked")
+        List<Object[]> l = q.getResultList();
+
+        // Assemble results
+        List<WebhookDeliveryDto> webhookDeliveryDtoList = new ArrayList<>();
+        for (Object[] o : l) {
+            int i = 0;
+            webhookDeliveryDtoList.add(new WebhookDeliveryDto()
+                    .setId((String) o[i++])
+                    .setUrl((String) o[i++])
+                    .setEvent((String) o[i++])
+                    .setEntityId((String) o[i++])
+                    .setAttemptCount(((Number) o[i]).intValue()));
+        }
+        return webhookDeliveryDtoList;
+    }
+
+    /**
+     * Claims a pending delivery to send it.
+     *
+     * @param id Delivery ID
+     * @return True if the delivery has been claimed, false if it is not pending anymore
+     */
+    public boolean claim(String id) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("update WebhookDelivery d set d.status = :sending where d.id = :id and d.status = :pending");
+        q.setParameter("sending", WebhookDeliveryStatus.SENDING);
+        q.setParameter("pending", WebhookDeliveryStatus.PENDING);
+        q.setParameter("id", id);
+        return q.executeUpdate() == 1;
+    }
+
+    /**
+     * Puts back the deliveries interrupted while being sent.
+     */
+    public void resetSending() {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("update WebhookDelivery d set d.status = :pending where d.status = :sending");
+        q.setParameter("sending", WebhookDeliveryStatus.SENDING);
+        q.setParameter("pending", WebhookDeliveryStatus.PENDING);
+        q.executeUpdate();
+        ThreadLocalContext.get().clearEntityManager();
+    }
+
+    /**
+     * Deletes the deliveries finished before a date, and the deliveries of deleted webhooks.
+     *
+     * @param date Date
+     */
+    public void deleteFinishedBefore(Date date) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("delete WebhookDelivery d where d.status in (:statusList) and d.createDate < :date");
+        q.setParameter("statusList", Arrays.asList(WebhookDeliveryStatus.SENT, WebhookDeliveryStatus.FAILED));
+        q.setParameter("date", date);
+        q.executeUpdate();
+
+        q = em.createQuery("delete WebhookDelivery d where d.webhookId in (select w.id from Webhook w where w.deleteDate is not null)");
+        q.executeUpdate();
+        ThreadLocalContext.get().clearEntityManager();
+    }
+
+    /**
+     * Returns the number of deliveries by status.
+     *
+     * @return Number of deliveries by status
+     */
+    public Map<WebhookDeliveryStatus, Long> countByStatus() {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("select d.status, count(d) from WebhookDelivery d group by d.status");
+        @SuppressWarnings("unchecked")
+        List<Object[]> l = q.getResultList();
+
+        Map<WebhookDeliveryStatus, Long> countMap = new EnumMap<>(WebhookDeliveryStatus.class);
+        for (WebhookDeliveryStatus status : WebhookDeliveryStatus.values()) {
+            countMap.put(status, 0L);
+        }
+        for (Object[] o : l) {
+            countMap.put((WebhookDeliveryStatus) o[0], (Long) o[1]);
+        }
+        return countMap;
+    }
+}
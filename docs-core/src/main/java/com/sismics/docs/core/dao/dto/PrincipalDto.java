@@ -0,0 +1,96 @@
+package com.sismics.docs.core.dao.dto;
+
+import com.sismics.docs.core.model.jpa.AuthenticationToken;
+
+import java.util.Set;
+
+/**
+ * Resolved principal of an authenticated user.
+ *
+ * @author bgamard
+ */
+public class PrincipalDto {
+    /**
+     * Authentication token, null if not authenticated by token.
+     */
+    private AuthenticationToken authenticationToken;
+
+    /**
+     * User ID.
+     */
+    private String userId;
+
+    /**
+     * Username.
+     */
+    private String username;
+
+    /**
+     * Email.
+     */
+    private String email;
+
+    /**
+     * Groups of the user, direct and inherited.
+     */
+    private Set<String> groupIdSet;
+
+    /**
+     * Base functions of the user and its groups.
+     */
+    private Set<String> baseFunctionSet;
+
+    public AuthenticationToken getAuthenticationToken() {
+        return authenticationToken;
+    }
+
+    public PrincipalDto setAuthenticationToken(AuthenticationToken authenticationToken) {
+        this.authenticationToken = authenticationToken;
+        return this;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public PrincipalDto setUserId(String userId) {
+        this.userId = userId;
+        return this;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public PrincipalDto setUsername(String username) {
+        this.username = username;
+        return this;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public PrincipalDto setEmail(String email) {
+        this.email = email;
+        return this;
+    }
+
+    public Set<String> getGroupIdSet() {
+        return groupIdSet;
+    }
+
+    public PrincipalDto setGroupIdSet(Set<String> groupIdSet) {
+        this.groupIdSet = groupIdSet;
+        return this;
+    }
+
+    public Set<String> getBaseFunctionSet() {
+        return baseFunctionSet;
+    }
+
+    public PrincipalDto setBaseFunctionSet(Set<String> baseFunctionSet) {
+        this.baseFunctionSet = baseFunctionSet;
+        return this;
+    }
+}
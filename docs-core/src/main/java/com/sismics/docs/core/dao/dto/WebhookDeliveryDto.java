@@ -0,0 +1,78 @@
+package com.sismics.docs.core.dao.dto;
+
+/**
+ * Webhook delivery DTO.
+ *
+ * @author bgamard
+ */
+public class WebhookDeliveryDto {
+    /**
+     * Delivery ID.
+     */
+    private String id;
+
+    /**
+     * Webhook URL.
+     */
+    private String url;
+
+    /**
+     * Event.
+     */
+    private String event;
+
+    /**
+     * ID of the document or file concerned by the event.
+     */
+    private String entityId;
+
+    /**
+     * Number of failed attempts.
+     */
+    private int attemptCount;
+
+    public String getId() {
+        return id;
+    }
+
+    public WebhookDeliveryDto setId(String id) {
+        this.id = id;
+        return this;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public WebhookDeliveryDto setUrl(String url) {
+        this.url = url;
+        return this;
+    }
+
+    public String getEvent() {
+        return event;
+    }
+
+    public WebhookDeliveryDto setEvent(String event) {
+        this.event = event;
+        return this;
+    }
+
+    public String getEntityId() {
+        return entityId;
+    }
+
+    public WebhookDeliveryDto setEntityId(String entityId) {
+        this.entityId = entityId;
+        return this;
+    }
+
+    public int getAttemptCount() {
+        return attemptCount;
+    }
+
+    public WebhookDeliveryDto setAttemptCount(int attemptCount) {
+        this.attemptCount = attemptCount;
+        return this;
+    }
+}
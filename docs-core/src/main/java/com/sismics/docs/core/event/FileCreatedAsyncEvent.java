@@ -6,4 +6,17 @@ package com.sismics.docs.core.event;
  * @author bgamard
  */
 public class FileCreatedAsyncEvent extends FileEvent {
-}
\ No newline at end of file
+    /**
+     * True if the processing results of an identical file have been reused, only the indexing is left.
+     */
+    private boolean processed;
+
+    public boolean isProcessed() {
+        return processed;
+    }
+
+    public FileCreatedAsyncEvent setProcessed(boolean processed) {
+        this.processed = processed;
+        return this;
+    }
+}
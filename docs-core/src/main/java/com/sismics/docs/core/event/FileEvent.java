@@ -1,8 +1,8 @@
 package com.sismics.docs.core.event;
 
 import com.google.common.base.MoreObjects;
-
-import java.nio.file.Path;
+import com.sismics.docs.core.constant.FileProcessingPriority;
+import com.sismics.docs.core.util.TemporaryFile;
 
 /**
  * New file event.
@@ -21,9 +21,14 @@ public abstract class FileEvent extends UserEvent {
     private String language;
     
     /**
-     * Unencrypted original file.
+     * Unencrypted original file, released by the file processing.
      */
-    private Path unencryptedFile;
+    private TemporaryFile unencryptedFile;
+
+    /**
+     * Priority of the file processing.
+     */
+    private FileProcessingPriority priority = FileProcessingPriority.INTERACTIVE;
 
     public String getFileId() {
         return fileId;
@@ -41,20 +46,30 @@ public abstract class FileEvent extends UserEvent {
         this.language = language;
     }
 
-    public Path getUnencryptedFile() {
+    public TemporaryFile getUnencryptedFile() {
         return unencryptedFile;
     }
 
-    public FileEvent setUnencryptedFile(Path unencryptedFile) {
+    public FileEvent setUnencryptedFile(TemporaryFile unencryptedFile) {
         this.unencryptedFile = unencryptedFile;
         return this;
     }
 
+    public FileProcessingPriority getPriority() {
+        return priority;
+    }
+
+    public FileEvent setPriority(FileProcessingPriority priority) {
+        this.priority = priority;
+        return this;
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
             .add("fileId", fileId)
             .add("language", language)
+            .add("priority", priority)
             .toString();
     }
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.sismics.docs.core.event;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Principals invalidated event, fired after the transaction which changed them.
+ *
+ * @author bgamard
+ */
+public class PrincipalInvalidatedAsyncEvent {
+    /**
+     * User ID, null to invalidate the principals of all users.
+     */
+    private String userId;
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public PrincipalInvalidatedAsyncEvent setUserId(String userId) {
+        this.userId = userId;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("userId", userId)
+                .toString();
+    }
+}
@@ -13,9 +13,11 @@ import com.sismics.docs.core.model.jpa.User;
 import com.sismics.docs.core.util.DirectoryUtil;
 import com.sismics.docs.core.util.EncryptionUtil;
 import com.sismics.docs.core.util.FileUtil;
+import com.sismics.docs.core.util.TemporaryFile;
 import com.sismics.docs.core.util.TransactionUtil;
 import com.sismics.docs.core.util.format.FormatHandler;
 import com.sismics.docs.core.util.format.FormatHandlerUtil;
+import com.sismics.docs.core.util.format.FormatSession;
 import com.sismics.util.ImageUtil;
 import com.sismics.util.Scalr;
 import org.slf4j.Logger;
@@ -27,6 +29,7 @@ import java.awt.image.BufferedImage;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.text.MessageFormat;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -53,7 +56,20 @@ public class FileProcessingAsyncListener {
             log.info("File created event: " + event.toString());
         }
 
-        processFile(event, true);
+        if (event.isProcessed()) {
+            // The processing results of an identical file have been reused
+            TransactionUtil.handle(() -> {
+                FileDao fileDao = new FileDao();
+                File file = fileDao.getActiveById(event.getFileId());
+                if (file != null) {
+                    file.setContent(fileDao.getContent(file.getId()));
+                    AppContext.getInstance().getIndexingHandler().createFile(file);
+                }
+            });
+            return;
+        }
+
+        AppContext.getInstance().getFileProcessingService().submit(event.getPriority(), () -> processFile(event, true));
     }
 
     /**
@@ -66,11 +82,11 @@ public class FileProcessingAsyncListener {
     public void on(final FileUpdatedAsyncEvent event) {
         log.info("File updated event: " + event.toString());
 
-        processFile(event, false);
+        AppContext.getInstance().getFileProcessingService().submit(event.getPriority(), () -> processFile(event, false));
     }
 
     /**
-     * Process a file :
+     * Process a file, on the file processing threads :
      * Generate thumbnails
      * Extract and save text content
      *
@@ -78,6 +94,24 @@ public class FileProcessingAsyncListener {
      * @param isFileCreated True if the file was just created
      */
     private void processFile(FileEvent event, boolean isFileCreated) {
+        try {
+            processFile(event, isFileCreated, event.getUnencryptedFile());
+        } finally {
+            // Release the unencrypted file whatever happens
+            if (event.getUnencryptedFile() != null) {
+                event.getUnencryptedFile().close();
+            }
+        }
+    }
+
+    /**
+     * Process a file.
+     *
+     * @param event File event
+     * @param isFileCreated True if the file was just created
+     * @param unencryptedFile Unencrypted file, null to decrypt the stored file
+     */
+    private void processFile(FileEvent event, boolean isFileCreated, TemporaryFile unencryptedFile) {
         AtomicReference<File> file = new AtomicReference<>();
         AtomicReference<User> user = new AtomicReference<>();
 
@@ -101,7 +135,7 @@ public class FileProcessingAsyncListener {
             FileUtil.endProcessingFile(event.getFileId());
             return;
         }
-        String content = extractContent(event, user.get(), file.get());
+        String content = extractContent(event, user.get(), file.get(), unencryptedFile);
 
         // Open a new transaction to save the file content
         TransactionUtil.handle(() -> {
@@ -115,6 +149,7 @@ public class FileProcessingAsyncListener {
 
             freshFile.setContent(content);
             fileDao.update(freshFile);
+            fileDao.updateContent(freshFile.getId(), content);
 
             // Update index with the updated file
             if (isFileCreated) {
@@ -134,9 +169,10 @@ public class FileProcessingAsyncListener {
      * @param event File event
      * @param user User whom created the file
      * @param file Fresh file
+     * @param unencryptedFile Unencrypted file, null to decrypt the stored file
      * @return Text content
      */
-    private String extractContent(FileEvent event, User user, File file) {
+    private String extractContent(FileEvent event, User user, File file, TemporaryFile unencryptedFile) {
         // Find a format handler
         FormatHandler formatHandler = FormatHandlerUtil.find(file.getMimeType());
         if (formatHandler == null) {
@@ -144,24 +180,110 @@ public class FileProcessingAsyncListener {
             return null;
         }
 
+        if (unencryptedFile != null) {
+            try (formatHandler) {
+                return extractContent(event, user, file, formatHandler, unencryptedFile.getPath());
+            }
+        }
+
+        // The file has not been kept unencrypted, decrypt the stored file
+        TemporaryFile decryptedFile;
+        try {
+            decryptedFile = EncryptionUtil.decryptFile(DirectoryUtil.getStorageDirectory().resolve(file.getId()), user.getPrivateKey());
+        } catch (Exception e) {
+            log.error("Unable to decrypt the file: " + file, e);
+            formatHandler.close();
+            return null;
+        }
+        try (decryptedFile; formatHandler) {
+            return extractContent(event, user, file, formatHandler, decryptedFile.getPath());
+        }
+    }
+
+    /**
+     * Generate the thumbnails and extract text content from an unencrypted file.
+     *
+     * @param event File event
+     * @param user User whom created the file
+     * @param file Fresh file
+     * @param formatHandler Format handler
+     * @param unencryptedFile Unencrypted file
+     * @return Text content
+     */
+    private String extractContent(FileEvent event, User user, File file, FormatHandler formatHandler, Path unencryptedFile) {
+        // Parse the file only once for all the processing
+        try (FormatSession session = formatHandler.open(unencryptedFile)) {
+            String content = extractContent(event, user, file, session);
+            storePdfRendition(user, file, formatHandler, unencryptedFile);
+            return content;
+        } catch (Throwable e) {
+            log.error("Unable to open: " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Store the encrypted PDF rendition of a file, merged as is in the PDF exports.
+     *
+     * @param user User whom created the file
+     * @param file Fresh file
+     * @param formatHandler Format handler
+     * @param unencryptedFile Unencrypted file
+     */
+    private void storePdfRendition(User user, File file, FormatHandler formatHandler, Path unencryptedFile) {
+        try {
+            Path pdfRendition = formatHandler.generatePdfRendition(unencryptedFile);
+            if (pdfRendition == null) {
+                return;
+            }
+
+            // Write the rendition aside, an export never reads a partial rendition
+            Cipher cipher = EncryptionUtil.getEncryptionCipher(user.getPrivateKey());
+            Path outputFile = DirectoryUtil.getStorageDirectory().resolve(file.getId() + "_pdf");
+            Path partFile = outputFile.resolveSibling(outputFile.getFileName() + "_part");
+            try (OutputStream outputStream = new CipherOutputStream(Files.newOutputStream(partFile), cipher)) {
+                Files.copy(pdfRendition, outputStream);
+            }
+            Files.move(partFile, outputFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Throwable e) {
+            log.error("Unable to generate the PDF rendition for: " + file, e);
+        }
+    }
+
+    /**
+     * Generate the thumbnails and extract text content from a processing session.
+     *
+     * @param event File event
+     * @param user User whom created the file
+     * @param file Fresh file
+     * @param session Processing session on the unencrypted file
+     * @return Text content
+     */
+    private String extractContent(FileEvent event, User user, File file, FormatSession session) {
+        if (session.getPageCount() != FormatSession.UNKNOWN_PAGE_COUNT) {
+            log.info("Processing " + session.getPageCount() + " page(s) from: " + file);
+        }
+
         // Generate file variations
         try {
             Cipher cipher = EncryptionUtil.getEncryptionCipher(user.getPrivateKey());
-            BufferedImage image = formatHandler.generateThumbnail(event.getUnencryptedFile());
+            BufferedImage image = session.generateThumbnail();
             if (image != null) {
                 // Generate thumbnails from image
                 BufferedImage web = Scalr.resize(image, Scalr.Method.ULTRA_QUALITY, Scalr.Mode.AUTOMATIC, 1280);
                 BufferedImage thumbnail = Scalr.resize(image, Scalr.Method.ULTRA_QUALITY, Scalr.Mode.AUTOMATIC, 256);
                 image.flush();
 
-                // Write "web" encrypted image
+                // Write "web" encrypted image, the thumbnails can be links shared with an identical file
                 Path outputFile = DirectoryUtil.getStorageDirectory().resolve(file.getId() + "_web");
+                Files.deleteIfExists(outputFile);
                 try (OutputStream outputStream = new CipherOutputStream(Files.newOutputStream(outputFile), cipher)) {
                     ImageUtil.writeJpeg(web, outputStream);
                 }
 
                 // Write "thumb" encrypted image
                 outputFile = DirectoryUtil.getStorageDirectory().resolve(file.getId() + "_thumb");
+                Files.deleteIfExists(outputFile);
                 try (OutputStream outputStream = new CipherOutputStream(Files.newOutputStream(outputFile), cipher)) {
                     ImageUtil.writeJpeg(thumbnail, outputStream);
                 }
@@ -175,7 +297,7 @@ public class FileProcessingAsyncListener {
         String content = null;
         log.info("Start extracting content from: " + file);
         try {
-            content = formatHandler.extractContent(event.getLanguage(), event.getUnencryptedFile());
+            content = session.extractContent(event.getLanguage());
         } catch (Throwable e) {
             log.error("Error extracting content from: " + file, e);
         }
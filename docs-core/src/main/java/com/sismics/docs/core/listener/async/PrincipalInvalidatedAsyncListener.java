@@ -0,0 +1,30 @@
+package com.sismics.docs.core.listener.async;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+import com.sismics.docs.core.event.PrincipalInvalidatedAsyncEvent;
+import com.sismics.docs.core.util.PrincipalCacheUtil;
+
+/**
+ * Listener on principals invalidated.
+ * The principals are invalidated again once the changes are committed,
+ * in case a concurrent request cached them in the meantime.
+ *
+ * @author bgamard
+ */
+public class PrincipalInvalidatedAsyncListener {
+    /**
+     * Principals invalidated.
+     *
+     * @param event Principals invalidated event
+     */
+    @Subscribe
+    @AllowConcurrentEvents
+    public void on(final PrincipalInvalidatedAsyncEvent event) {
+        if (event.getUserId() == null) {
+            PrincipalCacheUtil.evictAll();
+        } else {
+            PrincipalCacheUtil.evictUser(event.getUserId());
+        }
+    }
+}
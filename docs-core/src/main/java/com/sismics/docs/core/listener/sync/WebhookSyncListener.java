@@ -0,0 +1,53 @@
+package com.sismics.docs.core.listener.sync;
+
+import com.google.common.eventbus.Subscribe;
+import com.sismics.docs.core.constant.WebhookEvent;
+import com.sismics.docs.core.event.*;
+import com.sismics.docs.core.model.context.AppContext;
+
+/**
+ * Listener storing the webhook deliveries in the transaction of the event.
+ *
+ * @author bgamard
+ */
+public class WebhookSyncListener {
+    @Subscribe
+    public void on(final DocumentCreatedAsyncEvent event) {
+        enqueue(WebhookEvent.DOCUMENT_CREATED, event.getDocumentId());
+    }
+
+    @Subscribe
+    public void on(final DocumentUpdatedAsyncEvent event) {
+        enqueue(WebhookEvent.DOCUMENT_UPDATED, event.getDocumentId());
+    }
+
+    @Subscribe
+    public void on(final DocumentDeletedAsyncEvent event) {
+        enqueue(WebhookEvent.DOCUMENT_DELETED, event.getDocumentId());
+    }
+
+    @Subscribe
+    public void on(final FileCreatedAsyncEvent event) {
+        enqueue(WebhookEvent.FILE_CREATED, event.getFileId());
+    }
+
+    @Subscribe
+    public void on(final FileUpdatedAsyncEvent event) {
+        enqueue(WebhookEvent.FILE_UPDATED, event.getFileId());
+    }
+
+    @Subscribe
+    public void on(final FileDeletedAsyncEvent event) {
+        enqueue(WebhookEvent.FILE_DELETED, event.getFileId());
+    }
+
+    /**
+     * Store the deliveries of the webhooks listening to an event.
+     *
+     * @param event Event
+     * @param id ID
+     */
+    private void enqueue(WebhookEvent event, String id) {
+        AppContext.getInstance().getWebhookDeliveryService().enqueue(event, id);
+    }
+}
@@ -7,14 +7,19 @@ import com.google.common.eventbus.EventBus;
 import com.sismics.docs.core.constant.Constants;
 import com.sismics.docs.core.dao.UserDao;
 import com.sismics.docs.core.listener.async.*;
+import com.sismics.docs.core.listener.sync.WebhookSyncListener;
 import com.sismics.docs.core.model.jpa.User;
+import com.sismics.docs.core.service.FileProcessingService;
 import com.sismics.docs.core.service.FileService;
 import com.sismics.docs.core.service.FileSizeService;
 import com.sismics.docs.core.service.InboxService;
+import com.sismics.docs.core.service.TokenActivityService;
+import com.sismics.docs.core.service.WebhookDeliveryService;
 import com.sismics.docs.core.util.PdfUtil;
 import com.sismics.docs.core.util.indexing.IndexingHandler;
 import com.sismics.util.ClasspathScanner;
 import com.sismics.util.EnvironmentUtil;
+import com.sismics.util.context.ThreadLocalContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,6 +56,11 @@ public class AppContext {
      */
     private EventBus mailEventBus;
 
+    /**
+     * Synchronous event bus, receiving the events in their transaction before it is committed.
+     */
+    private EventBus preCommitEventBus;
+
     /**
      * Indexing handler.
      */
@@ -66,11 +76,26 @@ public class AppContext {
      */
     private FileService fileService;
 
+    /**
+     * File processing service.
+     */
+    private FileProcessingService fileProcessingService;
+
     /**
      * File size service.
      */
     private FileSizeService fileSizeService;
 
+    /**
+     * Token activity service.
+     */
+    private TokenActivityService tokenActivityService;
+
+    /**
+     * Webhook delivery service.
+     */
+    private WebhookDeliveryService webhookDeliveryService;
+
     /**
      * Asynchronous executors.
      */
@@ -80,6 +105,16 @@ public class AppContext {
      * Start the application context.
      */
     private void startUp() {
+        // Start file processing service, files are processed outside of the event buses
+        fileProcessingService = new FileProcessingService();
+        fileProcessingService.startAsync();
+        fileProcessingService.awaitRunning();
+
+        // Start webhook delivery service, webhooks are called outside of the event buses
+        webhookDeliveryService = new WebhookDeliveryService();
+        webhookDeliveryService.startAsync();
+        webhookDeliveryService.awaitRunning();
+
         resetEventBus();
 
         // Start indexing handler
@@ -108,6 +143,11 @@ public class AppContext {
         inboxService.startAsync();
         inboxService.awaitRunning();
 
+        // Start token activity service
+        tokenActivityService = new TokenActivityService();
+        tokenActivityService.startAsync();
+        tokenActivityService.awaitRunning();
+
         // Start file size service
         fileSizeService = new FileSizeService();
         fileSizeService.startAsync();
@@ -155,10 +195,18 @@ public class AppContext {
         asyncEventBus.register(new AclCreatedAsyncListener());
         asyncEventBus.register(new AclDeletedAsyncListener());
         asyncEventBus.register(new WebhookAsyncListener());
+        asyncEventBus.register(new PrincipalInvalidatedAsyncListener());
 
         mailEventBus = newAsyncEventBus();
         mailEventBus.register(new PasswordLostAsyncListener());
         mailEventBus.register(new RouteStepValidateAsyncListener());
+
+        preCommitEventBus = new EventBus((exception, context) -> {
+            // The changes of the listeners must be committed with the transaction, or not at all
+            log.error("Error in a pre-commit listener, rolling back the transaction", exception);
+            ThreadLocalContext.get().getEntityManager().getTransaction().setRollbackOnly();
+        });
+        preCommitEventBus.register(new WebhookSyncListener());
     }
 
     /**
@@ -202,7 +250,7 @@ public class AppContext {
         for (ThreadPoolExecutor executor : asyncExecutorList) {
             queueSize += executor.getTaskCount() - executor.getCompletedTaskCount();
         }
-        return queueSize;
+        return queueSize + fileProcessingService.getQueuedTaskCount();
     }
 
     public EventBus getAsyncEventBus() {
@@ -213,6 +261,10 @@ public class AppContext {
         return mailEventBus;
     }
 
+    public EventBus getPreCommitEventBus() {
+        return preCommitEventBus;
+    }
+
     public IndexingHandler getIndexingHandler() {
         return indexingHandler;
     }
@@ -225,6 +277,18 @@ public class AppContext {
         return fileService;
     }
 
+    public FileProcessingService getFileProcessingService() {
+        return fileProcessingService;
+    }
+
+    public TokenActivityService getTokenActivityService() {
+        return tokenActivityService;
+    }
+
+    public WebhookDeliveryService getWebhookDeliveryService() {
+        return webhookDeliveryService;
+    }
+
     public void shutDown() {
         for (ExecutorService executor : asyncExecutorList) {
             // Shutdown executor, don't accept any more tasks (can cause error with nested events)
@@ -236,6 +300,17 @@ public class AppContext {
             }
         }
 
+        if (fileProcessingService != null) {
+            // Let the files already accepted be processed and indexed
+            fileProcessingService.stopAsync();
+            fileProcessingService.awaitTerminated();
+        }
+
+        if (webhookDeliveryService != null) {
+            webhookDeliveryService.stopAsync();
+            webhookDeliveryService.awaitTerminated();
+        }
+
         if (indexingHandler != null) {
             indexingHandler.shutDown();
         }
@@ -253,6 +328,12 @@ public class AppContext {
             fileSizeService.stopAsync();
         }
 
+        if (tokenActivityService != null) {
+            // Write the last connection dates still in memory
+            tokenActivityService.stopAsync();
+            tokenActivityService.awaitTerminated();
+        }
+
         instance = null;
     }
 }
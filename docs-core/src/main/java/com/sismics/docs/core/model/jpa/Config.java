@@ -1,5 +1,6 @@
 package com.sismics.docs.core.model.jpa;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
@@ -9,6 +10,9 @@ import jakarta.persistence.Table;
 
 import com.google.common.base.MoreObjects;
 import com.sismics.docs.core.constant.ConfigType;
+import com.sismics.util.jpa.EMF;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
  * Configuration parameter entity.
@@ -16,6 +20,8 @@ import com.sismics.docs.core.constant.ConfigType;
  * @author jtremeaux
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = EMF.REFERENCE_CACHE_REGION)
 @Table(name = "T_CONFIG")
 public class Config {
     /**
@@ -48,8 +48,9 @@ public class File implements Loggable {
 
     /**
      * OCR-ized content.
+     * Stored in {@link FileContent}, not loaded with the file.
      */
-    @Column(name = "FIL_CONTENT_C")
+    @Transient
     private String content;
     
     /**
@@ -58,6 +59,12 @@ public class File implements Loggable {
     @Column(name = "FIL_CREATEDATE_D", nullable = false)
     private Date createDate;
 
+    /**
+     * Last update date.
+     */
+    @Column(name = "FIL_UPDATEDATE_D")
+    private Date updateDate;
+
     /**
      * Deletion date.
      */
@@ -96,6 +103,12 @@ public class File implements Loggable {
     @Column(name = "FIL_SIZE_N", nullable = false)
     private Long size;
 
+    /**
+     * SHA-256 hash of the unencrypted content, null if unknown.
+     */
+    @Column(name = "FIL_HASH_C", length = 64)
+    private String hash;
+
     /**
      * Private key to decrypt the file.
      * Not saved to database, of course.
@@ -144,6 +157,14 @@ public class File implements Loggable {
         this.createDate = createDate;
     }
 
+    public Date getUpdateDate() {
+        return updateDate;
+    }
+
+    public void setUpdateDate(Date updateDate) {
+        this.updateDate = updateDate;
+    }
+
     @Override
     public Date getDeleteDate() {
         return deleteDate;
@@ -224,6 +245,15 @@ public class File implements Loggable {
         return this;
     }
 
+    public String getHash() {
+        return hash;
+    }
+
+    public File setHash(String hash) {
+        this.hash = hash;
+        return this;
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
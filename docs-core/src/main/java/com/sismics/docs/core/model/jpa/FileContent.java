@@ -0,0 +1,55 @@
+package com.sismics.docs.core.model.jpa;
+
+import com.google.common.base.MoreObjects;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Text content extracted from a file.
+ * Kept apart from the file to be loaded only when needed.
+ *
+ * @author bgamard
+ */
+@Entity
+@Table(name = "T_FILE_CONTENT")
+public class FileContent {
+    /**
+     * File ID.
+     */
+    @Id
+    @Column(name = "FCT_IDFILE_C", length = 36)
+    private String fileId;
+
+    /**
+     * OCR-ized content.
+     */
+    @Column(name = "FCT_CONTENT_C")
+    private String content;
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public FileContent setFileId(String fileId) {
+        this.fileId = fileId;
+        return this;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public FileContent setContent(String content) {
+        this.content = content;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("fileId", fileId)
+                .toString();
+    }
+}
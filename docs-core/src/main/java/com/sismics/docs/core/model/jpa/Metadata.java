@@ -5,6 +5,9 @@ import com.sismics.docs.core.constant.MetadataType;
 
 import jakarta.persistence.*;
 import java.util.Date;
+import com.sismics.util.jpa.EMF;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
  * Metadata entity.
@@ -12,6 +15,8 @@ import java.util.Date;
  * @author bgamard
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = EMF.REFERENCE_CACHE_REGION)
 @Table(name = "T_METADATA")
 public class Metadata implements Loggable {
     /**
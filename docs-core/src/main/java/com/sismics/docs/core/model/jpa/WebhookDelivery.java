@@ -0,0 +1,181 @@
+package com.sismics.docs.core.model.jpa;
+
+import com.google.common.base.MoreObjects;
+import com.sismics.docs.core.constant.WebhookDeliveryStatus;
+import com.sismics.docs.core.constant.WebhookEvent;
+
+import jakarta.persistence.*;
+import java.util.Date;
+
+/**
+ * Webhook delivery entity, an event waiting to be sent to a webhook or already sent.
+ * 
+ * @author bgamard
+ */
+@Entity
+@Table(name = "T_WEBHOOK_DELIVERY")
+public class WebhookDelivery {
+    /**
+     * Delivery ID.
+     */
+    @Id
+    @Column(name = "WHD_ID_C", nullable = false, length = 36)
+    private String id;
+
+    /**
+     * Webhook ID.
+     */
+    @Column(name = "WHD_IDWEBHOOK_C", nullable = false, length = 36)
+    private String webhookId;
+
+    /**
+     * Event.
+     */
+    @Column(name = "WHD_EVENT_C", nullable = false, length = 50)
+    @Enumerated(EnumType.STRING)
+    private WebhookEvent event;
+
+    /**
+     * ID of the document or file concerned by the event.
+     */
+    @Column(name = "WHD_ENTITYID_C", nullable = false, length = 36)
+    private String entityId;
+
+    /**
+     * Status.
+     */
+    @Column(name = "WHD_STATUS_C", nullable = false, length = 10)
+    @Enumerated(EnumType.STRING)
+    private WebhookDeliveryStatus status;
+
+    /**
+     * Number of failed attempts.
+     */
+    @Column(name = "WHD_ATTEMPTS_N", nullable = false)
+    private Integer attemptCount;
+
+    /**
+     * Date of the next attempt.
+     */
+    @Column(name = "WHD_NEXTATTEMPTDATE_D", nullable = false)
+    private Date nextAttemptDate;
+
+    /**
+     * Last error.
+     */
+    @Column(name = "WHD_LASTERROR_C", length = 500)
+    private String lastError;
+
+    /**
+     * Creation date.
+     */
+    @Column(name = "WHD_CREATEDATE_D", nullable = false)
+    private Date createDate;
+
+    /**
+     * Date of the successful delivery.
+     */
+    @Column(name = "WHD_DELIVERYDATE_D")
+    private Date deliveryDate;
+
+    public String getId() {
+        return id;
+    }
+
+    public WebhookDelivery setId(String id) {
+        this.id = id;
+        return this;
+    }
+
+    public String getWebhookId() {
+        return webhookId;
+    }
+
+    public WebhookDelivery setWebhookId(String webhookId) {
+        this.webhookId = webhookId;
+        return this;
+    }
+
+    public WebhookEvent getEvent() {
+        return event;
+    }
+
+    public WebhookDelivery setEvent(WebhookEvent event) {
+        this.event = event;
+        return this;
+    }
+
+    public String getEntityId() {
+        return entityId;
+    }
+
+    public WebhookDelivery setEntityId(String entityId) {
+        this.entityId = entityId;
+        return this;
+    }
+
+    public WebhookDeliveryStatus getStatus() {
+        return status;
+    }
+
+    public WebhookDelivery setStatus(WebhookDeliveryStatus status) {
+        this.status = status;
+        return this;
+    }
+
+    public Integer getAttemptCount() {
+        return attemptCount;
+    }
+
+    public WebhookDelivery setAttemptCount(Integer attemptCount) {
+        this.attemptCount = attemptCount;
+        return this;
+    }
+
+    public Date getNextAttemptDate() {
+        return nextAttemptDate;
+    }
+
+    public WebhookDelivery setNextAttemptDate(Date nextAttemptDate) {
+        this.nextAttemptDate = nextAttemptDate;
+        return this;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public WebhookDelivery setLastError(String lastError) {
+        this.lastError = lastError;
+        return this;
+    }
+
+    public Date getCreateDate() {
+        return createDate;
+    }
+
+    public WebhookDelivery setCreateDate(Date createDate) {
+        this.createDate = createDate;
+        return this;
+    }
+
+    public Date getDeliveryDate() {
+        return deliveryDate;
+    }
+
+    public WebhookDelivery setDeliveryDate(Date deliveryDate) {
+        this.deliveryDate = deliveryDate;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("id", id)
+                .add("webhookId", webhookId)
+                .add("event", event)
+                .add("entityId", entityId)
+                .add("status", status)
+                .toString();
+    }
+}
@@ -0,0 +1,234 @@
+package com.sismics.docs.core.service;
+
+import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sismics.docs.core.constant.Constants;
+import com.sismics.docs.core.constant.FileProcessingPriority;
+import com.sismics.docs.core.util.ConfigUtil;
+import com.sismics.util.EnvironmentUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * File processing service.
+ * Files are processed on dedicated threads, separated from the generic asynchronous event bus,
+ * in the order of their priority then of their submission.
+ * The queue of each priority is bounded by admission: producers check {@link #isSaturated(FileProcessingPriority)}
+ * before accepting new files, a file already accepted is always processed.
+ *
+ * @author bgamard
+ */
+public class FileProcessingService extends AbstractIdleService {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(FileProcessingService.class);
+
+    /**
+     * Number of processing threads, 0 to process the files synchronously.
+     */
+    private final int threadCount;
+
+    /**
+     * Maximum number of files waiting to be processed for each priority.
+     */
+    private final int queueSize;
+
+    /**
+     * Submission counter, to keep the submission order in a priority.
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Statistics by priority.
+     */
+    private final Map<FileProcessingPriority, QueueStats> statsMap = new EnumMap<>(FileProcessingPriority.class);
+
+    /**
+     * Queue of the waiting tasks.
+     */
+    private final PriorityBlockingQueue<Runnable> queue = new PriorityBlockingQueue<>();
+
+    /**
+     * Executor, null if the files are processed synchronously.
+     */
+    private ThreadPoolExecutor executor;
+
+    /**
+     * Create a file processing service configured from the environment.
+     * Files are processed synchronously in unit test mode.
+     */
+    public FileProcessingService() {
+        this(EnvironmentUtil.isUnitTest() ? 0 : ConfigUtil.getEnvIntegerValue(Constants.FILE_PROCESSING_THREADS_ENV,
+                        Math.max(Runtime.getRuntime().availableProcessors() / 2, 2)),
+                ConfigUtil.getEnvIntegerValue(Constants.FILE_PROCESSING_QUEUE_SIZE_ENV, 100));
+    }
+
+    /**
+     * Create a file processing service.
+     *
+     * @param threadCount Number of processing threads, 0 to process the files synchronously
+     * @param queueSize Maximum number of files waiting to be processed for each priority
+     */
+    public FileProcessingService(int threadCount, int queueSize) {
+        this.threadCount = threadCount;
+        this.queueSize = queueSize;
+        for (FileProcessingPriority priority : FileProcessingPriority.values()) {
+            statsMap.put(priority, new QueueStats());
+        }
+    }
+
+    @Override
+    protected void startUp() {
+        if (threadCount == 0) {
+            return;
+        }
+
+        executor = new ThreadPoolExecutor(threadCount, threadCount,
+                1L, TimeUnit.MINUTES, queue,
+                new ThreadFactoryBuilder().setNameFormat("file-processing-%d").setDaemon(true).build());
+        log.info("File processing service started with {} threads", threadCount);
+    }
+
+    @Override
+    protected void shutDown() throws Exception {
+        if (executor != null) {
+            executor.shutdown();
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("{} files were not processed before shutting down", executor.getQueue().size());
+            }
+        }
+    }
+
+    /**
+     * Submit a file processing.
+     *
+     * @param priority Priority
+     * @param runnable File processing
+     */
+    public void submit(FileProcessingPriority priority, Runnable runnable) {
+        PrioritizedTask task = new PrioritizedTask(priority, sequence.getAndIncrement(), runnable);
+        if (executor == null) {
+            task.run();
+            return;
+        }
+        statsMap.get(priority).queued.incrementAndGet();
+        executor.execute(task);
+    }
+
+    /**
+     * Returns true if no more files should be accepted for this priority.
+     *
+     * @param priority Priority
+     * @return True if the queue of this priority is full
+     */
+    public boolean isSaturated(FileProcessingPriority priority) {
+        return statsMap.get(priority).getQueued() >= queueSize;
+    }
+
+    /**
+     * Returns the number of files waiting to be processed or in progress.
+     *
+     * @return Number of files
+     */
+    public int getQueuedTaskCount() {
+        if (executor == null) {
+            return 0;
+        }
+        return (int) (executor.getTaskCount() - executor.getCompletedTaskCount());
+    }
+
+    /**
+     * Returns the statistics of a priority.
+     *
+     * @param priority Priority
+     * @return Statistics
+     */
+    public QueueStats getStats(FileProcessingPriority priority) {
+        return statsMap.get(priority);
+    }
+
+    /**
+     * File processing task ordered by priority then by submission.
+     */
+    private class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+        private final FileProcessingPriority priority;
+        private final long sequence;
+        private final Runnable runnable;
+        private final long submitTime = System.currentTimeMillis();
+
+        private PrioritizedTask(FileProcessingPriority priority, long sequence, Runnable runnable) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            QueueStats stats = statsMap.get(priority);
+            if (executor != null) {
+                stats.queued.decrementAndGet();
+            }
+            stats.totalWaitTime.addAndGet(System.currentTimeMillis() - submitTime);
+            try {
+                runnable.run();
+            } catch (Throwable e) {
+                log.error("Error processing a file", e);
+            } finally {
+                stats.processed.incrementAndGet();
+            }
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask o) {
+            int result = priority.compareTo(o.priority);
+            return result != 0 ? result : Long.compare(sequence, o.sequence);
+        }
+    }
+
+    /**
+     * Statistics of a priority.
+     */
+    public static class QueueStats {
+        /**
+         * Number of files waiting to be processed.
+         */
+        private final AtomicInteger queued = new AtomicInteger();
+
+        /**
+         * Number of files processed.
+         */
+        private final AtomicLong processed = new AtomicLong();
+
+        /**
+         * Total time spent by the processed files in the queue (in milliseconds).
+         */
+        private final AtomicLong totalWaitTime = new AtomicLong();
+
+        public int getQueued() {
+            return queued.get();
+        }
+
+        public long getProcessed() {
+            return processed.get();
+        }
+
+        /**
+         * Returns the average time spent by a file in the queue.
+         *
+         * @return Average wait time (in milliseconds)
+         */
+        public long getAverageWaitTime() {
+            long count = processed.get();
+            return count == 0 ? 0 : totalWaitTime.get() / count;
+        }
+    }
+}
@@ -1,21 +1,25 @@
 package com.sismics.docs.core.service;
 
 import com.google.common.util.concurrent.AbstractScheduledService;
+import com.sismics.docs.core.constant.Constants;
+import com.sismics.docs.core.util.ConfigUtil;
+import com.sismics.docs.core.util.DirectoryUtil;
+import com.sismics.docs.core.util.TemporaryFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.lang.ref.PhantomReference;
-import java.lang.ref.ReferenceQueue;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
  * File service.
+ * Manages the temporary files, deleted when released by their holders.
+ * The temporary files left by a previous run are deleted on startup.
  *
  * @author bgamard
  */
@@ -26,75 +30,192 @@ public class FileService extends AbstractScheduledService {
     private static final Logger log = LoggerFactory.getLogger(FileService.class);
 
     /**
-     * Phantom references queue.
+     * Maximum time waiting for some space to create a temporary file (in milliseconds).
      */
-    private final ReferenceQueue<Path> referenceQueue = new ReferenceQueue<>();
-    private final Set<TemporaryPathReference> referenceSet = new HashSet<>();
+    private static final long SPACE_WAIT_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Temporary files not released yet.
+     */
+    private final Map<Path, TemporaryFile> temporaryFileMap = new ConcurrentHashMap<>();
+
+    /**
+     * Lock notified when a temporary file is deleted.
+     */
+    private final Object spaceLock = new Object();
+
+    /**
+     * Maximum size of the temporary files, 0 for no limit.
+     */
+    private final long maxSize = ConfigUtil.getEnvLongValue(Constants.TEMPORARY_FILES_MAX_SIZE_ENV, 0);
+
+    /**
+     * Age after which a temporary file not released is deleted (in milliseconds).
+     */
+    private final long maxAge = TimeUnit.HOURS.toMillis(ConfigUtil.getEnvLongValue(Constants.TEMPORARY_FILES_MAX_AGE_ENV, 24));
+
+    /**
+     * Directory of the temporary files.
+     */
+    private Path temporaryDirectory;
 
     public FileService() {
     }
 
     @Override
-    protected void startUp() {
+    protected void startUp() throws Exception {
         log.info("File service starting up");
+        temporaryDirectory = DirectoryUtil.getTemporaryDirectory();
+
+        // Delete the temporary files left after a crash
+        int count = 0;
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(temporaryDirectory)) {
+            for (Path path : directoryStream) {
+                Files.deleteIfExists(path);
+                count++;
+            }
+        }
+        if (count > 0) {
+            log.info("{} orphan temporary files deleted", count);
+        }
     }
 
     @Override
     protected void shutDown() {
         log.info("File service shutting down");
     }
-    
+
     @Override
     protected void runOneIteration() {
         try {
-            deleteTemporaryFiles();
+            deleteExpiredTemporaryFiles();
         } catch (Throwable e) {
             log.error("Exception during file service iteration", e);
         }
     }
 
     /**
-     * Delete unreferenced temporary files.
+     * Delete the temporary files never released, which holders have failed.
      */
-    private void deleteTemporaryFiles() throws Exception {
-        TemporaryPathReference ref;
-        while ((ref = (TemporaryPathReference) referenceQueue.poll()) != null) {
-            Files.delete(Paths.get(ref.path));
-            referenceSet.remove(ref);
+    private void deleteExpiredTemporaryFiles() {
+        long expirationTime = System.currentTimeMillis() - maxAge;
+        for (TemporaryFile temporaryFile : temporaryFileMap.values()) {
+            if (temporaryFile.getCreateTime() < expirationTime) {
+                log.warn("Deleting a temporary file never released: {}", temporaryFile);
+                deleteTemporaryFile(temporaryFile);
+            }
         }
     }
 
     @Override
     protected Scheduler scheduler() {
-        return Scheduler.newFixedDelaySchedule(0, 5, TimeUnit.SECONDS);
+        return Scheduler.newFixedDelaySchedule(1, 1, TimeUnit.MINUTES);
     }
 
-    public Path createTemporaryFile() throws IOException {
+    public TemporaryFile createTemporaryFile() throws IOException {
         return createTemporaryFile(null);
     }
 
     /**
      * Create a temporary file.
+     * If the temporary files are above their maximum size, wait for some of them to be deleted.
+     * The temporary file must be closed by its holder.
      *
      * @param name Wanted file name
      * @return New temporary file
+     * @throws IOException e
+     */
+    public TemporaryFile createTemporaryFile(String name) throws IOException {
+        awaitSpace();
+        TemporaryFile temporaryFile = new TemporaryFile(this, Files.createTempFile(getTemporaryDirectory(), "sismics_docs", name));
+        temporaryFileMap.put(temporaryFile.getPath(), temporaryFile);
+        return temporaryFile;
+    }
+
+    /**
+     * Delete a temporary file.
+     *
+     * @param temporaryFile Temporary file
      */
-    public Path createTemporaryFile(String name) throws IOException {
-        Path path = Files.createTempFile("sismics_docs", name);
-        referenceSet.add(new TemporaryPathReference(path, referenceQueue));
-        return path;
+    public void deleteTemporaryFile(TemporaryFile temporaryFile) {
+        temporaryFileMap.remove(temporaryFile.getPath());
+        try {
+            Files.deleteIfExists(temporaryFile.getPath());
+        } catch (IOException e) {
+            log.error("Unable to delete the temporary file: " + temporaryFile, e);
+        }
+
+        if (maxSize > 0) {
+            synchronized (spaceLock) {
+                spaceLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of temporary files not released yet.
+     *
+     * @return Number of temporary files
+     */
+    public int getTemporaryFileCount() {
+        return temporaryFileMap.size();
+    }
+
+    /**
+     * Returns the size of the temporary files not released yet.
+     *
+     * @return Size (in bytes)
+     */
+    public long getTemporaryFilesSize() {
+        long size = 0;
+        for (Path path : temporaryFileMap.keySet()) {
+            try {
+                size += Files.size(path);
+            } catch (IOException e) {
+                // Deleted meanwhile
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Wait for the temporary files to be under their maximum size.
+     * The files grow after their creation, so the size is checked again periodically.
+     *
+     * @throws IOException If the space has not been freed in time
+     */
+    private void awaitSpace() throws IOException {
+        if (maxSize <= 0) {
+            return;
+        }
+
+        long deadline = System.currentTimeMillis() + SPACE_WAIT_TIMEOUT;
+        synchronized (spaceLock) {
+            while (getTemporaryFilesSize() >= maxSize) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new IOException("TemporaryStorageFull");
+                }
+                try {
+                    spaceLock.wait(Math.min(remaining, 1000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for temporary storage", e);
+                }
+            }
+        }
     }
 
     /**
-     * Phantom reference to a temporary file.
+     * Returns the directory of the temporary files.
      *
-     * @author bgamard
+     * @return Temporary directory
      */
-    static class TemporaryPathReference extends PhantomReference<Path> {
-        String path;
-        TemporaryPathReference(Path referent, ReferenceQueue<? super Path> q) {
-            super(referent, q);
-            path = referent.toAbsolutePath().toString();
+    private Path getTemporaryDirectory() {
+        if (temporaryDirectory == null) {
+            // Not started yet
+            temporaryDirectory = DirectoryUtil.getTemporaryDirectory();
         }
+        return temporaryDirectory;
     }
 }
@@ -2,10 +2,12 @@ package com.sismics.docs.core.service;
 
 import com.google.common.util.concurrent.AbstractScheduledService;
 import com.sismics.docs.core.constant.ConfigType;
+import com.sismics.docs.core.constant.FileProcessingPriority;
 import com.sismics.docs.core.dao.TagDao;
 import com.sismics.docs.core.dao.criteria.TagCriteria;
 import com.sismics.docs.core.dao.dto.TagDto;
 import com.sismics.docs.core.event.DocumentCreatedAsyncEvent;
+import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.Document;
 import com.sismics.docs.core.model.jpa.Tag;
 import com.sismics.docs.core.util.ConfigUtil;
@@ -88,8 +90,16 @@ public class InboxService extends AbstractScheduledService {
                 Message[] messages = inbox.search(new FlagTerm(new Flags(Flags.Flag.SEEN), false));
                 log.info(messages.length + " messages found");
                 for (Message message : messages) {
+                    if (AppContext.getInstance().getFileProcessingService().isSaturated(FileProcessingPriority.INBOX)) {
+                        // Too many files waiting to be processed, the remaining messages will be imported on the next cycle
+                        log.info("File processing queue full, inbox synchronization postponed");
+                        break;
+                    }
                     importMessage(message, tagsNameToId);
                     lastSyncMessageCount++;
+
+                    // Don't keep the imported entities in the persistence context until the end of the synchronization
+                    ThreadLocalContext.get().clearEntityManager();
                 }
             } catch (FolderClosedException e) {
                 // Ignore this, we will just continue importing on the next cycle
@@ -195,76 +205,79 @@ public class InboxService extends AbstractScheduledService {
 
         // Parse the mail
         EmailUtil.MailContent mailContent = new EmailUtil.MailContent();
-        mailContent.setSubject(message.getSubject());
-        mailContent.setDate(message.getSentDate());
-        EmailUtil.parseMailContent(message, mailContent);
-
-        // Create the document
-        Document document = new Document();
-        String subject = mailContent.getSubject();
-        if (subject == null) {
-            subject = "Imported email from EML file";
-        }
+        // The temporary files of the attachments are deleted when the mail content is closed
+        try (mailContent) {
+            mailContent.setSubject(message.getSubject());
+            mailContent.setDate(message.getSentDate());
+            EmailUtil.parseMailContent(message, mailContent);
+
+            // Create the document
+            Document document = new Document();
+            String subject = mailContent.getSubject();
+            if (subject == null) {
+                subject = "Imported email from EML file";
+            }
 
-        HashSet<String> tagsFound = new HashSet<>();
-        if (tags != null) {
-            Pattern pattern = Pattern.compile("#([^\\s:#]+)");
-            Matcher matcher = pattern.matcher(subject);
-            while (matcher.find()) {
-                if (tags.containsKey(matcher.group(1)) && tags.get(matcher.group(1)) != null) {
-                    tagsFound.add(tags.get(matcher.group(1)));
-                    subject = subject.replaceFirst("#" + matcher.group(1), "");
+            HashSet<String> tagsFound = new HashSet<>();
+            if (tags != null) {
+                Pattern pattern = Pattern.compile("#([^\\s:#]+)");
+                Matcher matcher = pattern.matcher(subject);
+                while (matcher.find()) {
+                    if (tags.containsKey(matcher.group(1)) && tags.get(matcher.group(1)) != null) {
+                        tagsFound.add(tags.get(matcher.group(1)));
+                        subject = subject.replaceFirst("#" + matcher.group(1), "");
+                    }
                 }
+                log.debug("Tags found: " + String.join(", ", tagsFound));
+                subject = subject.trim().replaceAll(" +", " ");
             }
-            log.debug("Tags found: " + String.join(", ", tagsFound));
-            subject = subject.trim().replaceAll(" +", " ");
-        }
 
-        document.setUserId("admin");
-        document.setTitle(StringUtils.abbreviate(subject, 100));
-        document.setDescription(StringUtils.abbreviate(mailContent.getMessage(), 4000));
-        document.setSubject(StringUtils.abbreviate(mailContent.getSubject(), 500));
-        document.setFormat("EML");
-        document.setSource("Inbox");
-        document.setLanguage(ConfigUtil.getConfigStringValue(ConfigType.DEFAULT_LANGUAGE));
-        if (mailContent.getDate() == null) {
-            document.setCreateDate(new Date());
-        } else {
-            document.setCreateDate(mailContent.getDate());
-        }
+            document.setUserId("admin");
+            document.setTitle(StringUtils.abbreviate(subject, 100));
+            document.setDescription(StringUtils.abbreviate(mailContent.getMessage(), 4000));
+            document.setSubject(StringUtils.abbreviate(mailContent.getSubject(), 500));
+            document.setFormat("EML");
+            document.setSource("Inbox");
+            document.setLanguage(ConfigUtil.getConfigStringValue(ConfigType.DEFAULT_LANGUAGE));
+            if (mailContent.getDate() == null) {
+                document.setCreateDate(new Date());
+            } else {
+                document.setCreateDate(mailContent.getDate());
+            }
 
-        // Save the document, create the base ACLs
-        DocumentUtil.createDocument(document, "admin");
+            // Save the document, create the base ACLs
+            DocumentUtil.createDocument(document, "admin");
 
-        // Add the tag
-        String tagId = ConfigUtil.getConfigStringValue(ConfigType.INBOX_TAG);
-        if (tagId != null) {
-            TagDao tagDao = new TagDao();
-            Tag tag = tagDao.getById(tagId);
-            if (tag != null) {
-                tagsFound.add(tagId);
+            // Add the tag
+            String tagId = ConfigUtil.getConfigStringValue(ConfigType.INBOX_TAG);
+            if (tagId != null) {
+                TagDao tagDao = new TagDao();
+                Tag tag = tagDao.getById(tagId);
+                if (tag != null) {
+                    tagsFound.add(tagId);
+                }
             }
-        }
 
-        // Update tags
-        if (!tagsFound.isEmpty()) {
-            new TagDao().updateTagList(document.getId(), tagsFound);
-        }
+            // Update tags
+            if (!tagsFound.isEmpty()) {
+                new TagDao().updateTagList(document.getId(), tagsFound);
+            }
 
-        // Raise a document created event
-        DocumentCreatedAsyncEvent documentCreatedAsyncEvent = new DocumentCreatedAsyncEvent();
-        documentCreatedAsyncEvent.setUserId("admin");
-        documentCreatedAsyncEvent.setDocumentId(document.getId());
-        ThreadLocalContext.get().addAsyncEvent(documentCreatedAsyncEvent);
+            // Raise a document created event
+            DocumentCreatedAsyncEvent documentCreatedAsyncEvent = new DocumentCreatedAsyncEvent();
+            documentCreatedAsyncEvent.setUserId("admin");
+            documentCreatedAsyncEvent.setDocumentId(document.getId());
+            ThreadLocalContext.get().addAsyncEvent(documentCreatedAsyncEvent);
 
-        // Add files to the document
-        for (EmailUtil.FileContent fileContent : mailContent.getFileContentList()) {
-            FileUtil.createFile(fileContent.getName(), null, fileContent.getFile(), fileContent.getSize(),
-                    document.getLanguage(), "admin", document.getId());
-        }
+            // Add files to the document
+            for (EmailUtil.FileContent fileContent : mailContent.getFileContentList()) {
+                FileUtil.createFile(fileContent.getName(), null, fileContent.getFile(), fileContent.getSize(),
+                        document.getLanguage(), "admin", document.getId(), FileProcessingPriority.INBOX);
+            }
 
-        if (ConfigUtil.getConfigBooleanValue(ConfigType.INBOX_DELETE_IMPORTED)) {
-            message.setFlag(Flags.Flag.DELETED, true);
+            if (ConfigUtil.getConfigBooleanValue(ConfigType.INBOX_DELETE_IMPORTED)) {
+                message.setFlag(Flags.Flag.DELETED, true);
+            }
         }
     }
 
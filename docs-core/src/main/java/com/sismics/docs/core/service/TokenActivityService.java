@@ -0,0 +1,142 @@
+package com.sismics.docs.core.service;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.sismics.docs.core.constant.Constants;
+import com.sismics.docs.core.dao.AuthenticationTokenDao;
+import com.sismics.docs.core.dao.dto.PrincipalDto;
+import com.sismics.docs.core.model.jpa.AuthenticationToken;
+import com.sismics.docs.core.util.ConfigUtil;
+import com.sismics.docs.core.util.PrincipalCacheUtil;
+import com.sismics.docs.core.util.TransactionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Service that records the activity of the authentication tokens.
+ * The last connection dates are kept in memory and written periodically in one batch,
+ * instead of writing the token for each request.
+ *
+ * @author bgamard
+ */
+public class TokenActivityService extends AbstractScheduledService {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(TokenActivityService.class);
+
+    /**
+     * Last connection dates not written yet, by authentication token ID.
+     */
+    private final Map<String, Date> pendingMap = new ConcurrentHashMap<>();
+
+    /**
+     * DAO writing the last connection dates.
+     */
+    private final AuthenticationTokenDao authenticationTokenDao;
+
+    public TokenActivityService() {
+        this(new AuthenticationTokenDao());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param authenticationTokenDao DAO writing the last connection dates
+     */
+    TokenActivityService(AuthenticationTokenDao authenticationTokenDao) {
+        this.authenticationTokenDao = authenticationTokenDao;
+    }
+
+    @Override
+    protected void startUp() {
+        log.info("Token activity service starting up");
+    }
+
+    @Override
+    protected void shutDown() {
+        flush();
+        log.info("Token activity service shutting down");
+    }
+
+    @Override
+    protected void runOneIteration() {
+        try {
+            flush();
+        } catch (Throwable e) {
+            log.error("Exception during token activity service iteration", e);
+        }
+    }
+
+    @Override
+    protected Scheduler scheduler() {
+        long interval = ConfigUtil.getEnvLongValue(Constants.TOKEN_ACTIVITY_FLUSH_INTERVAL_ENV, 30);
+        return Scheduler.newFixedDelaySchedule(interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Record a connection with an authentication token.
+     *
+     * @param authenticationTokenId Authentication token ID
+     */
+    public void touch(String authenticationTokenId) {
+        Date now = new Date();
+        pendingMap.put(authenticationTokenId, now);
+
+        // Keep the cached token up to date
+        PrincipalDto principalDto = PrincipalCacheUtil.get(authenticationTokenId);
+        if (principalDto != null && principalDto.getAuthenticationToken() != null) {
+            principalDto.getAuthenticationToken().setLastConnectionDate(now);
+        }
+    }
+
+    /**
+     * Returns the last connection date of an authentication token, including the connections not written yet.
+     *
+     * @param authenticationToken Authentication token
+     * @return Last connection date, null if never connected
+     */
+    public Date getLastConnectionDate(AuthenticationToken authenticationToken) {
+        Date pendingDate = pendingMap.get(authenticationToken.getId());
+        Date date = authenticationToken.getLastConnectionDate();
+        if (pendingDate != null && (date == null || pendingDate.after(date))) {
+            return pendingDate;
+        }
+        return date;
+    }
+
+    /**
+     * Write the pending last connection dates in the current transaction, or a new one.
+     * The dates not written are kept pending for the next flush.
+     *
+     * @return True if the pending dates have been written
+     */
+    public boolean flush() {
+        if (pendingMap.isEmpty()) {
+            return true;
+        }
+
+        Map<String, Date> dateMap = new HashMap<>(pendingMap);
+        AtomicBoolean written = new AtomicBoolean();
+        TransactionUtil.handle(() -> {
+            authenticationTokenDao.updateLastConnectionDate(dateMap);
+            written.set(true);
+        });
+        if (!written.get()) {
+            log.error("Unable to write the last connection dates of {} tokens", dateMap.size());
+            return false;
+        }
+
+        // Forget the dates written, unless the token has been used again in the meantime
+        for (Map.Entry<String, Date> entry : dateMap.entrySet()) {
+            pendingMap.remove(entry.getKey(), entry.getValue());
+        }
+        return true;
+    }
+}
@@ -0,0 +1,441 @@
+package com.sismics.docs.core.service;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sismics.docs.core.constant.Constants;
+import com.sismics.docs.core.constant.WebhookDeliveryStatus;
+import com.sismics.docs.core.constant.WebhookEvent;
+import com.sismics.docs.core.dao.WebhookDao;
+import com.sismics.docs.core.dao.WebhookDeliveryDao;
+import com.sismics.docs.core.dao.criteria.WebhookCriteria;
+import com.sismics.docs.core.dao.dto.WebhookDeliveryDto;
+import com.sismics.docs.core.dao.dto.WebhookDto;
+import com.sismics.docs.core.model.jpa.WebhookDelivery;
+import com.sismics.docs.core.util.ConfigUtil;
+import com.sismics.docs.core.util.TransactionUtil;
+import com.sismics.util.EnvironmentUtil;
+import okhttp3.*;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Webhook delivery service.
+ * The events are stored in an outbox table in the transaction producing them, then sent by dedicated threads
+ * once committed, separated from the event buses.
+ * The deliveries of an endpoint are sent in batches on pooled connections, with a limited number of
+ * batches in progress by endpoint, so that a slow endpoint doesn't delay the others.
+ * The deliveries are sent oldest first, but the batches sent in parallel and the retries make no ordering
+ * guarantee: an endpoint can receive the events out of order.
+ * Failed deliveries are retried with an exponential backoff, until too many attempts.
+ *
+ * @author bgamard
+ */
+public class WebhookDeliveryService extends AbstractScheduledService {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(WebhookDeliveryService.class);
+
+    /**
+     * JSON media type.
+     */
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    /**
+     * Maximum number of deliveries sent in a batch to an endpoint.
+     */
+    private static final int BATCH_SIZE = 20;
+
+    /**
+     * Delay before the first retry in seconds, doubled after each attempt.
+     */
+    private static final long RETRY_BASE_DELAY = 30;
+
+    /**
+     * Maximum delay between two attempts in seconds.
+     */
+    private static final long RETRY_MAX_DELAY = TimeUnit.HOURS.toSeconds(6);
+
+    /**
+     * Time between two lookups for due deliveries when not woken up, in milliseconds.
+     */
+    private static final long POLL_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * Retention of the finished deliveries in days.
+     */
+    private static final int RETENTION_DAYS = 7;
+
+    /**
+     * Number of sending threads, 0 to send the deliveries synchronously.
+     */
+    private final int threadCount;
+
+    /**
+     * Number of batches sent at the same time to an endpoint.
+     */
+    private final int endpointConcurrency = ConfigUtil.getEnvIntegerValue(Constants.WEBHOOK_ENDPOINT_CONCURRENCY_ENV, 2);
+
+    /**
+     * Maximum number of attempts of a delivery.
+     */
+    private final int maxAttempts = ConfigUtil.getEnvIntegerValue(Constants.WEBHOOK_MAX_ATTEMPTS_ENV, 10);
+
+    /**
+     * Batches in progress by endpoint URL.
+     */
+    private final Map<String, Semaphore> endpointPermitMap = new ConcurrentHashMap<>();
+
+    /**
+     * True if new deliveries are waiting.
+     */
+    private final AtomicBoolean wakeUp = new AtomicBoolean();
+
+    /**
+     * Date of the last lookup for due deliveries.
+     */
+    private long lastPollTime;
+
+    /**
+     * Date of the last cleanup of the finished deliveries.
+     */
+    private long lastCleanupTime;
+
+    /**
+     * Number of deliveries sent.
+     */
+    private final AtomicLong sent = new AtomicLong();
+
+    /**
+     * Number of failed attempts to be retried.
+     */
+    private final AtomicLong retried = new AtomicLong();
+
+    /**
+     * Number of deliveries given up.
+     */
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * Total time spent sending the deliveries (in milliseconds).
+     */
+    private final AtomicLong totalLatency = new AtomicLong();
+
+    /**
+     * HTTP client, shared to pool the connections.
+     */
+    private final OkHttpClient client;
+
+    /**
+     * Executor sending the batches, null if the deliveries are sent synchronously.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Create a webhook delivery service configured from the environment.
+     * Deliveries are sent synchronously in unit test mode.
+     */
+    public WebhookDeliveryService() {
+        this(EnvironmentUtil.isUnitTest() ? 0 : ConfigUtil.getEnvIntegerValue(Constants.WEBHOOK_THREADS_ENV, 4));
+    }
+
+    /**
+     * Create a webhook delivery service.
+     *
+     * @param threadCount Number of sending threads, 0 to send the deliveries synchronously
+     */
+    public WebhookDeliveryService(int threadCount) {
+        this.threadCount = threadCount;
+        int timeout = ConfigUtil.getEnvIntegerValue(Constants.WEBHOOK_TIMEOUT_ENV, 10);
+        client = new OkHttpClient.Builder()
+                .connectTimeout(timeout, TimeUnit.SECONDS)
+                .readTimeout(timeout, TimeUnit.SECONDS)
+                .writeTimeout(timeout, TimeUnit.SECONDS)
+                .callTimeout(timeout * 2L, TimeUnit.SECONDS)
+                .connectionPool(new ConnectionPool(10, 5, TimeUnit.MINUTES))
+                .build();
+    }
+
+    @Override
+    protected void startUp() {
+        // Deliveries interrupted by the last shutdown are sent again
+        TransactionUtil.handle(() -> new WebhookDeliveryDao().resetSending());
+
+        if (threadCount == 0) {
+            return;
+        }
+
+        executor = Executors.newFixedThreadPool(threadCount,
+                new ThreadFactoryBuilder().setNameFormat("webhook-delivery-%d").setDaemon(true).build());
+        log.info("Webhook delivery service started with {} threads", threadCount);
+    }
+
+    @Override
+    protected void shutDown() throws Exception {
+        if (executor != null) {
+            executor.shutdown();
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Webhook deliveries still in progress, they will be sent again on startup");
+            }
+        }
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+    }
+
+    @Override
+    protected void runOneIteration() {
+        if (executor == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (!wakeUp.getAndSet(false) && now - lastPollTime < POLL_INTERVAL) {
+            return;
+        }
+        lastPollTime = now;
+
+        try {
+            deliverDue();
+            if (now - lastCleanupTime > TimeUnit.HOURS.toMillis(1)) {
+                lastCleanupTime = now;
+                Date date = new Date(now - TimeUnit.DAYS.toMillis(RETENTION_DAYS));
+                TransactionUtil.handle(() -> new WebhookDeliveryDao().deleteFinishedBefore(date));
+            }
+        } catch (Throwable e) {
+            log.error("Exception during webhook delivery service iteration", e);
+        }
+    }
+
+    @Override
+    protected Scheduler scheduler() {
+        return Scheduler.newFixedDelaySchedule(1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Store the deliveries of an event to the webhooks listening to it, in the current transaction.
+     * They are sent once the transaction is committed and the service woken up.
+     *
+     * @param event Event
+     * @param entityId ID of the document or file
+     */
+    public void enqueue(WebhookEvent event, String entityId) {
+        WebhookDeliveryDao webhookDeliveryDao = new WebhookDeliveryDao();
+        List<WebhookDto> webhookDtoList = new WebhookDao().findByCriteria(new WebhookCriteria().setEvent(event), null);
+        for (WebhookDto webhookDto : webhookDtoList) {
+            webhookDeliveryDao.create(new WebhookDelivery()
+                    .setWebhookId(webhookDto.getId())
+                    .setEvent(event)
+                    .setEntityId(entityId)
+                    .setStatus(WebhookDeliveryStatus.PENDING)
+                    .setAttemptCount(0)
+                    .setNextAttemptDate(new Date()));
+        }
+    }
+
+    /**
+     * Send the deliveries stored since the last lookup.
+     */
+    public void wakeUp() {
+        if (executor == null) {
+            deliverDue();
+        } else {
+            wakeUp.set(true);
+        }
+    }
+
+    /**
+     * Send the due deliveries, grouped in batches by endpoint.
+     * The due deliveries are loaded by endpoint, only for the endpoints with fewer batches in progress than allowed,
+     * so that the backlog of a slow endpoint doesn't hide the deliveries of the others.
+     */
+    void deliverDue() {
+        // Claim the batches allowed to be sent now
+        List<List<WebhookDeliveryDto>> batchList = new ArrayList<>();
+        List<Semaphore> permitList = new ArrayList<>();
+        TransactionUtil.handle(() -> {
+            WebhookDeliveryDao webhookDeliveryDao = new WebhookDeliveryDao();
+            for (String url : webhookDeliveryDao.findDueUrls()) {
+                Semaphore permits = endpointPermitMap.computeIfAbsent(url, k -> new Semaphore(endpointConcurrency));
+                int availablePermits = permits.availablePermits();
+                if (availablePermits == 0) {
+                    // Enough batches in progress for this endpoint, it will be looked up again when one is finished
+                    continue;
+                }
+
+                for (List<WebhookDeliveryDto> batch : Lists.partition(webhookDeliveryDao.findDue(url, availablePermits * BATCH_SIZE), BATCH_SIZE)) {
+                    if (!permits.tryAcquire()) {
+                        break;
+                    }
+                    List<WebhookDeliveryDto> claimedBatch = new ArrayList<>();
+                    for (WebhookDeliveryDto webhookDeliveryDto : batch) {
+                        if (webhookDeliveryDao.claim(webhookDeliveryDto.getId())) {
+                            claimedBatch.add(webhookDeliveryDto);
+                        }
+                    }
+                    if (claimedBatch.isEmpty()) {
+                        permits.release();
+                    } else {
+                        batchList.add(claimedBatch);
+                        permitList.add(permits);
+                    }
+                }
+            }
+        });
+
+        // Send the batches once claimed
+        for (int i = 0; i < batchList.size(); i++) {
+            List<WebhookDeliveryDto> batch = batchList.get(i);
+            Semaphore permits = permitList.get(i);
+            Runnable runnable = () -> {
+                try {
+                    deliver(batch);
+                } finally {
+                    permits.release();
+                    wakeUp.set(true);
+                }
+            };
+            if (executor == null) {
+                runnable.run();
+            } else {
+                executor.execute(runnable);
+            }
+        }
+    }
+
+    /**
+     * Send a batch of deliveries to the same endpoint, one after the other.
+     * If the endpoint is unreachable, the rest of the batch is postponed without counting an attempt.
+     *
+     * @param batch Deliveries
+     */
+    private void deliver(List<WebhookDeliveryDto> batch) {
+        Map<String, String> errorMap = new HashMap<>();
+        Set<String> sentIdSet = new HashSet<>();
+        String unreachableError = null;
+        for (WebhookDeliveryDto webhookDeliveryDto : batch) {
+            if (unreachableError != null) {
+                break;
+            }
+
+            RequestBody body = RequestBody.create("{\"event\": \"" + webhookDeliveryDto.getEvent()
+                    + "\", \"id\": \"" + webhookDeliveryDto.getEntityId() + "\"}", JSON);
+            Request request = new Request.Builder()
+                    .url(webhookDeliveryDto.getUrl())
+                    .post(body)
+                    .build();
+            long startTime = System.currentTimeMillis();
+            try (Response response = client.newCall(request).execute()) {
+                if (response.isSuccessful()) {
+                    sentIdSet.add(webhookDeliveryDto.getId());
+                    log.info("Successfully called the webhook at: " + webhookDeliveryDto.getUrl() + " - " + response.code());
+                } else {
+                    errorMap.put(webhookDeliveryDto.getId(), "HTTP " + response.code());
+                    log.warn("Error calling the webhook at: " + webhookDeliveryDto.getUrl() + " - " + response.code());
+                }
+            } catch (IOException e) {
+                unreachableError = e.getClass().getSimpleName() + ": " + e.getMessage();
+                errorMap.put(webhookDeliveryDto.getId(), unreachableError);
+                log.warn("Error calling the webhook at: " + webhookDeliveryDto.getUrl() + " - " + unreachableError);
+            } finally {
+                totalLatency.addAndGet(System.currentTimeMillis() - startTime);
+            }
+        }
+
+        // Save the results
+        String postponedError = unreachableError;
+        TransactionUtil.handle(() -> {
+            WebhookDeliveryDao webhookDeliveryDao = new WebhookDeliveryDao();
+            for (WebhookDeliveryDto webhookDeliveryDto : batch) {
+                WebhookDelivery webhookDelivery = webhookDeliveryDao.getById(webhookDeliveryDto.getId());
+                if (webhookDelivery == null) {
+                    continue;
+                }
+
+                if (sentIdSet.contains(webhookDelivery.getId())) {
+                    webhookDelivery.setStatus(WebhookDeliveryStatus.SENT);
+                    webhookDelivery.setDeliveryDate(new Date());
+                    sent.incrementAndGet();
+                    continue;
+                }
+
+                int attemptCount = webhookDelivery.getAttemptCount();
+                String error = errorMap.get(webhookDelivery.getId());
+                if (error == null) {
+                    // Not attempted, the endpoint is unreachable
+                    error = postponedError;
+                } else {
+                    attemptCount++;
+                }
+                webhookDelivery.setAttemptCount(attemptCount);
+                webhookDelivery.setLastError(StringUtils.abbreviate(error, 500));
+                if (attemptCount >= maxAttempts) {
+                    webhookDelivery.setStatus(WebhookDeliveryStatus.FAILED);
+                    failed.incrementAndGet();
+                    log.error("Giving up calling the webhook at: " + webhookDeliveryDto.getUrl() + " after " + attemptCount + " attempts");
+                } else {
+                    webhookDelivery.setStatus(WebhookDeliveryStatus.PENDING);
+                    webhookDelivery.setNextAttemptDate(new Date(System.currentTimeMillis() + getRetryDelay(Math.max(attemptCount, 1))));
+                    retried.incrementAndGet();
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the delay before the next attempt.
+     *
+     * @param attemptCount Number of failed attempts
+     * @return Delay in milliseconds
+     */
+    static long getRetryDelay(int attemptCount) {
+        long delay = RETRY_BASE_DELAY << Math.min(attemptCount - 1, 20);
+        delay = TimeUnit.SECONDS.toMillis(Math.min(delay, RETRY_MAX_DELAY));
+
+        // Spread the retries of the deliveries failed together
+        return delay + ThreadLocalRandom.current().nextLong(delay / 10 + 1);
+    }
+
+    /**
+     * Returns the delivery statistics.
+     *
+     * @return Statistics
+     */
+    public DeliveryStats getStats() {
+        return new DeliveryStats();
+    }
+
+    /**
+     * Delivery statistics since startup.
+     */
+    public class DeliveryStats {
+        public long getSent() {
+            return sent.get();
+        }
+
+        public long getRetried() {
+            return retried.get();
+        }
+
+        public long getFailed() {
+            return failed.get();
+        }
+
+        /**
+         * Returns the average time spent sending a delivery.
+         *
+         * @return Average latency (in milliseconds)
+         */
+        public long getAverageLatency() {
+            long count = sent.get() + retried.get() + failed.get();
+            return count == 0 ? 0 : totalLatency.get() / count;
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.sismics.docs.core.util;
 
+import com.google.common.base.Strings;
 import com.sismics.docs.core.constant.ConfigType;
 import com.sismics.docs.core.dao.ConfigDao;
 import com.sismics.docs.core.model.jpa.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ResourceBundle;
 
@@ -11,6 +14,11 @@ import java.util.ResourceBundle;
  *
  */
 public class ConfigUtil {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(ConfigUtil.class);
+
     /**
      * Returns the textual value of a configuration parameter.
      *
@@ -88,4 +96,51 @@ public class ConfigUtil {
             return defaultValue;
         }
     }
+
+    /**
+     * Returns the boolean value of an environment variable with a default value.
+     *
+     * @param name Name of the environment variable
+     * @param defaultValue Default value to return if the environment variable is undefined
+     * @return Boolean value of the environment variable
+     */
+    public static boolean getEnvBooleanValue(String name, boolean defaultValue) {
+        String value = System.getenv(name);
+        if (Strings.isNullOrEmpty(value)) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value);
+    }
+
+    /**
+     * Returns the integer value of an environment variable with a default value.
+     *
+     * @param name Name of the environment variable
+     * @param defaultValue Default value to return if the environment variable is undefined or invalid
+     * @return Integer value of the environment variable
+     */
+    public static int getEnvIntegerValue(String name, int defaultValue) {
+        return (int) getEnvLongValue(name, defaultValue);
+    }
+
+    /**
+     * Returns the long value of an environment variable with a default value.
+     *
+     * @param name Name of the environment variable
+     * @param defaultValue Default value to return if the environment variable is undefined or invalid
+     * @return Long value of the environment variable
+     */
+    public static long getEnvLongValue(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (Strings.isNullOrEmpty(value)) {
+            return defaultValue;
+        }
+
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            log.warn(name + " needs to be a number. Falling back to " + defaultValue + ".");
+            return defaultValue;
+        }
+    }
 }
@@ -68,6 +68,24 @@ public class DirectoryUtil {
         return getDataSubDirectory("lucene");
     }
     
+    /**
+     * Returns the directory of the lucene indexes being rebuilt.
+     *
+     * @return Lucene rebuild directory.
+     */
+    public static Path getLuceneRebuildDirectory() {
+        return getDataSubDirectory("lucene-rebuild");
+    }
+
+    /**
+     * Returns the search suggester directory.
+     *
+     * @return Suggester directory.
+     */
+    public static Path getSuggesterDirectory() {
+        return getDataSubDirectory("suggester");
+    }
+
     /**
      * Returns the storage directory.
      * 
@@ -77,6 +95,15 @@ public class DirectoryUtil {
         return getDataSubDirectory("storage");
     }
     
+    /**
+     * Returns the temporary files directory.
+     *
+     * @return Temporary files directory.
+     */
+    public static Path getTemporaryDirectory() {
+        return getDataSubDirectory("temp");
+    }
+
     /**
      * Returns the log directory.
      * 
@@ -1,6 +1,9 @@
 package com.sismics.docs.core.util;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.ByteStreams;
 import com.sismics.docs.core.model.context.AppContext;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
@@ -8,6 +11,7 @@ import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.PBEKeySpec;
 import java.io.InputStream;
 import java.math.BigInteger;
@@ -17,6 +21,7 @@ import java.nio.file.StandardCopyOption;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.Security;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Encryption utilities.
@@ -28,6 +33,15 @@ public class EncryptionUtil {
      * Salt.
      */
     private static final String SALT = "LEpxZmm2SMu2PeKzPNrar2rhVAS6LrrgvXKeL9uyXC4vgKHg";
+
+    /**
+     * Secret keys derived from the private keys.
+     * The derivation is slow by design, and done for every file read or written.
+     */
+    private static final Cache<String, SecretKey> secretKeyCache = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
     
     static {
         // Initialize Bouncy Castle provider
@@ -62,22 +76,60 @@ public class EncryptionUtil {
     }
 
     /**
-     * Decrypt a file to a temporary file using the specified private key.
+     * Decrypt an InputStream from an offset using the specified private key.
+     * The counter of the CTR mode is computed for the offset, the data before it is skipped without being decrypted.
      *
-     * @param file Encrypted file
+     * @param is InputStream to decrypt, positioned at the beginning of the encrypted data
      * @param privateKey Private key
-     * @return Decrypted temporary file
+     * @param offset Offset of the first byte to decrypt
+     * @return Decrypted stream starting at the offset
      * @throws Exception e
      */
-    public static Path decryptFile(Path file, String privateKey) throws Exception {
-        if (privateKey == null) {
-            // For unit testing
-            return file;
+    public static InputStream decryptInputStream(InputStream is, String privateKey, long offset) throws Exception {
+        if (offset == 0) {
+            return decryptInputStream(is, privateKey);
+        }
+
+        // Start the counter at the block containing the offset
+        Cipher cipher = getCipher(privateKey, Cipher.DECRYPT_MODE);
+        int blockSize = cipher.getBlockSize();
+        long blockIndex = offset / blockSize;
+        byte[] iv = cipher.getIV();
+        byte[] counter = new BigInteger(1, iv).add(BigInteger.valueOf(blockIndex)).toByteArray();
+        byte[] blockCounter = new byte[iv.length];
+        for (int i = 1; i <= Math.min(counter.length, blockCounter.length); i++) {
+            // Keep the lowest bytes, the counter wraps around
+            blockCounter[blockCounter.length - i] = counter[counter.length - i];
         }
+        cipher.init(Cipher.DECRYPT_MODE, getSecretKey(privateKey), new IvParameterSpec(blockCounter));
 
-        Path tmpFile = AppContext.getInstance().getFileService().createTemporaryFile();
+        // Skip the encrypted data before this block, then the decrypted data before the offset
+        ByteStreams.skipFully(is, blockIndex * blockSize);
+        InputStream decryptedStream = new CipherInputStream(is, cipher);
+        ByteStreams.skipFully(decryptedStream, offset - blockIndex * blockSize);
+        return decryptedStream;
+    }
+
+    /**
+     * Decrypt a file to a temporary file using the specified private key.
+     *
+     * @param file Encrypted file
+     * @param privateKey Private key
+     * @return Decrypted temporary file, to be closed by the caller
+     * @throws Exception e
+     */
+    public static TemporaryFile decryptFile(Path file, String privateKey) throws Exception {
+        TemporaryFile tmpFile = AppContext.getInstance().getFileService().createTemporaryFile();
         try (InputStream is = Files.newInputStream(file)) {
-            Files.copy(new CipherInputStream(is, getCipher(privateKey, Cipher.DECRYPT_MODE)), tmpFile, StandardCopyOption.REPLACE_EXISTING);
+            if (privateKey == null) {
+                // For unit testing
+                Files.copy(is, tmpFile.getPath(), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.copy(new CipherInputStream(is, getCipher(privateKey, Cipher.DECRYPT_MODE)), tmpFile.getPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (Exception e) {
+            tmpFile.close();
+            throw e;
         }
         return tmpFile;
     }
@@ -105,11 +157,34 @@ public class EncryptionUtil {
      * @throws Exception e
      */
     private static Cipher getCipher(String privateKey, int mode) throws Exception {
-        PBEKeySpec keySpec = new PBEKeySpec(privateKey.toCharArray(), SALT.getBytes(), 2000, 256);
-        SecretKeyFactory skf = SecretKeyFactory.getInstance("PBEWITHSHA256AND256BITAES-CBC-BC");
-        SecretKey desKey = skf.generateSecret(keySpec);
         Cipher cipher = Cipher.getInstance("AES/CTR/NOPADDING");
-        cipher.init(mode, desKey);
+        cipher.init(mode, getSecretKey(privateKey));
         return cipher;
     }
+
+    /**
+     * Returns the secret key derived from a private key.
+     *
+     * @param privateKey Private key
+     * @return Secret key
+     * @throws Exception e
+     */
+    static SecretKey getSecretKey(String privateKey) throws Exception {
+        return secretKeyCache.get(privateKey, () -> {
+            PBEKeySpec keySpec = new PBEKeySpec(privateKey.toCharArray(), SALT.getBytes(), 2000, 256);
+            SecretKeyFactory skf = SecretKeyFactory.getInstance("PBEWITHSHA256AND256BITAES-CBC-BC");
+            return skf.generateSecret(keySpec);
+        });
+    }
+
+    /**
+     * Forget the secret key derived from a private key.
+     *
+     * @param privateKey Private key
+     */
+    public static void invalidateSecretKey(String privateKey) {
+        if (privateKey != null) {
+            secretKeyCache.invalidate(privateKey);
+        }
+    }
 }
@@ -2,8 +2,10 @@ package com.sismics.docs.core.util;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
+import com.google.common.io.BaseEncoding;
 import com.google.common.io.CharStreams;
 import com.sismics.docs.core.constant.Constants;
+import com.sismics.docs.core.constant.FileProcessingPriority;
 import com.sismics.docs.core.dao.FileDao;
 import com.sismics.docs.core.dao.UserDao;
 import com.sismics.docs.core.event.DocumentUpdatedAsyncEvent;
@@ -11,6 +13,7 @@ import com.sismics.docs.core.event.FileCreatedAsyncEvent;
 import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.File;
 import com.sismics.docs.core.model.jpa.User;
+import com.sismics.docs.core.util.format.FormatHandlerUtil;
 import com.sismics.util.ImageDeskew;
 import com.sismics.util.Scalr;
 import com.sismics.util.context.ThreadLocalContext;
@@ -25,15 +28,22 @@ import org.slf4j.LoggerFactory;
 
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.Semaphore;
 
 /**
  * File entity utilities.
@@ -46,13 +56,40 @@ public class FileUtil {
      */
     private static final Logger log = LoggerFactory.getLogger(FileUtil.class);
 
+    /**
+     * Algorithm of the content hashes.
+     */
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    /**
+     * True if the files with identical content are stored once.
+     */
+    private static final boolean DEDUPLICATION = ConfigUtil.getEnvBooleanValue(Constants.FILE_DEDUPLICATION_ENV, false);
+
     /**
      * File ID of files currently being processed.
      */
     private static final Set<String> processingFileSet = Collections.synchronizedSet(new HashSet<>());
+
+    /**
+     * Number of bytes read to guess the MIME type of a stream.
+     */
+    private static final int MIME_HEADER_SIZE = 64;
+
+    /**
+     * Size of the buffer used to copy a stream.
+     */
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Permits to run a tesseract process, shared by all OCR-izing threads.
+     */
+    private static final Semaphore ocrProcessSemaphore = new Semaphore(
+            ConfigUtil.getEnvIntegerValue(Constants.OCR_MAX_PROCESSES_ENV, Runtime.getRuntime().availableProcessors()), true);
     
     /**
      * Optical character recognition on an image.
+     * The number of tesseract processes running at the same time is limited, the caller waits for a free slot.
      *
      * @param language Language to OCR
      * @param image Buffered image
@@ -66,25 +103,32 @@ public class FileUtil {
         ImageDeskew imageDeskew = new ImageDeskew(resizedImage);
         BufferedImage deskewedImage = Scalr.rotate(resizedImage, - imageDeskew.getSkewAngle(), Scalr.OP_ANTIALIAS, Scalr.OP_GRAYSCALE);
         resizedImage.flush();
-        Path tmpFile = AppContext.getInstance().getFileService().createTemporaryFile();
-        ImageIO.write(deskewedImage, "tiff", tmpFile.toFile());
+        try (TemporaryFile tmpFile = AppContext.getInstance().getFileService().createTemporaryFile()) {
+            ImageIO.write(deskewedImage, "tiff", tmpFile.getPath().toFile());
 
-        List<String> result = Lists.newLinkedList(Arrays.asList("tesseract", tmpFile.toAbsolutePath().toString(), "stdout", "-l", language));
-        ProcessBuilder pb = new ProcessBuilder(result);
-        Process process = pb.start();
+            List<String> result = Lists.newLinkedList(Arrays.asList("tesseract", tmpFile.getPath().toAbsolutePath().toString(), "stdout", "-l", language));
+            ProcessBuilder pb = new ProcessBuilder(result);
+            ocrProcessSemaphore.acquire();
+            try {
+                Process process = pb.start();
 
-        // Consume the process error stream
-        final String commandName = pb.command().get(0);
-        new InputStreamReaderThread(process.getErrorStream(), commandName).start();
+                // Consume the process error stream
+                final String commandName = pb.command().get(0);
+                new InputStreamReaderThread(process.getErrorStream(), commandName).start();
 
-        // Consume the data as text
-        try (InputStream is = process.getInputStream()) {
-            return CharStreams.toString(new InputStreamReader(is, StandardCharsets.UTF_8));
+                // Consume the data as text
+                try (InputStream is = process.getInputStream()) {
+                    return CharStreams.toString(new InputStreamReader(is, StandardCharsets.UTF_8));
+                }
+            } finally {
+                ocrProcessSemaphore.release();
+            }
         }
     }
 
     /**
      * Remove a file from the storage filesystem.
+     * The stored files can be links shared with identical files, their content is freed with the last link.
      * 
      * @param fileId ID of file to delete
      */
@@ -92,6 +136,7 @@ public class FileUtil {
         Path storedFile = DirectoryUtil.getStorageDirectory().resolve(fileId);
         Path webFile = DirectoryUtil.getStorageDirectory().resolve(fileId + "_web");
         Path thumbnailFile = DirectoryUtil.getStorageDirectory().resolve(fileId + "_thumb");
+        Path pdfFile = DirectoryUtil.getStorageDirectory().resolve(fileId + "_pdf");
         
         if (Files.exists(storedFile)) {
             Files.delete(storedFile);
@@ -102,6 +147,9 @@ public class FileUtil {
         if (Files.exists(thumbnailFile)) {
             Files.delete(thumbnailFile);
         }
+        if (Files.exists(pdfFile)) {
+            Files.delete(pdfFile);
+        }
     }
 
     /**
@@ -109,40 +157,236 @@ public class FileUtil {
      *
      * @param name File name, can be null
      * @param previousFileId ID of the previous version of the file, if the new file is a new version
-     * @param unencryptedFile Path to the unencrypted file
+     * @param unencryptedFile Unencrypted file, retained for its processing
      * @param fileSize File size
      * @param language File language, can be null if associated to no document
      * @param userId User ID creating the file
      * @param documentId Associated document ID or null if no document
+     * @param priority Priority of the file processing
      * @return File ID
      * @throws Exception e
      */
-    public static String createFile(String name, String previousFileId, Path unencryptedFile, long fileSize, String language, String userId, String documentId) throws Exception {
+    public static String createFile(String name, String previousFileId, TemporaryFile unencryptedFile, long fileSize, String language, String userId, String documentId,
+                                    FileProcessingPriority priority) throws Exception {
         // Validate mime type
         String mimeType;
         try {
-            mimeType = MimeTypeUtil.guessMimeType(unencryptedFile, name);
+            mimeType = MimeTypeUtil.guessMimeType(unencryptedFile.getPath(), name);
         } catch (IOException e) {
             throw new IOException("ErrorGuessMime", e);
         }
 
-        // Validate user quota
+        // Validate quota
         UserDao userDao = new UserDao();
         User user = userDao.getById(userId);
-        if (user.getStorageCurrent() + fileSize > user.getStorageQuota()) {
+        if (fileSize > getRemainingQuota(user)) {
             throw new IOException("QuotaReached");
         }
 
-        // Validate global quota
+        // Create the file
+        File file = prepareFile(name, previousFileId, mimeType, fileSize, userId, documentId);
+
+        // Save the file
+        Cipher cipher = EncryptionUtil.getEncryptionCipher(user.getPrivateKey());
+        Path path = DirectoryUtil.getStorageDirectory().resolve(file.getId());
+        MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        try (InputStream inputStream = new DigestInputStream(Files.newInputStream(unencryptedFile.getPath()), digest)) {
+            Files.copy(new CipherInputStream(inputStream, cipher), path);
+        }
+        file.setHash(BaseEncoding.base16().lowerCase().encode(digest.digest()));
+
+        boolean processed = DEDUPLICATION && deduplicate(file);
+        fileCreated(file, user, unencryptedFile.retain(), language, priority, processed);
+        return file.getId();
+    }
+
+    /**
+     * Create a new file from a stream, read only once.
+     * The file is encrypted to the storage while it is read, its size and MIME type are computed on the fly.
+     * An unencrypted copy is kept for the processing only if the file format is handled and the file is not too large,
+     * otherwise the processing decrypts the stored file if needed.
+     *
+     * @param name File name, can be null
+     * @param previousFileId ID of the previous version of the file, if the new file is a new version
+     * @param inputStream Unencrypted file content, not closed
+     * @param language File language, can be null if associated to no document
+     * @param userId User ID creating the file
+     * @param documentId Associated document ID or null if no document
+     * @param priority Priority of the file processing
+     * @return File ID
+     * @throws Exception e
+     */
+    public static String createFile(String name, String previousFileId, InputStream inputStream, String language, String userId, String documentId,
+                                    FileProcessingPriority priority) throws Exception {
+        // Validate mime type from the first bytes
+        BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream, STREAM_BUFFER_SIZE);
+        String mimeType;
+        try {
+            bufferedInputStream.mark(MIME_HEADER_SIZE);
+            byte[] header = bufferedInputStream.readNBytes(MIME_HEADER_SIZE);
+            bufferedInputStream.reset();
+            mimeType = MimeTypeUtil.guessMimeType(header, name);
+        } catch (IOException e) {
+            throw new IOException("ErrorGuessMime", e);
+        }
+
+        // The quota is validated while reading
+        UserDao userDao = new UserDao();
+        User user = userDao.getById(userId);
+        long remainingQuota = getRemainingQuota(user);
+
+        // Create the file
+        File file = prepareFile(name, previousFileId, mimeType, File.UNKNOWN_SIZE, userId, documentId);
+
+        // Save the file, and spool it if it will be processed
+        Cipher cipher = EncryptionUtil.getEncryptionCipher(user.getPrivateKey());
+        Path path = DirectoryUtil.getStorageDirectory().resolve(file.getId());
+        TemporaryFile spoolFile = null;
+        OutputStream spoolStream = null;
+        long spoolSize = ConfigUtil.getEnvLongValue(Constants.UPLOAD_SPOOL_SIZE_ENV, 512L * 1024 * 1024);
+        long fileSize = 0;
+        MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        try {
+            if (FormatHandlerUtil.find(mimeType) != null && spoolSize > 0) {
+                spoolFile = AppContext.getInstance().getFileService().createTemporaryFile(name);
+                spoolStream = Files.newOutputStream(spoolFile.getPath());
+            }
+
+            try (OutputStream outputStream = new CipherOutputStream(Files.newOutputStream(path), cipher)) {
+                byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+                int length;
+                while ((length = bufferedInputStream.read(buffer)) != -1) {
+                    fileSize += length;
+                    if (fileSize > remainingQuota) {
+                        throw new IOException("QuotaReached");
+                    }
+                    outputStream.write(buffer, 0, length);
+                    digest.update(buffer, 0, length);
+
+                    if (spoolStream != null) {
+                        if (fileSize > spoolSize) {
+                            // Too large to be kept twice on disk
+                            spoolStream.close();
+                            spoolStream = null;
+                            spoolFile.close();
+                            spoolFile = null;
+                        } else {
+                            spoolStream.write(buffer, 0, length);
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Files.deleteIfExists(path);
+            if (spoolFile != null) {
+                IOUtils.closeQuietly(spoolStream);
+                spoolFile.close();
+            }
+            throw e;
+        }
+        if (spoolStream != null) {
+            spoolStream.close();
+        }
+        file.setSize(fileSize);
+        file.setHash(BaseEncoding.base16().lowerCase().encode(digest.digest()));
+
+        boolean processed = DEDUPLICATION && deduplicate(file);
+        fileCreated(file, user, spoolFile, language, priority, processed);
+        return file.getId();
+    }
+
+    /**
+     * Share the stored content of an identical file of the same user, and reuse its processing results if available.
+     * Identical files are encrypted with the same key, so their stored content is linked to a single copy.
+     *
+     * @param file Created file, its hash must be known
+     * @return True if the processing results of the identical file have been reused
+     */
+    static boolean deduplicate(File file) {
+        FileDao fileDao = new FileDao();
+        File duplicate = fileDao.getDuplicate(file.getUserId(), file.getHash(), file.getId());
+        if (duplicate == null) {
+            return false;
+        }
+
+        Path storageDirectory = DirectoryUtil.getStorageDirectory();
+        if (!link(storageDirectory.resolve(duplicate.getId()), storageDirectory.resolve(file.getId()))) {
+            return false;
+        }
+        log.info("File " + file.getId() + " stored as a duplicate of " + duplicate.getId());
+
+        if (isProcessingFile(duplicate.getId())) {
+            // The processing results are not available yet
+            return false;
+        }
+
+        // Reuse the thumbnails, the PDF rendition and the extracted content
+        for (String suffix : new String[] { "_web", "_thumb", "_pdf" }) {
+            Path source = storageDirectory.resolve(duplicate.getId() + suffix);
+            if (Files.exists(source) && !link(source, storageDirectory.resolve(file.getId() + suffix))) {
+                return false;
+            }
+        }
+        file.setContent(fileDao.getContent(duplicate.getId()));
+        fileDao.updateContent(file.getId(), file.getContent());
+        return true;
+    }
+
+    /**
+     * Replace a stored file by a hard link to another stored file.
+     *
+     * @param source Stored file to link to
+     * @param target Stored file to replace
+     * @return True if the link has been created, false if the stored files are left unchanged
+     */
+    private static boolean link(Path source, Path target) {
+        Path link = target.resolveSibling(target.getFileName() + "_link");
+        try {
+            Files.createLink(link, source);
+            Files.move(link, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            // The stored file has been deleted meanwhile, or the filesystem does not support links
+            log.warn("Unable to link " + target + " to " + source, e);
+            try {
+                Files.deleteIfExists(link);
+            } catch (IOException e2) {
+                log.error("Unable to delete " + link, e2);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Returns the storage available to a user, according to its quota and the global quota.
+     *
+     * @param user User
+     * @return Available storage (in bytes)
+     */
+    private static long getRemainingQuota(User user) {
+        long remainingQuota = user.getStorageQuota() - user.getStorageCurrent();
         String globalStorageQuotaStr = System.getenv(Constants.GLOBAL_QUOTA_ENV);
         if (!Strings.isNullOrEmpty(globalStorageQuotaStr)) {
             long globalStorageQuota = Long.parseLong(globalStorageQuotaStr);
-            long globalStorageCurrent = userDao.getGlobalStorageCurrent();
-            if (globalStorageCurrent + fileSize > globalStorageQuota) {
-                throw new IOException("QuotaReached");
-            }
+            long globalStorageCurrent = new UserDao().getGlobalStorageCurrent();
+            remainingQuota = Math.min(remainingQuota, globalStorageQuota - globalStorageCurrent);
         }
+        return remainingQuota;
+    }
 
+    /**
+     * Create the file entity, and update the previous version of the file.
+     *
+     * @param name File name, can be null
+     * @param previousFileId ID of the previous version of the file, if the new file is a new version
+     * @param mimeType MIME type
+     * @param fileSize File size
+     * @param userId User ID creating the file
+     * @param documentId Associated document ID or null if no document
+     * @return Created file
+     * @throws IOException e
+     */
+    private static File prepareFile(String name, String previousFileId, String mimeType, long fileSize, String userId, String documentId) throws IOException {
         // Prepare the file
         File file = new File();
         file.setOrder(0);
@@ -183,36 +427,50 @@ public class FileUtil {
         }
 
         // Create the file
-        String fileId = fileDao.create(file, userId);
-
-        // Save the file
-        Cipher cipher = EncryptionUtil.getEncryptionCipher(user.getPrivateKey());
-        Path path = DirectoryUtil.getStorageDirectory().resolve(file.getId());
-        try (InputStream inputStream = Files.newInputStream(unencryptedFile)) {
-            Files.copy(new CipherInputStream(inputStream, cipher), path);
-        }
+        fileDao.create(file, userId);
+        return file;
+    }
 
+    /**
+     * Update the user quota and raise the events of a created file.
+     *
+     * @param file Created file
+     * @param user User creating the file
+     * @param unencryptedFile Unencrypted file released by the processing, null to decrypt the stored file for its processing
+     * @param language File language, can be null if associated to no document
+     * @param priority Priority of the file processing
+     * @param processed True if the processing results of an identical file have been reused
+     */
+    private static void fileCreated(File file, User user, TemporaryFile unencryptedFile, String language, FileProcessingPriority priority,
+                                    boolean processed) {
         // Update the user quota
-        user.setStorageCurrent(user.getStorageCurrent() + fileSize);
+        UserDao userDao = new UserDao();
+        user.setStorageCurrent(user.getStorageCurrent() + file.getSize());
         userDao.updateQuota(user);
 
         // Raise a new file created event and document updated event if we have a document
-        startProcessingFile(fileId);
         FileCreatedAsyncEvent fileCreatedAsyncEvent = new FileCreatedAsyncEvent();
-        fileCreatedAsyncEvent.setUserId(userId);
+        fileCreatedAsyncEvent.setUserId(user.getId());
         fileCreatedAsyncEvent.setLanguage(language);
         fileCreatedAsyncEvent.setFileId(file.getId());
-        fileCreatedAsyncEvent.setUnencryptedFile(unencryptedFile);
+        fileCreatedAsyncEvent.setPriority(priority);
+        if (processed) {
+            fileCreatedAsyncEvent.setProcessed(true);
+            if (unencryptedFile != null) {
+                unencryptedFile.close();
+            }
+        } else {
+            startProcessingFile(file.getId());
+            fileCreatedAsyncEvent.setUnencryptedFile(unencryptedFile);
+        }
         ThreadLocalContext.get().addAsyncEvent(fileCreatedAsyncEvent);
 
-        if (documentId != null) {
+        if (file.getDocumentId() != null) {
             DocumentUpdatedAsyncEvent documentUpdatedAsyncEvent = new DocumentUpdatedAsyncEvent();
-            documentUpdatedAsyncEvent.setUserId(userId);
-            documentUpdatedAsyncEvent.setDocumentId(documentId);
+            documentUpdatedAsyncEvent.setUserId(user.getId());
+            documentUpdatedAsyncEvent.setDocumentId(file.getDocumentId());
             ThreadLocalContext.get().addAsyncEvent(documentUpdatedAsyncEvent);
         }
-
-        return fileId;
     }
 
     /**
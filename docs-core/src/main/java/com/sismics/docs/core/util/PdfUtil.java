@@ -10,6 +10,7 @@ import com.sismics.docs.core.dao.dto.DocumentDto;
 import com.sismics.docs.core.model.jpa.File;
 import com.sismics.docs.core.util.format.FormatHandler;
 import com.sismics.docs.core.util.format.FormatHandlerUtil;
+import com.sismics.docs.core.util.format.PdfFormatHandler;
 import com.sismics.docs.core.util.pdf.PdfPage;
 import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -105,16 +106,26 @@ public class PdfUtil {
             for (File file : fileList) {
                 Path storedFile = DirectoryUtil.getStorageDirectory().resolve(file.getId());
 
-                // Decrypt the file to a temporary file
-                Path unencryptedFile = EncryptionUtil.decryptFile(storedFile, file.getPrivateKey());
+                // Merge the PDF rendition generated when the file was processed, the file is not converted again
+                Path pdfRendition = DirectoryUtil.getStorageDirectory().resolve(file.getId() + "_pdf");
+                if (Files.exists(pdfRendition)) {
+                    TemporaryFile unencryptedRendition = closer.register(EncryptionUtil.decryptFile(pdfRendition, file.getPrivateKey()));
+                    new PdfFormatHandler().appendToPdf(unencryptedRendition.getPath(), doc, fitImageToPage, margin, memUsageSettings, closer);
+                    continue;
+                }
+
+                // Decrypt the file to a temporary file, deleted after the PDF is written
+                TemporaryFile unencryptedFile = closer.register(EncryptionUtil.decryptFile(storedFile, file.getPrivateKey()));
                 FormatHandler formatHandler = FormatHandlerUtil.find(file.getMimeType());
                 if (formatHandler != null) {
-                    formatHandler.appendToPdf(unencryptedFile, doc, fitImageToPage, margin, memUsageSettings, closer);
+                    closer.register(formatHandler);
+                    formatHandler.appendToPdf(unencryptedFile.getPath(), doc, fitImageToPage, margin, memUsageSettings, closer);
                 }
             }
             
             doc.save(outputStream); // Write to the output stream
-            closer.close(); // Close all remaining opened PDF
+        } finally {
+            closer.close(); // Close all remaining opened PDF and temporary files
         }
     }
 
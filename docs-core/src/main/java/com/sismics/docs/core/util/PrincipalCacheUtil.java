@@ -0,0 +1,92 @@
+package com.sismics.docs.core.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.sismics.docs.core.constant.Constants;
+import com.sismics.docs.core.dao.dto.PrincipalDto;
+import com.sismics.docs.core.event.PrincipalInvalidatedAsyncEvent;
+import com.sismics.util.context.ThreadLocalContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of the principals resolved from the authentication tokens.
+ * Resolving a principal loads the token, the user, its groups hierarchy and its base functions,
+ * the cache avoids doing it on every authenticated request.
+ * The principals are invalidated when the tokens, users, groups or memberships change,
+ * and expire after a while in any case.
+ *
+ * @author bgamard
+ */
+public class PrincipalCacheUtil {
+    /**
+     * Principals by authentication token ID.
+     */
+    private static final Cache<String, PrincipalDto> principalCache = CacheBuilder.newBuilder()
+            .maximumSize(ConfigUtil.getEnvIntegerValue(Constants.PRINCIPAL_CACHE_SIZE_ENV, 10000))
+            .expireAfterWrite(ConfigUtil.getEnvIntegerValue(Constants.PRINCIPAL_CACHE_TTL_ENV, 60), TimeUnit.SECONDS)
+            .build();
+
+    /**
+     * Returns a cached principal.
+     *
+     * @param authenticationTokenId Authentication token ID
+     * @return Principal, null if not cached
+     */
+    public static PrincipalDto get(String authenticationTokenId) {
+        return principalCache.getIfPresent(authenticationTokenId);
+    }
+
+    /**
+     * Cache a principal.
+     *
+     * @param authenticationTokenId Authentication token ID
+     * @param principalDto Principal
+     */
+    public static void put(String authenticationTokenId, PrincipalDto principalDto) {
+        principalCache.put(authenticationTokenId, principalDto);
+    }
+
+    /**
+     * Invalidate the principal of an authentication token.
+     *
+     * @param authenticationTokenId Authentication token ID
+     */
+    public static void invalidateToken(String authenticationTokenId) {
+        principalCache.invalidate(authenticationTokenId);
+    }
+
+    /**
+     * Invalidate the principals of a user, now and after the current transaction.
+     *
+     * @param userId User ID
+     */
+    public static void invalidateUser(String userId) {
+        evictUser(userId);
+        ThreadLocalContext.get().addAsyncEvent(new PrincipalInvalidatedAsyncEvent().setUserId(userId));
+    }
+
+    /**
+     * Invalidate the principals of all users, now and after the current transaction.
+     */
+    public static void invalidateAll() {
+        evictAll();
+        ThreadLocalContext.get().addAsyncEvent(new PrincipalInvalidatedAsyncEvent());
+    }
+
+    /**
+     * Evict the principals of a user.
+     *
+     * @param userId User ID
+     */
+    public static void evictUser(String userId) {
+        principalCache.asMap().values().removeIf(principalDto -> userId.equals(principalDto.getUserId()));
+    }
+
+    /**
+     * Evict all principals.
+     */
+    public static void evictAll() {
+        principalCache.invalidateAll();
+    }
+}
@@ -0,0 +1,81 @@
+package com.sismics.docs.core.util;
+
+import com.sismics.docs.core.service.FileService;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Temporary file, deleted as soon as all its holders have closed it.
+ * The creator holds the first reference, another holder must call {@link #retain()} before sharing it.
+ *
+ * @author bgamard
+ */
+public class TemporaryFile implements Closeable {
+    /**
+     * File service managing this file.
+     */
+    private final FileService fileService;
+
+    /**
+     * Path to the file.
+     */
+    private final Path path;
+
+    /**
+     * Creation time.
+     */
+    private final long createTime = System.currentTimeMillis();
+
+    /**
+     * Number of holders of this file.
+     */
+    private final AtomicInteger referenceCount = new AtomicInteger(1);
+
+    /**
+     * Constructor.
+     *
+     * @param fileService File service managing this file
+     * @param path Path to the file
+     */
+    public TemporaryFile(FileService fileService, Path path) {
+        this.fileService = fileService;
+        this.path = path;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getCreateTime() {
+        return createTime;
+    }
+
+    /**
+     * Add a holder of this file.
+     *
+     * @return This file
+     */
+    public TemporaryFile retain() {
+        if (referenceCount.getAndUpdate(count -> count == 0 ? 0 : count + 1) == 0) {
+            throw new IllegalStateException("Temporary file already deleted: " + path);
+        }
+        return this;
+    }
+
+    /**
+     * Release this file, it is deleted when the last holder releases it.
+     */
+    @Override
+    public void close() {
+        if (referenceCount.getAndUpdate(count -> count == 0 ? 0 : count - 1) == 1) {
+            fileService.deleteTemporaryFile(this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+}
@@ -45,6 +45,7 @@ public class TransactionUtil {
         
         try {
             runnable.run();
+            context.firePreCommitEvents();
         } catch (Exception e) {
             ThreadLocalContext.cleanup();
             
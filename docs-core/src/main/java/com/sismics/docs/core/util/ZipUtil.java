@@ -0,0 +1,227 @@
+package com.sismics.docs.core.util;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.model.jpa.File;
+import com.sismics.util.mime.MimeTypeUtil;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * ZIP utilities.
+ *
+ * @author bgamard
+ */
+public class ZipUtil {
+    /**
+     * Number of threads decrypting the files.
+     */
+    private static final int DECRYPT_THREADS = Math.max(Runtime.getRuntime().availableProcessors() / 2, 1);
+
+    /**
+     * Maximum number of files prepared ahead of the ZIP stream.
+     */
+    private static final int PREFETCH_COUNT = DECRYPT_THREADS + 1;
+
+    /**
+     * Maximum number of decrypted bytes staged in temporary files by a ZIP stream.
+     */
+    private static final long STAGING_BUDGET = 64L * 1024 * 1024;
+
+    /**
+     * Executor preparing the files, shared by all ZIP streams.
+     */
+    private static final ExecutorService decryptExecutor = Executors.newFixedThreadPool(DECRYPT_THREADS,
+            new ThreadFactoryBuilder().setNameFormat("zip-decrypt-%d").setDaemon(true).build());
+
+    /**
+     * Write files to a ZIP stream.
+     * The files are deflated while they are decrypted, without intermediate copy.
+     * The files already compressed are stored without compression. As their size and CRC-32 are needed
+     * before their content, they are decrypted in parallel to temporary files while the previous files are written,
+     * up to a budget of bytes. Beyond this budget, they are streamed in deflated entries without compression.
+     * ZIP64 is used by the stream for large files.
+     *
+     * @param fileList List of files, their private key must be set
+     * @param outputStream Output stream to write to, will be closed
+     * @throws Exception e
+     */
+    public static void writeZip(List<File> fileList, OutputStream outputStream) throws Exception {
+        writeZip(fileList, outputStream, STAGING_BUDGET);
+    }
+
+    /**
+     * Write files to a ZIP stream.
+     *
+     * @param fileList List of files, their private key must be set
+     * @param outputStream Output stream to write to, will be closed
+     * @param stagingBudget Maximum number of decrypted bytes staged in temporary files
+     * @throws Exception e
+     */
+    static void writeZip(List<File> fileList, OutputStream outputStream, long stagingBudget) throws Exception {
+        Deque<Future<PreparedFile>> prefetchQueue = new ArrayDeque<>();
+        Iterator<File> fileIterator = fileList.iterator();
+        AtomicBoolean aborted = new AtomicBoolean();
+        long stagedSize = 0;
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+            int index = 0;
+            while (true) {
+                // Prepare the next files
+                while (prefetchQueue.size() < PREFETCH_COUNT && fileIterator.hasNext()) {
+                    File file = fileIterator.next();
+                    if (MimeTypeUtil.isCompressed(file.getMimeType()) && file.getSize() != null
+                            && !File.UNKNOWN_SIZE.equals(file.getSize()) && stagedSize + file.getSize() <= stagingBudget) {
+                        stagedSize += file.getSize();
+                        prefetchQueue.add(decryptExecutor.submit(() -> stage(file, aborted)));
+                    } else {
+                        // Streamed while written, nothing to prepare
+                        prefetchQueue.add(CompletableFuture.completedFuture(new PreparedFile(file)));
+                    }
+                }
+                if (prefetchQueue.isEmpty()) {
+                    break;
+                }
+
+                try (PreparedFile preparedFile = prefetchQueue.poll().get()) {
+                    File file = preparedFile.file;
+                    ZipEntry zipEntry = new ZipEntry(index + "-" + file.getFullName(Integer.toString(index)));
+                    if (preparedFile.temporaryFile == null) {
+                        // Compressed files over the budget are not compressed again
+                        zipOutputStream.setLevel(MimeTypeUtil.isCompressed(file.getMimeType()) ?
+                                Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+                        zipOutputStream.putNextEntry(zipEntry);
+                        try (InputStream inputStream = decryptInputStream(file)) {
+                            ByteStreams.copy(inputStream, zipOutputStream);
+                        }
+                    } else {
+                        zipEntry.setMethod(ZipEntry.STORED);
+                        zipEntry.setSize(preparedFile.size);
+                        zipEntry.setCompressedSize(preparedFile.size);
+                        zipEntry.setCrc(preparedFile.crc);
+                        zipOutputStream.putNextEntry(zipEntry);
+                        Files.copy(preparedFile.temporaryFile.getPath(), zipOutputStream);
+                        stagedSize -= file.getSize();
+                    }
+                    zipOutputStream.closeEntry();
+                }
+                index++;
+            }
+        } finally {
+            // Release the files staged for an aborted ZIP stream, once their running preparation is done
+            aborted.set(true);
+            for (Future<PreparedFile> future : prefetchQueue) {
+                try {
+                    future.get().close();
+                } catch (Exception e) {
+                    // The preparation has failed, nothing to release
+                }
+            }
+        }
+    }
+
+    /**
+     * Decrypt a stored file to a temporary file, computing its CRC-32.
+     *
+     * @param file File
+     * @param aborted True if the ZIP stream has been aborted, nothing is staged then
+     * @return Prepared file
+     * @throws Exception e
+     */
+    private static PreparedFile stage(File file, AtomicBoolean aborted) throws Exception {
+        if (aborted.get()) {
+            return new PreparedFile(file);
+        }
+        TemporaryFile temporaryFile = AppContext.getInstance().getFileService().createTemporaryFile();
+        try (CheckedInputStream checkedInputStream = new CheckedInputStream(decryptInputStream(file), new CRC32())) {
+            long size = Files.copy(checkedInputStream, temporaryFile.getPath(), StandardCopyOption.REPLACE_EXISTING);
+            return new PreparedFile(file, temporaryFile, size, checkedInputStream.getChecksum().getValue());
+        } catch (Exception e) {
+            temporaryFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open the decrypted content of a stored file.
+     *
+     * @param file File
+     * @return Decrypted input stream
+     * @throws Exception e
+     */
+    private static InputStream decryptInputStream(File file) throws Exception {
+        InputStream storedInputStream = Files.newInputStream(DirectoryUtil.getStorageDirectory().resolve(file.getId()));
+        try {
+            return EncryptionUtil.decryptInputStream(storedInputStream, file.getPrivateKey());
+        } catch (Exception e) {
+            storedInputStream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * A file ready to be written to the ZIP stream.
+     */
+    private static class PreparedFile implements Closeable {
+        /**
+         * File.
+         */
+        private final File file;
+
+        /**
+         * Decrypted content, null to stream the file when written.
+         */
+        private final TemporaryFile temporaryFile;
+
+        /**
+         * Size of the decrypted content.
+         */
+        private final long size;
+
+        /**
+         * CRC-32 of the decrypted content.
+         */
+        private final long crc;
+
+        /**
+         * Create a file streamed when written.
+         *
+         * @param file File
+         */
+        PreparedFile(File file) {
+            this(file, null, 0, 0);
+        }
+
+        PreparedFile(File file, TemporaryFile temporaryFile, long size, long crc) {
+            this.file = file;
+            this.temporaryFile = temporaryFile;
+            this.size = size;
+            this.crc = crc;
+        }
+
+        @Override
+        public void close() {
+            if (temporaryFile != null) {
+                temporaryFile.close();
+            }
+        }
+    }
+}
@@ -5,14 +5,16 @@ import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 
 import java.awt.image.BufferedImage;
+import java.io.Closeable;
 import java.nio.file.Path;
 
 /**
  * A format handler.
+ * The temporary files generated by a format handler are deleted when it is closed.
  *
  * @author bgamard
  */
-public interface FormatHandler {
+public interface FormatHandler extends Closeable {
     /**
      * Returns true if this format handler can handle this MIME type.
      *
@@ -40,6 +42,41 @@ public interface FormatHandler {
      */
     String extractContent(String language, Path file) throws Exception;
 
+    /**
+     * Open a processing session on a file.
+     * By default, each processing of the session parses the file again.
+     *
+     * @param file File
+     * @return Processing session, to be closed
+     * @throws Exception e
+     */
+    default FormatSession open(Path file) throws Exception {
+        FormatHandler formatHandler = this;
+        return new FormatSession() {
+            @Override
+            public BufferedImage generateThumbnail() throws Exception {
+                return formatHandler.generateThumbnail(file);
+            }
+
+            @Override
+            public String extractContent(String language) throws Exception {
+                return formatHandler.extractContent(language, file);
+            }
+        };
+    }
+
+    /**
+     * Generate a PDF rendition of a file.
+     * The rendition is stored with the file and merged as is in the PDF exports.
+     *
+     * @param file File
+     * @return PDF rendition, deleted when the format handler is closed, or null if the file has no rendition
+     * @throws Exception e
+     */
+    default Path generatePdfRendition(Path file) throws Exception {
+        return null;
+    }
+
     /**
      * Append to a PDF.
      *
@@ -52,4 +89,12 @@ public interface FormatHandler {
      * @throws Exception e
      */
     void appendToPdf(Path file, PDDocument doc, boolean fitImageToPage, int margin, MemoryUsageSetting memUsageSettings, Closer closer) throws Exception;
+
+    /**
+     * Release the resources held by this format handler.
+     */
+    @Override
+    default void close() {
+        // Nothing to release by default
+    }
 }
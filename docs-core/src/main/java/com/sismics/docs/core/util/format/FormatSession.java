@@ -0,0 +1,51 @@
+package com.sismics.docs.core.util.format;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+
+/**
+ * A processing session on a file, opened by a format handler.
+ * The file is parsed once, and all the processing results are produced from the parsed file.
+ *
+ * @author bgamard
+ */
+public interface FormatSession extends Closeable {
+    /**
+     * Page count of a format without pages.
+     */
+    int UNKNOWN_PAGE_COUNT = -1;
+
+    /**
+     * Generate a thumbnail.
+     *
+     * @return Thumbnail
+     * @throws Exception e
+     */
+    BufferedImage generateThumbnail() throws Exception;
+
+    /**
+     * Extract text content.
+     *
+     * @param language Language
+     * @return Text content
+     * @throws Exception e
+     */
+    String extractContent(String language) throws Exception;
+
+    /**
+     * Returns the number of pages.
+     *
+     * @return Number of pages or {@link #UNKNOWN_PAGE_COUNT}
+     */
+    default int getPageCount() {
+        return UNKNOWN_PAGE_COUNT;
+    }
+
+    /**
+     * Release the parsed file.
+     */
+    @Override
+    default void close() {
+        // Nothing to release by default
+    }
+}
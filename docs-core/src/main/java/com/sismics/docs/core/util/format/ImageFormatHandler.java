@@ -55,6 +55,35 @@ public class ImageFormatHandler implements FormatHandler {
         }
     }
 
+    @Override
+    public FormatSession open(Path file) throws Exception {
+        // Decode the image only once
+        BufferedImage image;
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            image = ImageIO.read(inputStream);
+        }
+
+        return new FormatSession() {
+            @Override
+            public BufferedImage generateThumbnail() {
+                return image;
+            }
+
+            @Override
+            public String extractContent(String language) throws Exception {
+                if (language == null || !ConfigUtil.getConfigBooleanValue(ConfigType.OCR_ENABLED, true)) {
+                    return null;
+                }
+                return FileUtil.ocrFile(language, image);
+            }
+
+            @Override
+            public int getPageCount() {
+                return 1;
+            }
+        };
+    }
+
     @Override
     public void appendToPdf(Path file, PDDocument doc, boolean fitImageToPage, int margin, MemoryUsageSetting memUsageSettings, Closer closer) throws Exception {
         PDPage page = new PDPage(PDRectangle.A4); // Images into A4 pages
@@ -2,6 +2,7 @@ package com.sismics.docs.core.util.format;
 
 import com.google.common.io.Closer;
 import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.util.TemporaryFile;
 import com.sismics.util.mime.MimeType;
 import fr.opensagres.odfdom.converter.pdf.PdfConverter;
 import fr.opensagres.odfdom.converter.pdf.PdfOptions;
@@ -24,7 +25,7 @@ public class OdtFormatHandler implements FormatHandler {
     /**
      * Temporary PDF file.
      */
-    private Path temporaryPdfFile;
+    private TemporaryFile temporaryPdfFile;
 
     @Override
     public boolean accept(String mimeType) {
@@ -43,6 +44,17 @@ public class OdtFormatHandler implements FormatHandler {
         return new PdfFormatHandler().extractContent(language, getGeneratedPdf(file));
     }
 
+    @Override
+    public FormatSession open(Path file) throws Exception {
+        // Use the PDF format handler
+        return new PdfFormatHandler().open(getGeneratedPdf(file));
+    }
+
+    @Override
+    public Path generatePdfRendition(Path file) throws Exception {
+        return getGeneratedPdf(file);
+    }
+
     @Override
     public void appendToPdf(Path file, PDDocument doc, boolean fitImageToPage, int margin, MemoryUsageSetting memUsageSettings, Closer closer) throws Exception {
         // Use the PDF format handler
@@ -60,13 +72,21 @@ public class OdtFormatHandler implements FormatHandler {
         if (temporaryPdfFile == null) {
             temporaryPdfFile = AppContext.getInstance().getFileService().createTemporaryFile();
             try (InputStream inputStream = Files.newInputStream(file);
-                 OutputStream outputStream = Files.newOutputStream(temporaryPdfFile)) {
+                 OutputStream outputStream = Files.newOutputStream(temporaryPdfFile.getPath())) {
                 OdfTextDocument document = OdfTextDocument.loadDocument(inputStream);
                 PdfOptions options = PdfOptions.create();
                 PdfConverter.getInstance().convert(document, outputStream, options);
             }
         }
 
-        return temporaryPdfFile;
+        return temporaryPdfFile.getPath();
+    }
+
+    @Override
+    public void close() {
+        if (temporaryPdfFile != null) {
+            temporaryPdfFile.close();
+            temporaryPdfFile = null;
+        }
     }
 }
@@ -1,9 +1,12 @@
 package com.sismics.docs.core.util.format;
 
 import com.google.common.io.Closer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sismics.docs.core.util.DirectoryUtil;
 import com.sismics.docs.core.util.FileUtil;
 import com.sismics.docs.core.util.ConfigUtil;
 import com.sismics.docs.core.constant.ConfigType;
+import com.sismics.docs.core.constant.Constants;
 import com.sismics.util.mime.MimeType;
 import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.multipdf.PDFMergerUtility;
@@ -15,9 +18,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.awt.image.BufferedImage;
-import java.io.InputStream;
-import java.nio.file.Files;
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * PDF format handler.
@@ -30,6 +38,23 @@ public class PdfFormatHandler implements FormatHandler {
      */
     private static final Logger log = LoggerFactory.getLogger(PdfFormatHandler.class);
 
+    /**
+     * Number of threads rendering and OCR-izing pages.
+     */
+    private static final int OCR_PAGE_THREADS = ConfigUtil.getEnvIntegerValue(Constants.OCR_PAGE_THREADS_ENV,
+            Math.max(Runtime.getRuntime().availableProcessors() / 2, 1));
+
+    /**
+     * Executor rendering and OCR-izing pages, shared by all PDF files.
+     */
+    private static final ExecutorService ocrExecutor = Executors.newFixedThreadPool(OCR_PAGE_THREADS,
+            new ThreadFactoryBuilder().setNameFormat("pdf-ocr-%d").setDaemon(true).build());
+
+    /**
+     * Maximum main memory used by a loaded PDF, in bytes.
+     */
+    private static final long PDF_MAX_MEMORY = 16L * 1024 * 1024;
+
     @Override
     public boolean accept(String mimeType) {
         return mimeType.equals(MimeType.APPLICATION_PDF);
@@ -37,41 +62,152 @@ public class PdfFormatHandler implements FormatHandler {
 
     @Override
     public BufferedImage generateThumbnail(Path file) throws Exception {
-        try (InputStream inputStream = Files.newInputStream(file);
-             PDDocument pdfDocument = PDDocument.load(inputStream)) {
-            PDFRenderer renderer = new PDFRenderer(pdfDocument);
-            return renderer.renderImage(0);
+        try (FormatSession session = open(file)) {
+            return session.generateThumbnail();
         }
     }
 
     @Override
     public String extractContent(String language, Path file) {
-        String content = null;
-        try (InputStream inputStream = Files.newInputStream(file);
-             PDDocument pdfDocument = PDDocument.load(inputStream)) {
-            content = new PDFTextStripper().getText(pdfDocument);
+        try (FormatSession session = open(file)) {
+            return session.extractContent(language);
         } catch (Exception e) {
-            log.error("Error while extracting text from the PDF", e);
+            log.error("Error while opening the PDF", e);
+            return null;
         }
+    }
 
-        // No text content, try to OCR it
-        if (language != null && content != null && content.trim().isEmpty() && ConfigUtil.getConfigBooleanValue(ConfigType.OCR_ENABLED, true)) {
-            StringBuilder sb = new StringBuilder();
-            try (InputStream inputStream = Files.newInputStream(file);
-                 PDDocument pdfDocument = PDDocument.load(inputStream)) {
-                PDFRenderer renderer = new PDFRenderer(pdfDocument);
-                for (int pageIndex = 0; pageIndex < pdfDocument.getNumberOfPages(); pageIndex++) {
-                    log.info("OCR page " + (pageIndex + 1) + "/" + pdfDocument.getNumberOfPages() + " of PDF file containing only images");
-                    sb.append(" ");
-                    sb.append(FileUtil.ocrFile(language, renderer.renderImageWithDPI(pageIndex, 300, ImageType.GRAY)));
-                }
-                return sb.toString();
+    @Override
+    public FormatSession open(Path file) throws Exception {
+        return new PdfSession(file, PDDocument.load(file.toFile(), createMemoryUsageSetting()));
+    }
+
+    /**
+     * Create the memory usage setting of a loaded PDF.
+     * Above the memory limit, the PDF buffers are written in the temporary directory.
+     *
+     * @return Memory usage setting
+     */
+    private static MemoryUsageSetting createMemoryUsageSetting() {
+        MemoryUsageSetting memoryUsageSetting = MemoryUsageSetting.setupMixed(PDF_MAX_MEMORY);
+        memoryUsageSetting.setTempDir(DirectoryUtil.getTemporaryDirectory().toFile());
+        return memoryUsageSetting;
+    }
+
+    /**
+     * Processing session on a PDF, loaded only once.
+     */
+    private class PdfSession implements FormatSession {
+        /**
+         * PDF file.
+         */
+        private final Path file;
+
+        /**
+         * Loaded PDF.
+         */
+        private final PDDocument pdfDocument;
+
+        PdfSession(Path file, PDDocument pdfDocument) {
+            this.file = file;
+            this.pdfDocument = pdfDocument;
+        }
+
+        @Override
+        public BufferedImage generateThumbnail() throws Exception {
+            PDFRenderer renderer = new PDFRenderer(pdfDocument);
+            return renderer.renderImage(0);
+        }
+
+        @Override
+        public String extractContent(String language) {
+            String content = null;
+            try {
+                content = new PDFTextStripper().getText(pdfDocument);
             } catch (Exception e) {
-                log.error("Error while OCR-izing the PDF", e);
+                log.error("Error while extracting text from the PDF", e);
+            }
+
+            // No text content, try to OCR it
+            if (language != null && content != null && content.trim().isEmpty() && ConfigUtil.getConfigBooleanValue(ConfigType.OCR_ENABLED, true)) {
+                try {
+                    return ocrPages(language, file, pdfDocument);
+                } catch (Exception e) {
+                    log.error("Error while OCR-izing the PDF", e);
+                }
+            }
+
+            return content;
+        }
+
+        @Override
+        public int getPageCount() {
+            return pdfDocument.getNumberOfPages();
+        }
+
+        @Override
+        public void close() {
+            try {
+                pdfDocument.close();
+            } catch (IOException e) {
+                log.error("Error closing the PDF", e);
             }
         }
+    }
+
+    /**
+     * OCR all pages of a PDF containing only images.
+     * Pages are rendered and OCR-ized concurrently, each worker keeps only its current page in memory
+     * and the text is reassembled in page order.
+     *
+     * @param language Language to OCR
+     * @param file PDF file
+     * @param pdfDocument Loaded PDF, rendered by the first worker
+     * @return Content extracted
+     * @throws Exception e
+     */
+    private String ocrPages(String language, Path file, PDDocument pdfDocument) throws Exception {
+        int pageCount = pdfDocument.getNumberOfPages();
+
+        // PDF documents are not thread safe, the other workers render the pages from their own document
+        String[] pageContents = new String[pageCount];
+        AtomicInteger nextPageIndex = new AtomicInteger();
+        int workerCount = Math.min(OCR_PAGE_THREADS, pageCount);
+        List<Future<?>> futureList = new ArrayList<>();
+        for (int i = 0; i < workerCount; i++) {
+            boolean sessionWorker = i == 0;
+            futureList.add(ocrExecutor.submit(() -> {
+                PDDocument workerDocument = sessionWorker ? pdfDocument : PDDocument.load(file.toFile(), createMemoryUsageSetting());
+                try {
+                    PDFRenderer renderer = new PDFRenderer(workerDocument);
+                    int pageIndex;
+                    while ((pageIndex = nextPageIndex.getAndIncrement()) < pageCount) {
+                        log.info("OCR page " + (pageIndex + 1) + "/" + pageCount + " of PDF file containing only images");
+                        pageContents[pageIndex] = FileUtil.ocrFile(language, renderer.renderImageWithDPI(pageIndex, 300, ImageType.GRAY));
+                    }
+                } catch (Exception e) {
+                    // Stop the other workers, the whole OCR fails
+                    nextPageIndex.set(pageCount);
+                    throw e;
+                } finally {
+                    if (!sessionWorker) {
+                        workerDocument.close();
+                    }
+                }
+                return null;
+            }));
+        }
 
-        return content;
+        for (Future<?> future : futureList) {
+            future.get();
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (String pageContent : pageContents) {
+            sb.append(" ");
+            sb.append(pageContent);
+        }
+        return sb.toString();
     }
 
     @Override
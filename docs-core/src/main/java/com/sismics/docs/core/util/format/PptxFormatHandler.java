@@ -1,6 +1,8 @@
 package com.sismics.docs.core.util.format;
 
 import com.google.common.io.Closer;
+import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.util.TemporaryFile;
 import com.sismics.util.mime.MimeType;
 import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -12,10 +14,13 @@ import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import org.apache.poi.sl.extractor.SlideShowExtractor;
 import org.apache.poi.xslf.usermodel.XMLSlideShow;
 import org.apache.poi.xslf.usermodel.XSLFSlide;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -27,11 +32,21 @@ import java.util.List;
  * @author bgamard
  */
 public class PptxFormatHandler implements FormatHandler {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(PptxFormatHandler.class);
+
     /**
      * Cached PPTX loaded file.
      */
     private XMLSlideShow slideShow;
 
+    /**
+     * Temporary PDF rendition.
+     */
+    private TemporaryFile temporaryPdfFile;
+
     @Override
     public boolean accept(String mimeType) {
         return MimeType.OFFICE_PRESENTATION.equals(mimeType);
@@ -53,6 +68,40 @@ public class PptxFormatHandler implements FormatHandler {
         return new SlideShowExtractor<>(pptx).getText();
     }
 
+    @Override
+    public FormatSession open(Path file) throws Exception {
+        XMLSlideShow pptx = loadPPtxFile(file);
+        return new FormatSession() {
+            @Override
+            public BufferedImage generateThumbnail() {
+                return pptx.getSlides().isEmpty() ? null : generateImageFromSlide(pptx, 0);
+            }
+
+            @Override
+            public String extractContent(String language) {
+                return new SlideShowExtractor<>(pptx).getText();
+            }
+
+            @Override
+            public int getPageCount() {
+                return pptx.getSlides().size();
+            }
+        };
+    }
+
+    @Override
+    public Path generatePdfRendition(Path file) throws Exception {
+        if (temporaryPdfFile == null) {
+            temporaryPdfFile = AppContext.getInstance().getFileService().createTemporaryFile();
+            try (PDDocument doc = new PDDocument(MemoryUsageSetting.setupTempFileOnly())) {
+                appendToPdf(file, doc, false, 0, null, null);
+                doc.save(temporaryPdfFile.getPath().toFile());
+            }
+        }
+
+        return temporaryPdfFile.getPath();
+    }
+
     @Override
     public void appendToPdf(Path file, PDDocument doc, boolean fitImageToPage, int margin, MemoryUsageSetting memUsageSettings, Closer closer) throws Exception {
         XMLSlideShow pptx = loadPPtxFile(file);
@@ -79,6 +128,22 @@ public class PptxFormatHandler implements FormatHandler {
         return slideShow;
     }
 
+    @Override
+    public void close() {
+        if (slideShow != null) {
+            try {
+                slideShow.close();
+            } catch (IOException e) {
+                log.error("Error closing the PPTX", e);
+            }
+            slideShow = null;
+        }
+        if (temporaryPdfFile != null) {
+            temporaryPdfFile.close();
+            temporaryPdfFile = null;
+        }
+    }
+
     /**
      * Generate an image from a PPTX slide.
      *
@@ -4,6 +4,7 @@ import com.google.common.io.Closer;
 import com.lowagie.text.*;
 import com.lowagie.text.pdf.PdfWriter;
 import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.util.TemporaryFile;
 import com.sismics.util.mime.MimeType;
 import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -28,20 +29,21 @@ public class TextPlainFormatHandler implements FormatHandler {
     @Override
     public BufferedImage generateThumbnail(Path file) throws Exception {
         Document output = new Document(PageSize.A4, 40, 40, 40, 40);
-        Path tempFile = AppContext.getInstance().getFileService().createTemporaryFile();
-        OutputStream pdfOutputStream = Files.newOutputStream(tempFile);
-        PdfWriter.getInstance(output, pdfOutputStream);
-
-        output.open();
-        String content = Files.readString(file, StandardCharsets.UTF_8);
-        Font font = FontFactory.getFont("LiberationMono-Regular");
-        Paragraph paragraph = new Paragraph(content, font);
-        paragraph.setAlignment(Element.ALIGN_LEFT);
-        output.add(paragraph);
-        output.close();
-
-        // Use the PDF format handler
-        return new PdfFormatHandler().generateThumbnail(tempFile);
+        try (TemporaryFile tempFile = AppContext.getInstance().getFileService().createTemporaryFile()) {
+            OutputStream pdfOutputStream = Files.newOutputStream(tempFile.getPath());
+            PdfWriter.getInstance(output, pdfOutputStream);
+
+            output.open();
+            String content = Files.readString(file, StandardCharsets.UTF_8);
+            Font font = FontFactory.getFont("LiberationMono-Regular");
+            Paragraph paragraph = new Paragraph(content, font);
+            paragraph.setAlignment(Element.ALIGN_LEFT);
+            output.add(paragraph);
+            output.close();
+
+            // Use the PDF format handler
+            return new PdfFormatHandler().generateThumbnail(tempFile.getPath());
+        }
     }
 
     @Override
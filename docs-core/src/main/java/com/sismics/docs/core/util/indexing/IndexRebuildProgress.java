@@ -0,0 +1,85 @@
+package com.sismics.docs.core.util.indexing;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of an index rebuild.
+ *
+ * @author bgamard
+ */
+public class IndexRebuildProgress {
+    /**
+     * Number of documents and files to index.
+     */
+    private final long total;
+
+    /**
+     * Number of documents and files indexed.
+     */
+    private final AtomicLong processed;
+
+    /**
+     * Number of documents and files already indexed when this run started.
+     */
+    private final long resumedCount;
+
+    /**
+     * Start time of this run.
+     */
+    private final long startTime = System.currentTimeMillis();
+
+    /**
+     * Constructor.
+     *
+     * @param total Number of documents and files to index
+     * @param resumedCount Number of documents and files already indexed by a previous run
+     */
+    public IndexRebuildProgress(long total, long resumedCount) {
+        this.total = total;
+        this.resumedCount = resumedCount;
+        this.processed = new AtomicLong(resumedCount);
+    }
+
+    /**
+     * Add indexed documents or files.
+     *
+     * @param count Number of documents or files indexed
+     */
+    public void add(long count) {
+        processed.addAndGet(count);
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    /**
+     * Returns the indexing rate of this run.
+     *
+     * @return Documents and files indexed per second
+     */
+    public double getRate() {
+        long elapsed = System.currentTimeMillis() - startTime;
+        if (elapsed <= 0) {
+            return 0;
+        }
+        return (getProcessed() - resumedCount) * 1000d / elapsed;
+    }
+
+    /**
+     * Returns the estimated remaining time.
+     *
+     * @return Remaining time in seconds, -1 if unknown
+     */
+    public long getEta() {
+        double rate = getRate();
+        if (rate <= 0) {
+            return -1;
+        }
+        return (long) (Math.max(total - getProcessed(), 0) / rate);
+    }
+}
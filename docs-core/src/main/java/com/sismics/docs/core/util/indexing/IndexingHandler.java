@@ -36,23 +36,19 @@ public interface IndexingHandler {
     void shutDown();
 
     /**
-     * Clear the index.
-     */
-    void clearIndex();
-
-    /**
-     * Index a list of documents.
+     * Rebuild the index from the database.
+     * The current index is used until the new one is complete, an interrupted rebuild is resumed.
      *
-     * @param documentList All documents
+     * @throws Exception e
      */
-    void createDocuments(List<Document> documentList);
+    void rebuildIndex() throws Exception;
 
     /**
-     * Index a list of files.
+     * Returns the progress of the running index rebuild.
      *
-     * @param fileList All files
+     * @return Progress, null if no rebuild is running
      */
-    void createFiles(List<File> fileList);
+    IndexRebuildProgress getRebuildProgress();
 
     /**
      * Index a new document.
@@ -4,9 +4,13 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.sismics.docs.core.constant.ConfigType;
+import com.sismics.docs.core.constant.Constants;
 import com.sismics.docs.core.constant.PermType;
 import com.sismics.docs.core.dao.ConfigDao;
+import com.sismics.docs.core.dao.DocumentDao;
+import com.sismics.docs.core.dao.FileDao;
 import com.sismics.docs.core.dao.criteria.DocumentCriteria;
 import com.sismics.docs.core.dao.dto.DocumentDto;
 import com.sismics.docs.core.event.RebuildIndexAsyncEvent;
@@ -14,59 +18,107 @@ import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.Config;
 import com.sismics.docs.core.model.jpa.Document;
 import com.sismics.docs.core.model.jpa.File;
+import com.sismics.docs.core.util.ConfigUtil;
 import com.sismics.docs.core.util.DirectoryUtil;
 import com.sismics.docs.core.util.SecurityUtil;
+import com.sismics.docs.core.util.TransactionUtil;
 import com.sismics.docs.core.util.jpa.PaginatedList;
 import com.sismics.docs.core.util.jpa.PaginatedLists;
 import com.sismics.docs.core.util.jpa.QueryParam;
+import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.docs.core.util.jpa.SortCriteria;
 import com.sismics.util.ClasspathScanner;
+import com.sismics.util.EnvironmentUtil;
+import com.sismics.util.context.ThreadLocalContext;
+import jakarta.persistence.EntityManager;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.CheckIndex;
 import org.apache.lucene.index.ConcurrentMergeScheduler;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.simple.SimpleQueryParser;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldCollector;
 import org.apache.lucene.search.highlight.Highlighter;
 import org.apache.lucene.search.highlight.QueryScorer;
 import org.apache.lucene.search.highlight.SimpleHTMLEncoder;
 import org.apache.lucene.search.highlight.SimpleHTMLFormatter;
-import org.apache.lucene.search.spell.LuceneDictionary;
-import org.apache.lucene.search.suggest.Lookup;
-import org.apache.lucene.search.suggest.analyzing.FuzzySuggester;
+import org.apache.lucene.search.join.JoinUtil;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.NIOFSDirectory;
 import org.apache.lucene.store.NoLockFactory;
 import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Lucene indexing handler.
- * Documents and files are indexed in Lucene, but only used for fulltext search.
- * Other search criteria are still using the database.
+ * Documents and files are indexed in Lucene with the ACLs, tags and metadata used to filter documents,
+ * so fulltext searches are filtered, sorted and paginated in the index. Only the current page is read
+ * from the database. Searches without fulltext, or with criteria not indexed, are done in the database.
+ *
+ * Index operations are applied to the index writer as they come and made visible
+ * to searches with near real-time reopening. Commits are batched on a time and size policy,
+ * operations not committed before a crash are replayed from the database at startup.
+ *
+ * The index is rebuilt in a shadow index swapped with the current one when complete,
+ * the rebuild progress is checkpointed in the shadow index commits to resume after a restart.
  *
  * @author bgamard
  */
@@ -83,14 +135,145 @@ public class LuceneIndexingHandler implements IndexingHandler {
     private Directory directory;
 
     /**
-     * Directory reader.
+     * Version of the index structure, the index is rebuilt if it has been built with another version.
+     */
+    private static final String INDEX_VERSION = "3";
+
+    /**
+     * Commit user data key storing the index structure version.
+     */
+    private static final String COMMIT_INDEX_VERSION = "index_version";
+
+    /**
+     * Commit user data key storing the commit timestamp.
+     */
+    private static final String COMMIT_TIMESTAMP = "commit_timestamp";
+
+    /**
+     * Commit user data keys storing the rebuild checkpoint (phase, last ID indexed, count indexed, start timestamp).
+     */
+    private static final String COMMIT_REBUILD_PHASE = "rebuild_phase";
+    private static final String COMMIT_REBUILD_CURSOR = "rebuild_cursor";
+    private static final String COMMIT_REBUILD_PROCESSED = "rebuild_processed";
+    private static final String COMMIT_REBUILD_START = "rebuild_start";
+
+    /**
+     * Rebuild phases.
+     */
+    private static final String REBUILD_PHASE_DOCUMENTS = "documents";
+    private static final String REBUILD_PHASE_FILES = "files";
+    private static final String REBUILD_PHASE_DONE = "done";
+
+    /**
+     * Number of IDs read at once from the database when rebuilding.
+     */
+    private static final int REBUILD_PAGE_SIZE = 1000;
+
+    /**
+     * Number of documents or files indexed by a rebuild worker at once.
+     */
+    private static final int REBUILD_CHUNK_SIZE = 100;
+
+    /**
+     * Minimum delay in milliseconds between two rebuild checkpoints.
+     */
+    private static final long REBUILD_CHECKPOINT_INTERVAL = 30000;
+
+    /**
+     * Number of hits fetched at once when looking for highlights.
+     */
+    private static final int HIGHLIGHT_BATCH_SIZE = 100;
+
+    /**
+     * Maximum number of documents loaded at once from the database when indexing.
+     */
+    private static final int DOCUMENT_BATCH_SIZE = 500;
+
+    /**
+     * Delay in seconds between two rebuilds of an outdated suggester.
+     */
+    private static final long SUGGESTER_REBUILD_DELAY = 60;
+
+    /**
+     * True if the index is stored in files.
      */
-    private DirectoryReader directoryReader;
+    private boolean fileStorage;
 
     /**
      * Index writer.
      */
-    private IndexWriter indexWriter;
+    private volatile IndexWriter indexWriter;
+
+    /**
+     * Near real-time searcher manager.
+     */
+    private volatile SearcherManager searcherManager;
+
+    /**
+     * Lock shared by index operations and searches, held exclusively to swap the index.
+     */
+    private final ReadWriteLock indexLock = new ReentrantReadWriteLock();
+
+    /**
+     * Index writer of the index being rebuilt, index operations are also applied to it.
+     */
+    private volatile IndexWriter rebuildWriter;
+
+    /**
+     * Progress of the running rebuild.
+     */
+    private volatile IndexRebuildProgress rebuildProgress;
+
+    /**
+     * True if a rebuild is running.
+     */
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    /**
+     * True when shutting down.
+     */
+    private volatile boolean closing;
+
+    /**
+     * Executor committing the index and rebuilding the suggester in the background.
+     */
+    private ScheduledExecutorService indexExecutor;
+
+    /**
+     * Search terms suggester.
+     */
+    private TitleSuggester titleSuggester;
+
+    /**
+     * Directory used by the suggester while building.
+     */
+    private Directory suggesterDirectory;
+
+    /**
+     * True if the titles have changed since the suggester has been built.
+     */
+    private final AtomicBoolean suggesterOutdated = new AtomicBoolean();
+
+    /**
+     * Number of operations to apply before committing.
+     */
+    private int commitMaxOperations;
+
+    /**
+     * Number of operations applied since the last commit.
+     */
+    private final AtomicInteger uncommittedOperationCount = new AtomicInteger();
+
+    /**
+     * True if a commit has been requested by the size policy and not yet run.
+     */
+    private final AtomicBoolean commitRequested = new AtomicBoolean();
+
+    /**
+     * Timestamp from which the operations are being replayed, committed instead of the current time
+     * so that an interrupted replay is resumed from the start.
+     */
+    private volatile Long replayTimestamp;
 
     @Override
     public boolean accept() {
@@ -100,11 +283,30 @@ public class LuceneIndexingHandler implements IndexingHandler {
 
     @Override
     public void startUp() throws Exception {
+        // Start committing on a time and size policy
+        long commitInterval = ConfigUtil.getEnvLongValue(Constants.LUCENE_COMMIT_INTERVAL_ENV, 10);
+        commitMaxOperations = ConfigUtil.getEnvIntegerValue(Constants.LUCENE_COMMIT_MAX_OPERATIONS_ENV, 1000);
+        indexExecutor = Executors.newScheduledThreadPool(2, new ThreadFactoryBuilder()
+                .setNameFormat("lucene-%d")
+                .setDaemon(true)
+                .build());
+        indexExecutor.scheduleWithFixedDelay(this::commit, commitInterval, commitInterval, TimeUnit.SECONDS);
+        indexExecutor.scheduleWithFixedDelay(() -> {
+            if (suggesterOutdated.getAndSet(false)) {
+                buildSuggester();
+            }
+        }, SUGGESTER_REBUILD_DELAY, SUGGESTER_REBUILD_DELAY, TimeUnit.SECONDS);
+
         try {
             initLucene();
+            replayUncommittedOperations();
         } catch (Exception e) {
             // An error occurred initializing Lucene, the index is out of date or broken, delete everything
             log.info("Unable to initialize Lucene, cleaning up the index: " + e.getMessage());
+            if (indexWriter != null) {
+                indexWriter.rollback();
+            }
+            closeSuggesterDirectory();
             Path luceneDirectory = DirectoryUtil.getLuceneDirectory();
             Files.walk(luceneDirectory)
                     .sorted(Comparator.reverseOrder())
@@ -115,6 +317,18 @@ public class LuceneIndexingHandler implements IndexingHandler {
             initLucene();
             RebuildIndexAsyncEvent rebuildIndexAsyncEvent = new RebuildIndexAsyncEvent();
             AppContext.getInstance().getAsyncEventBus().post(rebuildIndexAsyncEvent);
+            return;
+        }
+
+        // Resume an interrupted rebuild
+        if (fileStorage) {
+            try (Directory rebuildDirectory = new NIOFSDirectory(DirectoryUtil.getLuceneRebuildDirectory(), NoLockFactory.INSTANCE)) {
+                if (DirectoryReader.indexExists(rebuildDirectory)
+                        && SegmentInfos.readLatestCommit(rebuildDirectory).getUserData().containsKey(COMMIT_REBUILD_PHASE)) {
+                    log.info("Resuming the interrupted index rebuild");
+                    AppContext.getInstance().getAsyncEventBus().post(new RebuildIndexAsyncEvent());
+                }
+            }
         }
     }
 
@@ -124,20 +338,23 @@ public class LuceneIndexingHandler implements IndexingHandler {
         String luceneStorage = luceneStorageConfig == null ? null : luceneStorageConfig.getValue();
 
         // RAM directory storage by default
+        Path suggesterFile = null;
         if (luceneStorage == null || luceneStorage.equals("RAM")) {
             directory = new RAMDirectory();
+            suggesterDirectory = new RAMDirectory();
             log.info("Using RAM Lucene storage");
         } else if (luceneStorage.equals("FILE")) {
             Path luceneDirectory = DirectoryUtil.getLuceneDirectory();
             log.info("Using file Lucene storage: {}", luceneDirectory);
             directory = new NIOFSDirectory(luceneDirectory, NoLockFactory.INSTANCE);
+            Path suggesterPath = DirectoryUtil.getSuggesterDirectory();
+            suggesterDirectory = FSDirectory.open(suggesterPath);
+            suggesterFile = suggesterPath.resolve("title.suggester");
+            fileStorage = true;
         }
 
         // Create an index writer
-        IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
-        config.setCommitOnClose(true);
-        config.setMergeScheduler(new ConcurrentMergeScheduler());
-        indexWriter = new IndexWriter(directory, config);
+        indexWriter = newIndexWriter(directory);
 
         // Check index version and rebuild it if necessary
         if (DirectoryReader.indexExists(directory)) {
@@ -148,19 +365,160 @@ public class LuceneIndexingHandler implements IndexingHandler {
                     throw new Exception("Index is dirty");
                 }
             }
+
+            String indexVersion = SegmentInfos.readLatestCommit(directory).getUserData().get(COMMIT_INDEX_VERSION);
+            if (!INDEX_VERSION.equals(indexVersion)) {
+                throw new Exception("Index version " + indexVersion + " is outdated");
+            }
+        }
+
+        // Searches are served by near real-time readers opened from the writer
+        searcherManager = new SearcherManager(indexWriter, null);
+
+        // Load the last built suggester, or build it now
+        titleSuggester = new TitleSuggester(suggesterFile, suggesterDirectory);
+        if (!titleSuggester.load()) {
+            buildSuggester();
+        }
+    }
+
+    /**
+     * Create an index writer.
+     *
+     * @param directory Index directory
+     * @return Index writer
+     * @throws IOException e
+     */
+    private IndexWriter newIndexWriter(Directory directory) throws IOException {
+        IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
+        config.setCommitOnClose(true);
+        config.setMergeScheduler(new ConcurrentMergeScheduler());
+        return new IndexWriter(directory, config);
+    }
+
+    /**
+     * Replay the operations which may not have been committed before the last shutdown.
+     * All documents and files modified since the last commit are indexed again from the database.
+     */
+    private void replayUncommittedOperations() throws Exception {
+        if (!DirectoryReader.indexExists(directory)) {
+            return;
+        }
+        String commitTimestamp = SegmentInfos.readLatestCommit(directory).getUserData().get(COMMIT_TIMESTAMP);
+        if (commitTimestamp == null) {
+            return;
+        }
+        replayOperationsSince(Long.parseLong(commitTimestamp));
+    }
+
+    /**
+     * Index again all documents and files modified since a date.
+     * The changes are read by pages in ID order, each page is indexed and committed before reading the next one.
+     *
+     * @param timestamp Date as timestamp
+     * @throws Exception e
+     */
+    private void replayOperationsSince(long timestamp) throws Exception {
+        // Index operations are applied asynchronously after the database changes, go back a bit further
+        long replayMargin = ConfigUtil.getEnvLongValue(Constants.LUCENE_REPLAY_MARGIN_ENV, 3600);
+        Date since = new Date(timestamp - TimeUnit.SECONDS.toMillis(replayMargin));
+        log.info("Replaying index operations since {}", since);
+        if (replayTimestamp == null || timestamp < replayTimestamp) {
+            replayTimestamp = timestamp;
+        }
+
+        long documentCount = replayPages(Document::getId, lastId -> {
+            List<Document> documentList = new DocumentDao().findModifiedSince(since, lastId, REBUILD_PAGE_SIZE);
+            List<Document> activeDocumentList = new ArrayList<>();
+            try {
+                for (Document document : documentList) {
+                    if (document.getDeleteDate() == null) {
+                        activeDocumentList.add(document);
+                    } else {
+                        indexWriter.deleteDocuments(new Term("id", document.getId()));
+                    }
+                }
+                for (org.apache.lucene.document.Document luceneDocument : getDocumentsFromDocuments(activeDocumentList)) {
+                    indexWriter.updateDocument(new Term("id", luceneDocument.get("id")), luceneDocument);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return documentList;
+        });
+        long fileCount = replayPages(File::getId, lastId -> {
+            FileDao fileDao = new FileDao();
+            List<File> fileList = fileDao.loadContent(fileDao.findModifiedSince(since, lastId, REBUILD_PAGE_SIZE));
+            try {
+                for (File file : fileList) {
+                    if (file.getDeleteDate() == null) {
+                        indexWriter.updateDocument(new Term("id", file.getId()), getDocumentFromFile(file));
+                    } else {
+                        indexWriter.deleteDocuments(new Term("id", file.getId()));
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return fileList;
+        });
+        log.info("Replayed {} documents and {} files", documentCount, fileCount);
+        replayTimestamp = null;
+        commit();
+    }
+
+    /**
+     * Replay the index operations page by page, each page in its own transaction and Lucene commit.
+     *
+     * @param idGetter Getter of the entity IDs
+     * @param pageReplayer Replayer of the page following an ID, returns the entities of the page
+     * @return Number of entities replayed
+     * @throws Exception e
+     */
+    private <T> long replayPages(Function<T, String> idGetter, Function<String, List<T>> pageReplayer) throws Exception {
+        long count = 0;
+        String lastId = null;
+        while (true) {
+            String cursor = lastId;
+            AtomicReference<List<T>> page = new AtomicReference<>();
+            TransactionUtil.handle(() -> {
+                page.set(pageReplayer.apply(cursor));
+
+                // Don't keep the replayed entities in the persistence context, in case of an enclosing transaction
+                ThreadLocalContext.get().clearEntityManager();
+            });
+            if (page.get() == null) {
+                throw new Exception("Error replaying the index operations");
+            }
+            if (page.get().isEmpty()) {
+                return count;
+            }
+            commit();
+            count += page.get().size();
+            lastId = idGetter.apply(page.get().get(page.get().size() - 1));
         }
     }
 
     @Override
     public void shutDown() {
-        if (directoryReader != null) {
+        closing = true;
+        if (indexExecutor != null) {
+            indexExecutor.shutdown();
             try {
-                directoryReader.close();
+                indexExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                // NOP
+            }
+        }
+        if (searcherManager != null) {
+            try {
+                searcherManager.close();
             } catch (IOException e) {
-                log.error("Error closing the index reader", e);
+                log.error("Error closing the searcher manager", e);
             }
         }
         if (indexWriter != null) {
+            commit();
             try {
                 indexWriter.close();
             } catch (IOException e) {
@@ -174,39 +532,257 @@ public class LuceneIndexingHandler implements IndexingHandler {
                 log.error("Error closing Lucene index", e);
             }
         }
+        closeSuggesterDirectory();
     }
 
-    @Override
-    public void clearIndex() {
-        handle(IndexWriter::deleteAll);
+    /**
+     * Close the directory used by the suggester.
+     */
+    private void closeSuggesterDirectory() {
+        if (suggesterDirectory != null) {
+            try {
+                suggesterDirectory.close();
+            } catch (IOException e) {
+                log.error("Error closing the suggester directory", e);
+            }
+            suggesterDirectory = null;
+        }
     }
 
     @Override
-    public void createDocuments(List<Document> documentList) {
-        handle(indexWriter -> {
-            for (Document document : documentList) {
-                org.apache.lucene.document.Document luceneDocument = getDocumentFromDocument(document);
-                indexWriter.addDocument(luceneDocument);
+    public void rebuildIndex() throws Exception {
+        if (!rebuilding.compareAndSet(false, true)) {
+            log.info("The index is already being rebuilt");
+            return;
+        }
+
+        Directory rebuildDirectory = fileStorage ?
+                new NIOFSDirectory(DirectoryUtil.getLuceneRebuildDirectory(), NoLockFactory.INSTANCE) : new RAMDirectory();
+        IndexWriter writer = null;
+        try {
+            writer = newIndexWriter(rebuildDirectory);
+            rebuildIndex(writer, rebuildDirectory);
+        } finally {
+            rebuildWriter = null;
+            rebuildProgress = null;
+            rebuilding.set(false);
+            if (writer != null && writer != indexWriter && writer.isOpen()) {
+                // Interrupted, the last checkpoint is kept
+                writer.rollback();
             }
-        });
+            if (rebuildDirectory != directory) {
+                rebuildDirectory.close();
+            }
+        }
     }
 
     @Override
-    public void createFiles(List<File> fileList) {
-        handle(indexWriter -> {
-            for (File file : fileList) {
-                org.apache.lucene.document.Document luceneDocument = getDocumentFromFile(file);
-                indexWriter.addDocument(luceneDocument);
+    public IndexRebuildProgress getRebuildProgress() {
+        return rebuildProgress;
+    }
+
+    /**
+     * Rebuild the index in a shadow index, then swap it with the current index.
+     *
+     * @param writer Shadow index writer
+     * @param rebuildDirectory Shadow index directory
+     * @throws Exception e
+     */
+    private void rebuildIndex(IndexWriter writer, Directory rebuildDirectory) throws Exception {
+        // Resume from the last checkpoint, or start from scratch
+        Map<String, String> checkpoint = new HashMap<>();
+        if (DirectoryReader.indexExists(rebuildDirectory)) {
+            checkpoint.putAll(SegmentInfos.readLatestCommit(rebuildDirectory).getUserData());
+        }
+        if (!INDEX_VERSION.equals(checkpoint.get(COMMIT_INDEX_VERSION)) || !checkpoint.containsKey(COMMIT_REBUILD_PHASE)) {
+            writer.deleteAll();
+            checkpoint.clear();
+            checkpoint.put(COMMIT_INDEX_VERSION, INDEX_VERSION);
+            checkpoint.put(COMMIT_REBUILD_PHASE, REBUILD_PHASE_DOCUMENTS);
+            checkpoint.put(COMMIT_REBUILD_PROCESSED, "0");
+            checkpoint.put(COMMIT_REBUILD_START, Long.toString(System.currentTimeMillis()));
+        }
+        log.info("Rebuilding the index from checkpoint {}", checkpoint);
+
+        // Index operations are applied to both indexes from now on
+        rebuildWriter = writer;
+
+        AtomicReference<Long> total = new AtomicReference<>();
+        TransactionUtil.handle(() -> total.set(new DocumentDao().getDocumentCount() + new FileDao().getFileCount()));
+        if (total.get() == null) {
+            throw new Exception("Error counting the documents and files to index");
+        }
+        IndexRebuildProgress progress = new IndexRebuildProgress(total.get(), Long.parseLong(checkpoint.get(COMMIT_REBUILD_PROCESSED)));
+        rebuildProgress = progress;
+
+        int threadCount = ConfigUtil.getEnvIntegerValue(Constants.LUCENE_REBUILD_THREADS_ENV, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(threadCount, 1), new ThreadFactoryBuilder()
+                .setNameFormat("lucene-rebuild-%d")
+                .setDaemon(true)
+                .build());
+        try {
+            if (REBUILD_PHASE_DOCUMENTS.equals(checkpoint.get(COMMIT_REBUILD_PHASE))) {
+                rebuildPhase(writer, executor, checkpoint, progress, REBUILD_PHASE_FILES,
+                        lastId -> new DocumentDao().findIdsAfter(lastId, REBUILD_PAGE_SIZE),
+                        idList -> getDocumentsFromDocuments(new DocumentDao().getDocuments(idList)));
             }
-        });
+            if (REBUILD_PHASE_FILES.equals(checkpoint.get(COMMIT_REBUILD_PHASE))) {
+                rebuildPhase(writer, executor, checkpoint, progress, REBUILD_PHASE_DONE,
+                        lastId -> new FileDao().findIdsAfter(lastId, REBUILD_PAGE_SIZE),
+                        idList -> new FileDao().loadContent(new FileDao().getFiles(idList)).stream()
+                                .map(this::getDocumentFromFile)
+                                .collect(Collectors.toList()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (!REBUILD_PHASE_DONE.equals(checkpoint.get(COMMIT_REBUILD_PHASE))) {
+            // Interrupted
+            return;
+        }
+
+        // Swap the indexes and catch up with the operations which may have been missed
+        swapIndex(writer, rebuildDirectory);
+        replayOperationsSince(Long.parseLong(checkpoint.get(COMMIT_REBUILD_START)));
+        onTitleChanged();
+        log.info("Rebuilding index done");
+    }
+
+    /**
+     * Index all the entities of a rebuild phase, checkpointing regularly.
+     * IDs are read by pages in ID order, and entities are loaded and indexed by the workers.
+     *
+     * @param writer Shadow index writer
+     * @param executor Workers
+     * @param checkpoint Current checkpoint (updated by side effects)
+     * @param progress Rebuild progress
+     * @param nextPhase Phase following this one
+     * @param idReader Reader of the IDs following an ID
+     * @param documentBuilder Builder of Lucene documents from IDs
+     * @throws Exception e
+     */
+    private void rebuildPhase(IndexWriter writer, ExecutorService executor, Map<String, String> checkpoint,
+                              IndexRebuildProgress progress, String nextPhase,
+                              Function<String, List<String>> idReader,
+                              Function<List<String>, List<org.apache.lucene.document.Document>> documentBuilder) throws Exception {
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        long lastCheckpoint = System.currentTimeMillis();
+        while (true) {
+            if (closing) {
+                log.info("Index rebuild interrupted, it will be resumed at startup");
+                return;
+            }
+
+            AtomicReference<List<String>> idList = new AtomicReference<>();
+            TransactionUtil.handle(() -> idList.set(idReader.apply(checkpoint.get(COMMIT_REBUILD_CURSOR))));
+            if (idList.get() == null) {
+                throw new Exception("Error reading the IDs to index");
+            }
+            if (idList.get().isEmpty()) {
+                break;
+            }
+
+            // Fan out the loading and building of Lucene documents
+            List<Future<?>> futureList = new ArrayList<>();
+            for (List<String> chunk : Lists.partition(idList.get(), REBUILD_CHUNK_SIZE)) {
+                futureList.add(executor.submit(() -> TransactionUtil.handle(() -> {
+                    try {
+                        for (org.apache.lucene.document.Document luceneDocument : documentBuilder.apply(chunk)) {
+                            writer.updateDocument(new Term("id", luceneDocument.get("id")), luceneDocument);
+                        }
+                        // Don't keep the indexed entities in the persistence context
+                        ThreadLocalContext.get().clearEntityManager();
+                        progress.add(chunk.size());
+                    } catch (Exception e) {
+                        failure.compareAndSet(null, e);
+                    }
+                })));
+            }
+            for (Future<?> future : futureList) {
+                future.get();
+            }
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+
+            checkpoint.put(COMMIT_REBUILD_CURSOR, idList.get().get(idList.get().size() - 1));
+            checkpoint.put(COMMIT_REBUILD_PROCESSED, Long.toString(progress.getProcessed()));
+            if (System.currentTimeMillis() - lastCheckpoint > REBUILD_CHECKPOINT_INTERVAL) {
+                commitCheckpoint(writer, checkpoint);
+                lastCheckpoint = System.currentTimeMillis();
+            }
+        }
+
+        checkpoint.put(COMMIT_REBUILD_PHASE, nextPhase);
+        checkpoint.remove(COMMIT_REBUILD_CURSOR);
+        commitCheckpoint(writer, checkpoint);
+    }
+
+    /**
+     * Commit the shadow index with the rebuild checkpoint.
+     *
+     * @param writer Shadow index writer
+     * @param checkpoint Checkpoint
+     * @throws IOException e
+     */
+    private void commitCheckpoint(IndexWriter writer, Map<String, String> checkpoint) throws IOException {
+        writer.setLiveCommitData(new HashMap<>(checkpoint).entrySet());
+        writer.commit();
+        log.info("Index rebuild checkpoint: {} documents and files indexed", checkpoint.get(COMMIT_REBUILD_PROCESSED));
+    }
+
+    /**
+     * Replace the current index by the rebuilt one.
+     * Index operations and searches wait for the swap to complete.
+     *
+     * @param writer Shadow index writer
+     * @param rebuildDirectory Shadow index directory
+     * @throws IOException e
+     */
+    private synchronized void swapIndex(IndexWriter writer, Directory rebuildDirectory) throws IOException {
+        indexLock.writeLock().lock();
+        try {
+            rebuildWriter = null;
+            searcherManager.close();
+            indexWriter.close();
+            directory.close();
+
+            if (fileStorage) {
+                // Move the rebuilt index files in place of the current ones
+                writer.close();
+                rebuildDirectory.close();
+                Path luceneDirectory = DirectoryUtil.getLuceneDirectory();
+                Path oldDirectory = luceneDirectory.resolveSibling("lucene-old");
+                Files.move(luceneDirectory, oldDirectory, StandardCopyOption.ATOMIC_MOVE);
+                Files.move(DirectoryUtil.getLuceneRebuildDirectory(), luceneDirectory, StandardCopyOption.ATOMIC_MOVE);
+                Files.walk(oldDirectory)
+                        .sorted(Comparator.reverseOrder())
+                        .map(Path::toFile)
+                        .forEach(java.io.File::delete);
+                directory = new NIOFSDirectory(luceneDirectory, NoLockFactory.INSTANCE);
+                indexWriter = newIndexWriter(directory);
+            } else {
+                directory = rebuildDirectory;
+                indexWriter = writer;
+            }
+
+            // The rebuild checkpoint is not needed anymore
+            Map<String, String> commitData = new HashMap<>();
+            commitData.put(COMMIT_INDEX_VERSION, INDEX_VERSION);
+            commitData.put(COMMIT_TIMESTAMP, Long.toString(System.currentTimeMillis()));
+            indexWriter.setLiveCommitData(commitData.entrySet());
+            indexWriter.commit();
+            searcherManager = new SearcherManager(indexWriter, null);
+        } finally {
+            indexLock.writeLock().unlock();
+        }
     }
 
     @Override
     public void createDocument(final Document document) {
-        handle(indexWriter -> {
-            org.apache.lucene.document.Document luceneDocument = getDocumentFromDocument(document);
-            indexWriter.addDocument(luceneDocument);
-        });
+        handle(indexWriter -> indexWriter.addDocuments(getDocumentsFromDocuments(Lists.newArrayList(document))));
+        onTitleChanged();
     }
 
     @Override
@@ -228,44 +804,65 @@ public class LuceneIndexingHandler implements IndexingHandler {
     @Override
     public void updateDocument(final Document document) {
         handle(indexWriter -> {
-            org.apache.lucene.document.Document luceneDocument = getDocumentFromDocument(document);
+            org.apache.lucene.document.Document luceneDocument = getDocumentsFromDocuments(Lists.newArrayList(document)).get(0);
             indexWriter.updateDocument(new Term("id", document.getId()), luceneDocument);
         });
+        onTitleChanged();
     }
 
     @Override
     public void deleteDocument(final String id) {
         handle(indexWriter -> indexWriter.deleteDocuments(new Term("id", id)));
+        onTitleChanged();
     }
 
     @Override
     public void createAcl(String sourceId, PermType perm, String targetId) {
-        // Lucene does not index ACLs
+        updateDocumentAcl(sourceId, perm);
     }
 
     @Override
     public void deleteAcl(String sourceId, PermType perm, String targetId) {
-        // Lucene does not index ACLs
+        updateDocumentAcl(sourceId, perm);
+    }
+
+    /**
+     * Index again the ACLs of a document.
+     * Tag ACLs are not indexed, they are resolved at search time.
+     *
+     * @param sourceId ACL source ID
+     * @param perm Permission type
+     */
+    private void updateDocumentAcl(String sourceId, PermType perm) {
+        if (perm != PermType.READ) {
+            return;
+        }
+        Document document = new DocumentDao().getById(sourceId);
+        if (document == null) {
+            return;
+        }
+
+        updateDocument(document);
+
+        // ACL changes don't update the document and can't be replayed after a crash, commit them right away
+        if (commitRequested.compareAndSet(false, true)) {
+            indexExecutor.execute(this::commit);
+        }
     }
 
     @Override
     public void findByCriteria(PaginatedList<DocumentDto> paginatedList, List<String> suggestionList, DocumentCriteria criteria, SortCriteria sortCriteria) throws Exception {
+        boolean fullTextSearch = !Strings.isNullOrEmpty(criteria.getSimpleSearch()) || !Strings.isNullOrEmpty(criteria.getFullSearch());
+        if (fullTextSearch && isIndexSearchable(criteria, sortCriteria)) {
+            findByCriteriaInIndex(paginatedList, suggestionList, criteria, sortCriteria);
+            return;
+        }
+
         Map<String, Object> parameterMap = new HashMap<>();
         List<String> criteriaList = new ArrayList<>();
-        Map<String, String> documentSearchMap = Maps.newHashMap();
+        Query fullTextQuery = null;
 
-        StringBuilder sb = new StringBuilder("select distinct d.DOC_ID_C c0, d.DOC_TITLE_C c1, d.DOC_DESCRIPTION_C c2, d.DOC_CREATEDATE_D c3, d.DOC_LANGUAGE_C c4, d.DOC_IDFILE_C, ");
-        sb.append(" s.count c5, ");
-        sb.append(" rs2.RTP_ID_C c7, rs2.RTP_NAME_C, d.DOC_UPDATEDATE_D c8 ");
-        sb.append(" from T_DOCUMENT d ");
-        sb.append(" left join (SELECT count(s.SHA_ID_C) count, ac.ACL_SOURCEID_C " +
-                "   FROM T_SHARE s, T_ACL ac " +
-                "   WHERE ac.ACL_TARGETID_C = s.SHA_ID_C AND ac.ACL_DELETEDATE_D IS NULL AND " +
-                "         s.SHA_DELETEDATE_D IS NULL group by ac.ACL_SOURCEID_C) s on s.ACL_SOURCEID_C = d.DOC_ID_C ");
-        sb.append(" left join (select rs.*, rs3.idDocument " +
-                "from T_ROUTE_STEP rs " +
-                "join (select r.RTE_IDDOCUMENT_C idDocument, rs.RTP_IDROUTE_C idRoute, min(rs.RTP_ORDER_N) minOrder from T_ROUTE_STEP rs join T_ROUTE r on r.RTE_ID_C = rs.RTP_IDROUTE_C and r.RTE_DELETEDATE_D is null where rs.RTP_DELETEDATE_D is null and rs.RTP_ENDDATE_D is null group by rs.RTP_IDROUTE_C, r.RTE_IDDOCUMENT_C) rs3 on rs.RTP_IDROUTE_C = rs3.idRoute and rs.RTP_ORDER_N = rs3.minOrder " +
-                "where rs.RTP_IDTARGET_C in (:targetIdList)) rs2 on rs2.idDocument = d.DOC_ID_C ");
+        StringBuilder sb = buildDocumentSelect();
 
         // Add search criterias
         if (!SecurityUtil.skipAclCheck(criteria.getTargetIdList())) {
@@ -276,14 +873,15 @@ public class LuceneIndexingHandler implements IndexingHandler {
             criteriaList.add("(a.ACL_ID_C is not null or a2.ACL_ID_C is not null)");
         }
         parameterMap.put("targetIdList", criteria.getTargetIdList());
-        if (!Strings.isNullOrEmpty(criteria.getSimpleSearch()) || !Strings.isNullOrEmpty(criteria.getFullSearch())) {
-            documentSearchMap = search(criteria.getSimpleSearch(), criteria.getFullSearch());
-            if (documentSearchMap.isEmpty()) {
+        if (fullTextSearch) {
+            fullTextQuery = buildFullTextQuery(criteria.getSimpleSearch(), criteria.getFullSearch());
+            Set<String> documentIdSet = search(fullTextQuery);
+            if (documentIdSet.isEmpty()) {
                 // If the search doesn't find any document, the request should return nothing
-                documentSearchMap.put(UUID.randomUUID().toString(), null);
+                documentIdSet.add(UUID.randomUUID().toString());
             }
             criteriaList.add("d.DOC_ID_C in :documentIdList");
-            parameterMap.put("documentIdList", documentSearchMap.keySet());
+            parameterMap.put("documentIdList", documentIdSet);
 
             suggestSearchTerms(criteria.getFullSearch(), suggestionList);
         }
@@ -363,6 +961,233 @@ public class LuceneIndexingHandler implements IndexingHandler {
         List<Object[]> l = PaginatedLists.executePaginatedQuery(paginatedList, queryParam, sortCriteria);
 
         // Assemble results
+        List<DocumentDto> documentDtoList = assembleResults(l);
+
+        // Highlight only the documents of the current page
+        if (fullTextQuery != null) {
+            highlight(fullTextQuery, documentDtoList);
+        }
+
+        paginatedList.setResultList(documentDtoList);
+    }
+
+    /**
+     * Searches documents by criteria, filtering, sorting and paginating in the index.
+     * Only the documents of the current page are read from the database.
+     *
+     * @param paginatedList List of documents (updated by side effects)
+     * @param suggestionList Suggestion of search query (updated by side effects)
+     * @param criteria Search criteria
+     * @param sortCriteria Sort criteria
+     * @throws Exception e
+     */
+    private void findByCriteriaInIndex(PaginatedList<DocumentDto> paginatedList, List<String> suggestionList, DocumentCriteria criteria, SortCriteria sortCriteria) throws Exception {
+        Query fullTextQuery = buildFullTextQuery(criteria.getSimpleSearch(), criteria.getFullSearch());
+        suggestSearchTerms(criteria.getFullSearch(), suggestionList);
+
+        Sort sort = sortCriteria == null ? Sort.RELEVANCE : new Sort(
+                getSortField(sortCriteria.getColumn(), !sortCriteria.isAsc()),
+                new SortField("document_id", SortField.Type.STRING));
+        List<String> documentIdList = new ArrayList<>();
+        IndexSearcher searcher = acquireSearcher();
+        try {
+            // Documents matching on their own fields or on the content of their files,
+            // the files are joined to their document in the index and keep their best score
+            Query fileQuery = JoinUtil.createJoinQuery("document_id", false, "id",
+                    new BooleanQuery.Builder()
+                            .add(fullTextQuery, BooleanClause.Occur.MUST)
+                            .add(new TermQuery(new Term("doctype", "file")), BooleanClause.Occur.FILTER)
+                            .build(),
+                    searcher, org.apache.lucene.search.join.ScoreMode.Max);
+            BooleanQuery.Builder matchQuery = new BooleanQuery.Builder()
+                    .add(fullTextQuery, BooleanClause.Occur.SHOULD)
+                    .add(fileQuery, BooleanClause.Occur.SHOULD);
+            BooleanQuery.Builder query = new BooleanQuery.Builder()
+                    .add(matchQuery.build(), BooleanClause.Occur.MUST)
+                    .add(new TermQuery(new Term("doctype", "document")), BooleanClause.Occur.FILTER);
+            addFilterClauses(query, criteria);
+
+            // Collect the current page and count all hits
+            TopFieldCollector collector = TopFieldCollector.create(sort,
+                    Math.max(paginatedList.getOffset() + paginatedList.getLimit(), 1), Integer.MAX_VALUE);
+            searcher.search(query.build(), collector);
+            paginatedList.setResultCount(collector.getTotalHits());
+            for (ScoreDoc scoreDoc : collector.topDocs(paginatedList.getOffset(), paginatedList.getLimit()).scoreDocs) {
+                documentIdList.add(searcher.doc(scoreDoc.doc).get("id"));
+            }
+        } finally {
+            searcherManager.release(searcher);
+        }
+
+        if (documentIdList.isEmpty()) {
+            paginatedList.setResultList(new ArrayList<>());
+            return;
+        }
+
+        // Read the current page from the database, in the index order
+        StringBuilder sb = buildDocumentSelect();
+        sb.append(" where d.DOC_ID_C in :documentIdList and d.DOC_DELETEDATE_D is null ");
+        Map<String, Object> parameterMap = new HashMap<>();
+        parameterMap.put("targetIdList", criteria.getTargetIdList());
+        parameterMap.put("documentIdList", documentIdList);
+        @SuppressWarnings("unchecked")
+        List<Object[]> l = QueryUtil.getNativeQuery(new QueryParam(sb.toString(), parameterMap)).getResultList();
+        List<DocumentDto> documentDtoList = assembleResults(l);
+        documentDtoList.sort(Comparator.comparingInt(documentDto -> documentIdList.indexOf(documentDto.getId())));
+
+        highlight(fullTextQuery, documentDtoList);
+        paginatedList.setResultList(documentDtoList);
+    }
+
+    /**
+     * Returns true if the search criteria can be fully evaluated in the index.
+     *
+     * @param criteria Search criteria
+     * @param sortCriteria Sort criteria
+     * @return True if searchable in the index
+     */
+    private boolean isIndexSearchable(DocumentCriteria criteria, SortCriteria sortCriteria) {
+        // Routes are not indexed
+        if (criteria.getActiveRoute() != null && criteria.getActiveRoute()) {
+            return false;
+        }
+        return sortCriteria == null || getSortField(sortCriteria.getColumn(), false) != null;
+    }
+
+    /**
+     * Returns the index sort field of a search result column.
+     *
+     * @param column Column index
+     * @param reverse True to sort in decreasing order
+     * @return Sort field, null if the column is not sortable in the index
+     */
+    private SortField getSortField(int column, boolean reverse) {
+        switch (column) {
+            case 0:
+                return new SortField("document_id", SortField.Type.STRING, reverse);
+            case 1:
+                return new SortField("title_sort", SortField.Type.STRING, reverse);
+            case 3:
+                return new SortField("create_date", SortField.Type.LONG, reverse);
+            case 4:
+                return new SortField("language", SortField.Type.STRING, reverse);
+            case 8:
+                return new SortField("update_date", SortField.Type.LONG, reverse);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Add the search criteria as filter clauses of an index query.
+     *
+     * @param query Query builder
+     * @param criteria Search criteria
+     */
+    private void addFilterClauses(BooleanQuery.Builder query, DocumentCriteria criteria) {
+        if (!SecurityUtil.skipAclCheck(criteria.getTargetIdList())) {
+            // Read permission on the document or on one of its tags is enough for searching
+            BooleanQuery.Builder aclQuery = new BooleanQuery.Builder()
+                    .add(newTermInSetQuery("acl_read", criteria.getTargetIdList()), BooleanClause.Occur.SHOULD);
+            List<String> readableTagIdList = findReadableTagIds(criteria.getTargetIdList());
+            if (!readableTagIdList.isEmpty()) {
+                aclQuery.add(newTermInSetQuery("tag_id", readableTagIdList), BooleanClause.Occur.SHOULD);
+            }
+            query.add(aclQuery.build(), BooleanClause.Occur.FILTER);
+        }
+        if (criteria.getCreateDateMin() != null || criteria.getCreateDateMax() != null) {
+            query.add(LongPoint.newRangeQuery("create_date",
+                    criteria.getCreateDateMin() == null ? Long.MIN_VALUE : criteria.getCreateDateMin().getTime(),
+                    criteria.getCreateDateMax() == null ? Long.MAX_VALUE : criteria.getCreateDateMax().getTime()),
+                    BooleanClause.Occur.FILTER);
+        }
+        if (criteria.getUpdateDateMin() != null || criteria.getUpdateDateMax() != null) {
+            query.add(LongPoint.newRangeQuery("update_date",
+                    criteria.getUpdateDateMin() == null ? Long.MIN_VALUE : criteria.getUpdateDateMin().getTime(),
+                    criteria.getUpdateDateMax() == null ? Long.MAX_VALUE : criteria.getUpdateDateMax().getTime()),
+                    BooleanClause.Occur.FILTER);
+        }
+        if (!criteria.getTitleList().isEmpty()) {
+            query.add(newTermInSetQuery("title_exact", criteria.getTitleList()), BooleanClause.Occur.FILTER);
+        }
+        for (List<String> tagIdList : criteria.getTagIdList()) {
+            query.add(newTermInSetQuery("tag_id", tagIdList), BooleanClause.Occur.FILTER);
+        }
+        for (List<String> tagIdList : criteria.getExcludedTagIdList()) {
+            query.add(newTermInSetQuery("tag_id", tagIdList), BooleanClause.Occur.MUST_NOT);
+        }
+        if (criteria.getShared() != null && criteria.getShared()) {
+            query.add(new TermQuery(new Term("shared", "true")), BooleanClause.Occur.FILTER);
+        }
+        if (criteria.getMimeType() != null) {
+            query.add(new TermQuery(new Term("mimetype", criteria.getMimeType())), BooleanClause.Occur.FILTER);
+        }
+        if (criteria.getLanguage() != null) {
+            query.add(new TermQuery(new Term("language", criteria.getLanguage())), BooleanClause.Occur.FILTER);
+        }
+        if (criteria.getCreatorId() != null) {
+            query.add(new TermQuery(new Term("creator_id", criteria.getCreatorId())), BooleanClause.Occur.FILTER);
+        }
+    }
+
+    /**
+     * Returns the tags readable by some ACL targets.
+     *
+     * @param targetIdList ACL target IDs
+     * @return Tag IDs
+     */
+    @SuppressWarnings("unchecked")
+    private List<String> findReadableTagIds(List<String> targetIdList) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        jakarta.persistence.Query q = em.createNativeQuery("select distinct a.ACL_SOURCEID_C from T_ACL a " +
+                " join T_TAG t on t.TAG_ID_C = a.ACL_SOURCEID_C and t.TAG_DELETEDATE_D is null " +
+                " where a.ACL_TARGETID_C in (:targetIdList) and a.ACL_PERM_C = 'READ' and a.ACL_DELETEDATE_D is null");
+        q.setParameter("targetIdList", targetIdList);
+        return q.getResultList();
+    }
+
+    /**
+     * Create a query matching any of some terms.
+     *
+     * @param field Field
+     * @param valueList Values
+     * @return Query
+     */
+    private Query newTermInSetQuery(String field, Collection<String> valueList) {
+        return new TermInSetQuery(field, valueList.stream()
+                .map(BytesRef::new)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Build the select clause of document searches.
+     * Columns are aliased to be sorted by column index.
+     *
+     * @return Query string builder
+     */
+    private StringBuilder buildDocumentSelect() {
+        StringBuilder sb = new StringBuilder("select distinct d.DOC_ID_C c0, d.DOC_TITLE_C c1, d.DOC_DESCRIPTION_C c2, d.DOC_CREATEDATE_D c3, d.DOC_LANGUAGE_C c4, d.DOC_IDFILE_C, ");
+        sb.append(" s.count c5, ");
+        sb.append(" rs2.RTP_ID_C c7, rs2.RTP_NAME_C, d.DOC_UPDATEDATE_D c8 ");
+        sb.append(" from T_DOCUMENT d ");
+        sb.append(" left join (SELECT count(s.SHA_ID_C) count, ac.ACL_SOURCEID_C " +
+                "   FROM T_SHARE s, T_ACL ac " +
+                "   WHERE ac.ACL_TARGETID_C = s.SHA_ID_C AND ac.ACL_DELETEDATE_D IS NULL AND " +
+                "         s.SHA_DELETEDATE_D IS NULL group by ac.ACL_SOURCEID_C) s on s.ACL_SOURCEID_C = d.DOC_ID_C ");
+        sb.append(" left join (select rs.*, rs3.idDocument " +
+                "from T_ROUTE_STEP rs " +
+                "join (select r.RTE_IDDOCUMENT_C idDocument, rs.RTP_IDROUTE_C idRoute, min(rs.RTP_ORDER_N) minOrder from T_ROUTE_STEP rs join T_ROUTE r on r.RTE_ID_C = rs.RTP_IDROUTE_C and r.RTE_DELETEDATE_D is null where rs.RTP_DELETEDATE_D is null and rs.RTP_ENDDATE_D is null group by rs.RTP_IDROUTE_C, r.RTE_IDDOCUMENT_C) rs3 on rs.RTP_IDROUTE_C = rs3.idRoute and rs.RTP_ORDER_N = rs3.minOrder " +
+                "where rs.RTP_IDTARGET_C in (:targetIdList)) rs2 on rs2.idDocument = d.DOC_ID_C ");
+        return sb;
+    }
+
+    /**
+     * Assemble the results of a document search.
+     *
+     * @param l Rows selected by the document select clause
+     * @return Documents
+     */
+    private List<DocumentDto> assembleResults(List<Object[]> l) {
         List<DocumentDto> documentDtoList = new ArrayList<>();
         for (Object[] o : l) {
             int i = 0;
@@ -378,11 +1203,9 @@ public class LuceneIndexingHandler implements IndexingHandler {
             documentDto.setActiveRoute(o[i++] != null);
             documentDto.setCurrentStepName((String) o[i++]);
             documentDto.setUpdateTimestamp(((Timestamp) o[i]).getTime());
-            documentDto.setHighlight(documentSearchMap.get(documentDto.getId()));
             documentDtoList.add(documentDto);
         }
-
-        paginatedList.setResultList(documentDtoList);
+        return documentDtoList;
     }
 
     /**
@@ -393,31 +1216,48 @@ public class LuceneIndexingHandler implements IndexingHandler {
      * @throws Exception e
      */
     private void suggestSearchTerms(String search, List<String> suggestionList) throws Exception {
-        DirectoryReader directoryReader = getDirectoryReader();
-        if (directoryReader == null) {
-            return;
-        }
-
-        FuzzySuggester suggester = new FuzzySuggester(directory, "", new StandardAnalyzer());
-        LuceneDictionary dictionary = new LuceneDictionary(directoryReader, "title");
-        suggester.build(dictionary);
         int lastIndex = search.lastIndexOf(' ');
         String suggestQuery = search.substring(Math.max(lastIndex, 0));
-        List<Lookup.LookupResult> lookupResultList = suggester.lookup(suggestQuery, false, 10);
-        for (Lookup.LookupResult lookupResult : lookupResultList) {
-            suggestionList.add(lookupResult.key.toString());
+        suggestionList.addAll(titleSuggester.lookup(suggestQuery, 10));
+    }
+
+    /**
+     * Called when the indexed titles may have changed.
+     * The suggester is rebuilt later in the background, or right away in unit tests.
+     */
+    private void onTitleChanged() {
+        if (EnvironmentUtil.isUnitTest()) {
+            buildSuggester();
+        } else {
+            suggesterOutdated.set(true);
         }
     }
 
     /**
-     * Fulltext search in files and documents.
+     * Build the suggester from the current state of the index.
+     */
+    private void buildSuggester() {
+        try {
+            IndexSearcher searcher = acquireSearcher();
+            try {
+                titleSuggester.build(searcher.getIndexReader());
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            log.error("Error building the suggester", e);
+        }
+    }
+
+    /**
+     * Build the fulltext query on files and documents.
      *
      * @param simpleSearchQuery Search query on metadatas
      * @param fullSearchQuery Search query on all fields
-     * @return Map of document IDs as key and highlight as value
+     * @return Query
      * @throws Exception e
      */
-    private Map<String, String> search(String simpleSearchQuery, String fullSearchQuery) throws Exception {
+    private Query buildFullTextQuery(String simpleSearchQuery, String fullSearchQuery) throws Exception {
         // The fulltext query searches in all fields
         String searchQuery = simpleSearchQuery + " " + fullSearchQuery;
 
@@ -425,7 +1265,7 @@ public class LuceneIndexingHandler implements IndexingHandler {
         Analyzer analyzer = new StandardAnalyzer();
 
         // Search on documents and files
-        BooleanQuery query = new BooleanQuery.Builder()
+        return new BooleanQuery.Builder()
                 .add(buildQueryParser(analyzer, "title").parse(searchQuery), BooleanClause.Occur.SHOULD)
                 .add(buildQueryParser(analyzer, "description").parse(searchQuery), BooleanClause.Occur.SHOULD)
                 .add(buildQueryParser(analyzer, "subject").parse(searchQuery), BooleanClause.Occur.SHOULD)
@@ -439,44 +1279,110 @@ public class LuceneIndexingHandler implements IndexingHandler {
                 .add(buildQueryParser(analyzer, "filename").parse(searchQuery), BooleanClause.Occur.SHOULD)
                 .add(buildQueryParser(analyzer, "content").parse(fullSearchQuery), BooleanClause.Occur.SHOULD)
                 .build();
+    }
+
+    /**
+     * Fulltext search in files and documents.
+     * Only the document IDs are collected, from the doc values, without loading the stored fields.
+     *
+     * @param query Fulltext query
+     * @return Set of matching document IDs
+     * @throws Exception e
+     */
+    private Set<String> search(Query query) throws Exception {
+        IndexSearcher searcher = acquireSearcher();
+        try {
+            return collectDocumentIds(searcher, query);
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Collect the document IDs of the documents and files matching a query.
+     *
+     * @param searcher Index searcher
+     * @param query Query
+     * @return Set of matching document IDs
+     * @throws IOException e
+     */
+    private Set<String> collectDocumentIds(IndexSearcher searcher, Query query) throws IOException {
+        DocumentIdCollector collector = new DocumentIdCollector();
+        searcher.search(query, collector);
+        return collector.getDocumentIdSet();
+    }
+
+    /**
+     * Highlight some documents.
+     * The best scoring file content of each document is highlighted.
+     *
+     * @param query Fulltext query
+     * @param documentDtoList Documents to highlight (updated by side effects)
+     * @throws Exception e
+     */
+    private void highlight(Query query, List<DocumentDto> documentDtoList) throws Exception {
+        Map<String, String> highlightMap = highlight(query, documentDtoList.stream()
+                .map(DocumentDto::getId)
+                .collect(Collectors.toList()));
+        for (DocumentDto documentDto : documentDtoList) {
+            documentDto.setHighlight(highlightMap.get(documentDto.getId()));
+        }
+    }
 
-        // Search
-        DirectoryReader directoryReader = getDirectoryReader();
-        Map<String, String> documentMap = Maps.newHashMap();
-        if (directoryReader == null) {
-            // The directory reader is not yet initialized (probably because there is nothing indexed)
-            return documentMap;
+    /**
+     * Compute the highlights of some documents.
+     * The best scoring file content of each document is highlighted.
+     *
+     * @param query Fulltext query
+     * @param documentIdList Documents to highlight
+     * @return Map of document IDs as key and highlight as value
+     * @throws Exception e
+     */
+    private Map<String, String> highlight(Query query, Collection<String> documentIdList) throws Exception {
+        Map<String, String> highlightMap = Maps.newHashMap();
+        if (documentIdList.isEmpty()) {
+            return highlightMap;
         }
-        IndexSearcher searcher = new IndexSearcher(directoryReader);
-        TopDocs topDocs = searcher.search(query, Integer.MAX_VALUE);
-        ScoreDoc[] docs = topDocs.scoreDocs;
 
+        // Search only in the files of these documents
+        Query documentQuery = new BooleanQuery.Builder()
+                .add(query, BooleanClause.Occur.MUST)
+                .add(newTermInSetQuery("document_id", documentIdList), BooleanClause.Occur.FILTER)
+                .build();
+
+        Analyzer analyzer = new StandardAnalyzer();
         SimpleHTMLFormatter simpleHTMLFormatter = new SimpleHTMLFormatter("<strong>", "</strong>");
         SimpleHTMLEncoder simpleHTMLEncoder = new SimpleHTMLEncoder();
         Highlighter highlighter = new Highlighter(simpleHTMLFormatter, simpleHTMLEncoder, new QueryScorer(query));
+        Set<String> remainingIdSet = new HashSet<>(documentIdList);
 
-        // Extract document IDs and highlights
-        for (ScoreDoc doc : docs) {
-            org.apache.lucene.document.Document document = searcher.doc(doc.doc);
-            String type = document.get("doctype");
-            String documentId = null;
-            String highlight = null;
-            if (type.equals("document")) {
-                documentId = document.get("id");
-            } else if (type.equals("file")) {
-                documentId = document.get("document_id");
-                String content = document.get("content");
-                if (content != null) {
-                    highlight = highlighter.getBestFragment(analyzer, "content", content);
-                }
-            }
+        IndexSearcher searcher = acquireSearcher();
+        try {
+            ScoreDoc after = null;
+            TopDocs topDocs;
+            do {
+                topDocs = searcher.searchAfter(after, documentQuery, HIGHLIGHT_BATCH_SIZE);
+                for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                    after = scoreDoc;
+                    org.apache.lucene.document.Document document = searcher.doc(scoreDoc.doc);
+                    String documentId = document.get("document_id");
+                    String content = document.get("content");
+                    if (content == null || !remainingIdSet.contains(documentId)) {
+                        continue;
+                    }
 
-            if (documentId != null) {
-                documentMap.put(documentId, highlight);
-            }
+                    String highlight = highlighter.getBestFragment(analyzer, "content", content);
+                    if (highlight != null) {
+                        highlightMap.put(documentId, highlight);
+                        remainingIdSet.remove(documentId);
+                    }
+                }
+            } while (!remainingIdSet.isEmpty() && topDocs.scoreDocs.length == HIGHLIGHT_BATCH_SIZE);
+        } finally {
+            searcherManager.release(searcher);
         }
 
-        return documentMap;
+        return highlightMap;
     }
 
     /**
@@ -492,17 +1398,112 @@ public class LuceneIndexingHandler implements IndexingHandler {
         return simpleQueryParser;
     }
 
+    /**
+     * Build Lucene documents from database documents.
+     * The filterable data of the documents are loaded from the database by batches.
+     *
+     * @param documentList Documents
+     * @return Lucene documents
+     */
+    private List<org.apache.lucene.document.Document> getDocumentsFromDocuments(List<Document> documentList) {
+        List<org.apache.lucene.document.Document> luceneDocumentList = new ArrayList<>();
+        for (List<Document> batch : Lists.partition(documentList, DOCUMENT_BATCH_SIZE)) {
+            Map<String, DocumentFilterData> filterDataMap = loadFilterData(batch.stream()
+                    .map(Document::getId)
+                    .collect(Collectors.toList()));
+            for (Document document : batch) {
+                luceneDocumentList.add(getDocumentFromDocument(document,
+                        filterDataMap.getOrDefault(document.getId(), new DocumentFilterData())));
+            }
+        }
+        return luceneDocumentList;
+    }
+
+    /**
+     * Load the filterable data of some documents.
+     *
+     * @param documentIdList Document IDs
+     * @return Filterable data by document ID
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, DocumentFilterData> loadFilterData(List<String> documentIdList) {
+        Map<String, DocumentFilterData> filterDataMap = new HashMap<>();
+        if (documentIdList.isEmpty()) {
+            return filterDataMap;
+        }
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+
+        // Read ACLs, a share is an ACL target
+        jakarta.persistence.Query q = em.createNativeQuery("select a.ACL_SOURCEID_C, a.ACL_TARGETID_C, s.SHA_ID_C from T_ACL a " +
+                " left join T_SHARE s on s.SHA_ID_C = a.ACL_TARGETID_C and s.SHA_DELETEDATE_D is null " +
+                " where a.ACL_SOURCEID_C in (:documentIdList) and a.ACL_PERM_C = 'READ' and a.ACL_DELETEDATE_D is null");
+        q.setParameter("documentIdList", documentIdList);
+        for (Object[] o : (List<Object[]>) q.getResultList()) {
+            DocumentFilterData filterData = filterDataMap.computeIfAbsent((String) o[0], id -> new DocumentFilterData());
+            filterData.readTargetIdSet.add((String) o[1]);
+            filterData.shared |= o[2] != null;
+        }
+
+        // Tags
+        q = em.createNativeQuery("select dt.DOT_IDDOCUMENT_C, dt.DOT_IDTAG_C from T_DOCUMENT_TAG dt " +
+                " where dt.DOT_IDDOCUMENT_C in (:documentIdList) and dt.DOT_DELETEDATE_D is null");
+        q.setParameter("documentIdList", documentIdList);
+        for (Object[] o : (List<Object[]>) q.getResultList()) {
+            filterDataMap.computeIfAbsent((String) o[0], id -> new DocumentFilterData()).tagIdSet.add((String) o[1]);
+        }
+
+        // MIME types of the files
+        q = em.createNativeQuery("select distinct f.FIL_IDDOC_C, f.FIL_MIMETYPE_C from T_FILE f " +
+                " where f.FIL_IDDOC_C in (:documentIdList) and f.FIL_DELETEDATE_D is null");
+        q.setParameter("documentIdList", documentIdList);
+        for (Object[] o : (List<Object[]>) q.getResultList()) {
+            if (o[1] != null) {
+                filterDataMap.computeIfAbsent((String) o[0], id -> new DocumentFilterData()).mimeTypeSet.add((String) o[1]);
+            }
+        }
+
+        return filterDataMap;
+    }
+
     /**
      * Build Lucene document from database document.
      *
      * @param document Document
+     * @param filterData Filterable data of the document
      * @return Document
      */
-    private org.apache.lucene.document.Document getDocumentFromDocument(Document document) {
+    private org.apache.lucene.document.Document getDocumentFromDocument(Document document, DocumentFilterData filterData) {
         org.apache.lucene.document.Document luceneDocument = new org.apache.lucene.document.Document();
         luceneDocument.add(new StringField("id", document.getId(), Field.Store.YES));
+        luceneDocument.add(new SortedDocValuesField("document_id", new BytesRef(document.getId())));
         luceneDocument.add(new StringField("doctype", "document", Field.Store.YES));
         luceneDocument.add(new TextField("title", document.getTitle(), Field.Store.NO));
+        luceneDocument.add(new StringField("title_exact", document.getTitle(), Field.Store.NO));
+        luceneDocument.add(new SortedDocValuesField("title_sort", new BytesRef(document.getTitle())));
+
+        // Filterable and sortable fields
+        addDateField(luceneDocument, "create_date", document.getCreateDate());
+        addDateField(luceneDocument, "update_date", document.getUpdateDate());
+        if (document.getLanguage() != null) {
+            luceneDocument.add(new StringField("language", document.getLanguage(), Field.Store.NO));
+            luceneDocument.add(new SortedDocValuesField("language", new BytesRef(document.getLanguage())));
+        }
+        if (document.getUserId() != null) {
+            luceneDocument.add(new StringField("creator_id", document.getUserId(), Field.Store.NO));
+        }
+        for (String targetId : filterData.readTargetIdSet) {
+            luceneDocument.add(new StringField("acl_read", targetId, Field.Store.NO));
+        }
+        for (String tagId : filterData.tagIdSet) {
+            luceneDocument.add(new StringField("tag_id", tagId, Field.Store.NO));
+        }
+        for (String mimeType : filterData.mimeTypeSet) {
+            luceneDocument.add(new StringField("mimetype", mimeType, Field.Store.NO));
+        }
+        if (filterData.shared) {
+            luceneDocument.add(new StringField("shared", "true", Field.Store.NO));
+        }
+
         if (document.getDescription() != null) {
             luceneDocument.add(new TextField("description", document.getDescription(), Field.Store.NO));
         }
@@ -534,6 +1535,20 @@ public class LuceneIndexingHandler implements IndexingHandler {
         return luceneDocument;
     }
 
+    /**
+     * Add a filterable and sortable date field.
+     *
+     * @param luceneDocument Lucene document
+     * @param field Field
+     * @param date Date
+     */
+    private void addDateField(org.apache.lucene.document.Document luceneDocument, String field, Date date) {
+        if (date != null) {
+            luceneDocument.add(new LongPoint(field, date.getTime()));
+            luceneDocument.add(new NumericDocValuesField(field, date.getTime()));
+        }
+    }
+
     /**
      * Build Lucene document from file.
      *
@@ -549,6 +1564,7 @@ public class LuceneIndexingHandler implements IndexingHandler {
         }
         if (file.getDocumentId() != null) {
             luceneDocument.add(new StringField("document_id", file.getDocumentId(), Field.Store.YES));
+            luceneDocument.add(new SortedDocValuesField("document_id", new BytesRef(file.getDocumentId())));
         }
         if (file.getContent() != null) {
             luceneDocument.add(new TextField("content", file.getContent(), Field.Store.YES));
@@ -558,34 +1574,20 @@ public class LuceneIndexingHandler implements IndexingHandler {
     }
 
     /**
-     * Returns a valid directory reader.
-     * Take care of reopening the reader if the index has changed
-     * and closing the previous one.
+     * Acquire an up to date searcher, it must be released after use.
+     * All the operations applied to the index writer are visible from this searcher.
      *
-     * @return the directoryReader
+     * @return Index searcher
+     * @throws IOException e
      */
-    private DirectoryReader getDirectoryReader() {
-        if (directoryReader == null) {
-            try {
-                if (!DirectoryReader.indexExists(directory)) {
-                    return null;
-                }
-                directoryReader = DirectoryReader.open(directory);
-            } catch (IOException e) {
-                log.error("Error creating the directory reader", e);
-            }
-        } else {
-            try {
-                DirectoryReader newReader = DirectoryReader.openIfChanged(directoryReader);
-                if (newReader != null) {
-                    directoryReader.close();
-                    directoryReader = newReader;
-                }
-            } catch (IOException e) {
-                log.error("Error while reopening the directory reader", e);
-            }
+    private IndexSearcher acquireSearcher() throws IOException {
+        indexLock.readLock().lock();
+        try {
+            searcherManager.maybeRefreshBlocking();
+            return searcherManager.acquire();
+        } finally {
+            indexLock.readLock().unlock();
         }
-        return directoryReader;
     }
 
     /**
@@ -594,19 +1596,133 @@ public class LuceneIndexingHandler implements IndexingHandler {
      * @param runnable Runnable
      */
     private void handle(LuceneRunnable runnable) {
+        handle(1, runnable);
+    }
+
+    /**
+     * Encapsulate a process into a Lucene context.
+     * The changes are committed later according to the commit policy.
+     *
+     * @param operationCount Number of operations done by the process
+     * @param runnable Runnable
+     */
+    private void handle(int operationCount, LuceneRunnable runnable) {
+        indexLock.readLock().lock();
         try {
             runnable.run(indexWriter);
+
+            // Keep the index being rebuilt up to date
+            IndexWriter writer = rebuildWriter;
+            if (writer != null) {
+                runnable.run(writer);
+            }
         } catch (Exception e) {
             log.error("Error in running index writing", e);
+        } finally {
+            indexLock.readLock().unlock();
         }
 
+        if (uncommittedOperationCount.addAndGet(operationCount) >= commitMaxOperations
+                && commitRequested.compareAndSet(false, true)) {
+            indexExecutor.execute(this::commit);
+        }
+    }
+
+    /**
+     * Commit the index writer if it has uncommitted changes.
+     * The commit timestamp is saved along the commit to replay operations after a crash.
+     */
+    private synchronized void commit() {
+        commitRequested.set(false);
+        if (indexWriter == null || !indexWriter.hasUncommittedChanges()) {
+            return;
+        }
+
+        int operationCount = uncommittedOperationCount.getAndSet(0);
+        long startTime = System.currentTimeMillis();
+        Long timestamp = replayTimestamp;
         try {
+            indexWriter.setLiveCommitData(Map.of(
+                    COMMIT_INDEX_VERSION, INDEX_VERSION,
+                    COMMIT_TIMESTAMP, Long.toString(timestamp == null ? startTime : timestamp)).entrySet());
             indexWriter.commit();
+            log.debug("Committed {} index operations in {}ms", operationCount, System.currentTimeMillis() - startTime);
         } catch (IOException e) {
             log.error("Cannot commit index writer", e);
         }
     }
 
+    /**
+     * Filterable data of a document stored in other tables.
+     */
+    private static class DocumentFilterData {
+        /**
+         * Targets having the read permission on the document.
+         */
+        private final Set<String> readTargetIdSet = new HashSet<>();
+
+        /**
+         * Tags of the document.
+         */
+        private final Set<String> tagIdSet = new HashSet<>();
+
+        /**
+         * MIME types of the files of the document.
+         */
+        private final Set<String> mimeTypeSet = new HashSet<>();
+
+        /**
+         * True if the document is shared.
+         */
+        private boolean shared;
+    }
+
+    /**
+     * Collector of the document IDs of the matching documents and files.
+     * Files not attached to a document are ignored.
+     */
+    private static class DocumentIdCollector extends SimpleCollector {
+        /**
+         * Collected document IDs.
+         */
+        private final Set<String> documentIdSet = new HashSet<>();
+
+        /**
+         * Document IDs of the current segment.
+         */
+        private SortedDocValues documentIdValues;
+
+        /**
+         * Ordinals already collected in the current segment.
+         */
+        private FixedBitSet collectedOrdSet;
+
+        @Override
+        protected void doSetNextReader(LeafReaderContext context) throws IOException {
+            documentIdValues = DocValues.getSorted(context.reader(), "document_id");
+            collectedOrdSet = new FixedBitSet(Math.max(documentIdValues.getValueCount(), 1));
+        }
+
+        @Override
+        public void collect(int doc) throws IOException {
+            if (documentIdValues.advanceExact(doc)) {
+                int ord = documentIdValues.ordValue();
+                if (!collectedOrdSet.getAndSet(ord)) {
+                    documentIdSet.add(documentIdValues.lookupOrd(ord).utf8ToString());
+                }
+            }
+        }
+
+        @Override
+        public ScoreMode scoreMode() {
+            return ScoreMode.COMPLETE_NO_SCORES;
+        }
+
+        public Set<String> getDocumentIdSet() {
+            return documentIdSet;
+        }
+    }
+
     /**
      * Lucene runnable.
      *
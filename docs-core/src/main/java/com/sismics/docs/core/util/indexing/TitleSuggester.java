@@ -0,0 +1,140 @@
+package com.sismics.docs.core.util.indexing;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.spell.LuceneDictionary;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.search.suggest.analyzing.FuzzySuggester;
+import org.apache.lucene.store.Directory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Search terms suggester built from the titles of the indexed documents.
+ * The suggester is built from an index reader and optionally stored on disk,
+ * lookups are done on the last built suggester and never rebuild it.
+ *
+ * @author bgamard
+ */
+public class TitleSuggester {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(TitleSuggester.class);
+
+    /**
+     * File storing the suggester, null to keep it in memory only.
+     */
+    private final Path storeFile;
+
+    /**
+     * Directory used for temporary files while building.
+     */
+    private final Directory tempDirectory;
+
+    /**
+     * Current suggester, null if not built yet.
+     */
+    private volatile Lookup lookup;
+
+    /**
+     * Constructor.
+     *
+     * @param storeFile File storing the suggester, null to keep it in memory only
+     * @param tempDirectory Directory used for temporary files while building
+     */
+    public TitleSuggester(Path storeFile, Directory tempDirectory) {
+        this.storeFile = storeFile;
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * Load the suggester previously stored.
+     *
+     * @return True if the suggester has been loaded
+     */
+    public boolean load() {
+        if (storeFile == null || !Files.exists(storeFile)) {
+            return false;
+        }
+
+        FuzzySuggester suggester = newSuggester();
+        try (InputStream is = Files.newInputStream(storeFile)) {
+            if (!suggester.load(is)) {
+                return false;
+            }
+        } catch (IOException e) {
+            log.warn("Unable to load the stored suggester, it will be rebuilt: " + e.getMessage());
+            return false;
+        }
+        lookup = suggester;
+        return true;
+    }
+
+    /**
+     * Build the suggester from the title terms of an index, and store it.
+     * The previous suggester is used for lookups until the new one is built.
+     *
+     * @param reader Index reader
+     * @throws IOException e
+     */
+    public void build(IndexReader reader) throws IOException {
+        long startTime = System.currentTimeMillis();
+        FuzzySuggester suggester = newSuggester();
+        suggester.build(new LuceneDictionary(reader, "title"));
+        lookup = suggester;
+        log.info("Suggester built in {}ms", System.currentTimeMillis() - startTime);
+
+        if (storeFile != null) {
+            Path tmpFile = storeFile.resolveSibling(storeFile.getFileName() + ".tmp");
+            try (OutputStream os = Files.newOutputStream(tmpFile)) {
+                if (!suggester.store(os)) {
+                    // Nothing to store
+                    Files.deleteIfExists(tmpFile);
+                    Files.deleteIfExists(storeFile);
+                    return;
+                }
+            }
+            Files.move(tmpFile, storeFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Suggest terms completing a query.
+     *
+     * @param query Query to complete
+     * @param count Maximum number of suggestions
+     * @return Suggestions
+     * @throws IOException e
+     */
+    public List<String> lookup(String query, int count) throws IOException {
+        List<String> suggestionList = new ArrayList<>();
+        Lookup current = lookup;
+        if (current == null) {
+            return suggestionList;
+        }
+
+        for (Lookup.LookupResult lookupResult : current.lookup(query, false, count)) {
+            suggestionList.add(lookupResult.key.toString());
+        }
+        return suggestionList;
+    }
+
+    /**
+     * Create a new empty suggester.
+     *
+     * @return Suggester
+     */
+    private FuzzySuggester newSuggester() {
+        return new FuzzySuggester(tempDirectory, "suggester", new StandardAnalyzer());
+    }
+}
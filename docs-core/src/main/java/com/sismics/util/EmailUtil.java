@@ -9,6 +9,7 @@ import com.sismics.docs.core.dao.dto.UserDto;
 import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.Config;
 import com.sismics.docs.core.util.ConfigUtil;
+import com.sismics.docs.core.util.TemporaryFile;
 import freemarker.template.Configuration;
 import freemarker.template.DefaultObjectWrapperBuilder;
 import freemarker.template.Template;
@@ -25,13 +26,13 @@ import javax.mail.MessagingException;
 import javax.mail.Multipart;
 import javax.mail.Part;
 import javax.mail.internet.MimeBodyPart;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.Date;
 import java.util.List;
@@ -203,9 +204,9 @@ public class EmailUtil {
                     FileContent fileContent = new FileContent();
                     fileContent.name = subPart.getFileName();
                     fileContent.file = AppContext.getInstance().getFileService().createTemporaryFile();
-                    Files.copy(subPart.getInputStream(), fileContent.file, StandardCopyOption.REPLACE_EXISTING);
-                    fileContent.size = Files.size(fileContent.file);
                     mailContent.fileContentList.add(fileContent);
+                    Files.copy(subPart.getInputStream(), fileContent.file.getPath(), StandardCopyOption.REPLACE_EXISTING);
+                    fileContent.size = Files.size(fileContent.file.getPath());
                 } else {
                     parseMailContent(subPart, mailContent);
                 }
@@ -226,16 +227,17 @@ public class EmailUtil {
         } else if (content instanceof InputStream) {
             FileContent fileContent = new FileContent();
             fileContent.file = AppContext.getInstance().getFileService().createTemporaryFile();
-            Files.copy((InputStream) content, fileContent.file, StandardCopyOption.REPLACE_EXISTING);
-            fileContent.size = Files.size(fileContent.file);
             mailContent.fileContentList.add(fileContent);
+            Files.copy((InputStream) content, fileContent.file.getPath(), StandardCopyOption.REPLACE_EXISTING);
+            fileContent.size = Files.size(fileContent.file.getPath());
         }
     }
 
     /**
      * Structure defining a parsed email to be imported.
+     * Closing it deletes the temporary files of its attachments.
      */
-    public static class MailContent {
+    public static class MailContent implements Closeable {
         private String subject;
         private String message;
         private Date date;
@@ -267,6 +269,13 @@ public class EmailUtil {
             this.date = date;
             return this;
         }
+
+        @Override
+        public void close() {
+            for (FileContent fileContent : fileContentList) {
+                fileContent.file.close();
+            }
+        }
     }
 
     /**
@@ -274,14 +283,14 @@ public class EmailUtil {
      */
     public static class FileContent {
         private String name;
-        private Path file;
+        private TemporaryFile file;
         private long size;
 
         public String getName() {
             return name;
         }
 
-        public Path getFile() {
+        public TemporaryFile getFile() {
             return file;
         }
 
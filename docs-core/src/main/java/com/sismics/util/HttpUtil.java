@@ -1,6 +1,9 @@
 package com.sismics.util;
 
 import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
 import java.util.Locale;
 
@@ -24,4 +27,122 @@ public class HttpUtil {
     public static String buildExpiresHeader(long futureTime) {
         return EXPIRES_FORMAT.format(new Date().getTime() + futureTime);
     }
+
+    /**
+     * Format a date as an HTTP date (e.g. Last-Modified header).
+     *
+     * @param time Date as timestamp
+     * @return Formatted date
+     */
+    public static String formatHttpDate(long time) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(time).atOffset(ZoneOffset.UTC));
+    }
+
+    /**
+     * Check if an If-None-Match HTTP header matches an entity tag.
+     * Weak comparison is used as specified for If-None-Match.
+     *
+     * @param ifNoneMatchHeader If-None-Match header value
+     * @param etag Entity tag
+     * @return True if the entity tag matches
+     */
+    public static boolean matchesETag(String ifNoneMatchHeader, String etag) {
+        if (ifNoneMatchHeader == null || etag == null) {
+            return false;
+        }
+        String opaqueTag = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String value : ifNoneMatchHeader.split(",")) {
+            value = value.trim();
+            if (value.equals("*")) {
+                return true;
+            }
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parse a Range HTTP header.
+     * Only a single byte range is supported, other ranges are ignored and the whole content should be returned.
+     *
+     * @param rangeHeader Range header value
+     * @param length Length of the content
+     * @return Byte range, null if the whole content should be returned
+     */
+    public static ByteRange parseRange(String rangeHeader, long length) {
+        if (rangeHeader == null || !rangeHeader.trim().startsWith("bytes=")) {
+            return null;
+        }
+        String rangeSpec = rangeHeader.trim().substring("bytes=".length()).trim();
+        int dashIndex = rangeSpec.indexOf('-');
+        if (rangeSpec.contains(",") || dashIndex < 0) {
+            return null;
+        }
+
+        try {
+            String startValue = rangeSpec.substring(0, dashIndex).trim();
+            String endValue = rangeSpec.substring(dashIndex + 1).trim();
+            if (startValue.isEmpty()) {
+                // Suffix range: the last bytes
+                long suffixLength = Long.parseLong(endValue);
+                return new ByteRange(Math.max(length - suffixLength, 0), length - 1, suffixLength > 0 && length > 0);
+            }
+
+            long start = Long.parseLong(startValue);
+            long end = endValue.isEmpty() ? Long.MAX_VALUE : Long.parseLong(endValue);
+            if (start < 0 || end < start) {
+                return null;
+            }
+            return new ByteRange(start, Math.min(end, length - 1), start < length);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Byte range requested by a client.
+     */
+    public static class ByteRange {
+        /**
+         * First byte position.
+         */
+        private final long start;
+
+        /**
+         * Last byte position (inclusive).
+         */
+        private final long end;
+
+        /**
+         * True if the range overlaps the content.
+         */
+        private final boolean satisfiable;
+
+        private ByteRange(long start, long end, boolean satisfiable) {
+            this.start = start;
+            this.end = end;
+            this.satisfiable = satisfiable;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        public long getLength() {
+            return end - start + 1;
+        }
+
+        public boolean isSatisfiable() {
+            return satisfiable;
+        }
+    }
 }
@@ -1,167 +1,255 @@
 package com.sismics.util;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.Arrays;
+import java.util.stream.IntStream;
 
 /**
- * <a url=http://www.jdeskew.com/>JDeskew</a>
+ * Skew angle detection, adapted from <a url=http://www.jdeskew.com/>JDeskew</a>.
+ * The lower edges of the black pixels vote for all the lines passing through them (Hough transformation),
+ * the skew angle is the average angle of the most voted lines.
+ * The pixels are read from the image raster and downsampled before the vote, the angles are voted in parallel.
+ *
+ * @author bgamard
  */
 public class ImageDeskew {
     /**
-     * Representation of a line in the image.
+     * Maximum width of the downsampled image.
      */
-    public class HoughLine {
-
-        // count of points in the line
-        public int count = 0;
-        // index in matrix.
-        public int index = 0;
-        // the line is represented as all x, y that solve y * cos(alpha) - x *
-        // sin(alpha) = d
-        public double alpha;
-        public double d;
-    }
-
-    // the source image
-    private BufferedImage cImage;
-    // the range of angles to search for lines
-    private double cAlphaStart = -20;
-    private double cAlphaStep = 0.2;
-    private int cSteps = 40 * 5;
-    // pre-calculation of sin and cos
-    private double[] cSinA;
-    private double[] cCosA;
-    // range of d
-    private double cDMin;
-    private double cDStep = 1.0;
-    private int cDCount;
-    // count of points that fit in a line
-    private int[] cHMatrix;
-
-    // constructor
-    public ImageDeskew(BufferedImage image) {
-        this.cImage = image;
-    }
+    private static final int VOTE_WIDTH = 1000;
 
-    // calculate the skew angle of the image cImage
-    public double getSkewAngle() {
-        ImageDeskew.HoughLine[] hl;
-        double sum = 0.0;
-        int count = 0;
-
-        // perform Hough Transformation
-        calc();
-        // top 20 of the detected lines in the image
-        hl = getTop(20);
-
-        if (hl.length >= 20) {
-            // average angle of the lines
-            for (int i = 0; i < 19; i++) {
-                sum += hl[i].alpha;
-                count++;
-            }
-            return (sum / count);
-        } else {
-            return 0.0d;
-        }
-    }
+    /**
+     * Luminance under which a pixel is black.
+     */
+    private static final int LUMINANCE_CUTOFF = 140;
 
-    // calculate the count lines in the image with most points
-    private ImageDeskew.HoughLine[] getTop(int count) {
+    /**
+     * First angle searched, in degrees.
+     */
+    private static final double ALPHA_START = -20;
 
-        ImageDeskew.HoughLine[] hl = new ImageDeskew.HoughLine[count];
-        for (int i = 0; i < count; i++) {
-            hl[i] = new ImageDeskew.HoughLine();
-        }
+    /**
+     * Step between two searched angles, in degrees.
+     */
+    private static final double ALPHA_STEP = 0.2;
 
-        ImageDeskew.HoughLine tmp;
-
-        for (int i = 0; i < (this.cHMatrix.length - 1); i++) {
-            if (this.cHMatrix[i] > hl[count - 1].count) {
-                hl[count - 1].count = this.cHMatrix[i];
-                hl[count - 1].index = i;
-                int j = count - 1;
-                while ((j > 0) && (hl[j].count > hl[j - 1].count)) {
-                    tmp = hl[j];
-                    hl[j] = hl[j - 1];
-                    hl[j - 1] = tmp;
-                    j--;
-                }
-            }
-        }
+    /**
+     * Number of searched angles.
+     */
+    private static final int ALPHA_COUNT = 199;
 
-        int alphaIndex;
-        int dIndex;
+    /**
+     * Number of lines averaged.
+     */
+    private static final int LINE_COUNT = 20;
 
-        for (int i = 0; i < count; i++) {
-            dIndex = hl[i].index / cSteps; // integer division, no
-            // remainder
-            alphaIndex = hl[i].index - dIndex * cSteps;
-            hl[i].alpha = getAlpha(alphaIndex);
-            hl[i].d = dIndex + cDMin;
-        }
+    /**
+     * Source image.
+     */
+    private final BufferedImage image;
 
-        return hl;
+    /**
+     * Constructor.
+     *
+     * @param image Source image
+     */
+    public ImageDeskew(BufferedImage image) {
+        this.image = image;
     }
 
-    // Hough Transformation
-    private void calc() {
-        int hMin = (int) ((this.cImage.getHeight()) / 4.0);
-        int hMax = (int) ((this.cImage.getHeight()) * 3.0 / 4.0);
-        init();
-
-        for (int y = hMin; y < hMax; y++) {
-            for (int x = 1; x < (this.cImage.getWidth() - 2); x++) {
-                // only lower edges are considered
-                if (ImageUtil.isBlack(this.cImage, x, y)) {
-                    if (!ImageUtil.isBlack(this.cImage, x, y + 1)) {
-                        calc(x, y);
+    /**
+     * Calculate the skew angle of the image.
+     *
+     * @return Skew angle in degrees, 0 if no line is detected
+     */
+    public double getSkewAngle() {
+        // Downsample the image, a block is black if one of its pixels is black
+        int factor = Math.max(1, (image.getWidth() + VOTE_WIDTH - 1) / VOTE_WIDTH);
+        int width = image.getWidth() / factor;
+        int height = image.getHeight() / factor;
+        if (width < 4 || height < 4) {
+            return 0;
+        }
+
+        // Only the lower edges in the middle half of the image are considered
+        int yMin = height / 4;
+        int yMax = height * 3 / 4;
+        boolean[] blackBlocks = readBlackBlocks(factor, width, yMin, yMax + 1);
+        int[] xs = new int[1024];
+        int[] ys = new int[1024];
+        int pointCount = 0;
+        for (int y = yMin; y < yMax; y++) {
+            int row = (y - yMin) * width;
+            for (int x = 1; x < width - 2; x++) {
+                if (blackBlocks[row + x] && !blackBlocks[row + width + x]) {
+                    if (pointCount == xs.length) {
+                        xs = Arrays.copyOf(xs, pointCount * 2);
+                        ys = Arrays.copyOf(ys, pointCount * 2);
                     }
+                    xs[pointCount] = x;
+                    ys[pointCount] = y;
+                    pointCount++;
                 }
             }
         }
 
+        int[] votes = vote(xs, ys, pointCount, width, height);
+        return averageTopAngle(votes, 2 * (width + height));
     }
 
-    // calculate all lines through the point (x,y)
-    private void calc(int x, int y) {
-        double d;
-        int dIndex;
-        int index;
-
-        for (int alpha = 0; alpha < (this.cSteps - 1); alpha++) {
-            d = y * this.cCosA[alpha] - x * this.cSinA[alpha];
-            dIndex = (int) (d - this.cDMin);
-            index = dIndex * this.cSteps + alpha;
-            try {
-                this.cHMatrix[index] += 1;
-            } catch (Exception ex) {
-                System.out.println(ex.toString());
+    /**
+     * Read the black pixels of the image, downsampled in blocks.
+     *
+     * @param factor Size of a block in pixels
+     * @param width Width in blocks
+     * @param yStart First row of blocks
+     * @param yEnd Last row of blocks (exclusive)
+     * @return Black blocks, row by row
+     */
+    private boolean[] readBlackBlocks(int factor, int width, int yStart, int yEnd) {
+        boolean[] blackBlocks = new boolean[(yEnd - yStart) * width];
+        boolean[] blackPixels = new boolean[width * factor];
+        int[] rgb = new int[width * factor];
+        for (int y = yStart * factor; y < yEnd * factor; y++) {
+            readBlackPixels(y, blackPixels, rgb);
+            int row = (y / factor - yStart) * width;
+            for (int x = 0; x < blackPixels.length; x++) {
+                if (blackPixels[x]) {
+                    blackBlocks[row + x / factor] = true;
+                }
             }
         }
+        return blackBlocks;
     }
 
-    private void init() {
+    /**
+     * Read the black pixels of a row, from the raster data if its layout is known.
+     *
+     * @param y Row
+     * @param blackPixels Black pixels of the row
+     * @param rgb Buffer of RGB values
+     */
+    private void readBlackPixels(int y, boolean[] blackPixels, int[] rgb) {
+        Raster raster = image.getRaster();
+        int sampleY = y - raster.getSampleModelTranslateY();
+        int sampleX = -raster.getSampleModelTranslateX();
+        switch (image.getType()) {
+            case BufferedImage.TYPE_BYTE_GRAY: {
+                ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+                DataBufferByte dataBuffer = (DataBufferByte) raster.getDataBuffer();
+                byte[] data = dataBuffer.getData();
+                int offset = dataBuffer.getOffset() + sampleModel.getOffset(sampleX, sampleY);
+                int pixelStride = sampleModel.getPixelStride();
+                for (int x = 0; x < blackPixels.length; x++) {
+                    blackPixels[x] = (data[offset + x * pixelStride] & 0xff) < LUMINANCE_CUTOFF;
+                }
+                return;
+            }
 
-        double angle;
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB: {
+                SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) raster.getSampleModel();
+                DataBufferInt dataBuffer = (DataBufferInt) raster.getDataBuffer();
+                int offset = dataBuffer.getOffset() + sampleModel.getOffset(sampleX, sampleY);
+                System.arraycopy(dataBuffer.getData(), offset, rgb, 0, blackPixels.length);
+                break;
+            }
 
-        // pre-calculation of sin and cos
-        this.cSinA = new double[this.cSteps - 1];
-        this.cCosA = new double[this.cSteps - 1];
+            default:
+                image.getRGB(0, y, blackPixels.length, 1, rgb, 0, blackPixels.length);
+        }
 
-        for (int i = 0; i < (this.cSteps - 1); i++) {
-            angle = getAlpha(i) * Math.PI / 180.0;
-            this.cSinA[i] = Math.sin(angle);
-            this.cCosA[i] = Math.cos(angle);
+        for (int x = 0; x < blackPixels.length; x++) {
+            blackPixels[x] = isBlack(rgb[x]);
         }
+    }
 
-        // range of d
-        this.cDMin = -this.cImage.getWidth();
-        this.cDCount = (int) (2.0 * ((this.cImage.getWidth() + this.cImage.getHeight())) / this.cDStep);
-        this.cHMatrix = new int[this.cDCount * this.cSteps];
+    /**
+     * Return true if a RGB value is black.
+     *
+     * @param rgb RGB value
+     * @return True if black
+     */
+    private static boolean isBlack(int rgb) {
+        int r = (rgb >> 16) & 0xff;
+        int g = (rgb >> 8) & 0xff;
+        int b = rgb & 0xff;
+        return r * 299 + g * 587 + b * 114 < LUMINANCE_CUTOFF * 1000;
+    }
 
+    /**
+     * Vote for all the lines passing through the points.
+     * The votes of each angle are stored contiguously and counted by a single thread.
+     *
+     * @param xs X of the points
+     * @param ys Y of the points
+     * @param pointCount Number of points
+     * @param width Image width
+     * @param height Image height
+     * @return Votes by angle then distance, a line is all the x, y solving y * cos(alpha) - x * sin(alpha) = d
+     */
+    private static int[] vote(int[] xs, int[] ys, int pointCount, int width, int height) {
+        int dCount = 2 * (width + height);
+        int[] votes = new int[ALPHA_COUNT * dCount];
+        IntStream.range(0, ALPHA_COUNT).parallel().forEach(alphaIndex -> {
+            double angle = Math.toRadians(getAlpha(alphaIndex));
+            float sin = (float) Math.sin(angle);
+            float cos = (float) Math.cos(angle);
+            int offset = alphaIndex * dCount;
+            for (int i = 0; i < pointCount; i++) {
+                // d starts at -width
+                votes[offset + (int) (ys[i] * cos - xs[i] * sin + width)]++;
+            }
+        });
+        return votes;
     }
 
-    private double getAlpha(int index) {
-        return this.cAlphaStart + (index * this.cAlphaStep);
+    /**
+     * Average the angle of the most voted lines.
+     *
+     * @param votes Votes by angle then distance
+     * @param dCount Number of distances by angle
+     * @return Average angle, 0 if there are not enough lines
+     */
+    private static double averageTopAngle(int[] votes, int dCount) {
+        // Top lines, ordered by votes
+        int[] topVotes = new int[LINE_COUNT];
+        int[] topIndexes = new int[LINE_COUNT];
+        for (int i = 0; i < votes.length; i++) {
+            if (votes[i] > topVotes[LINE_COUNT - 1]) {
+                int j = LINE_COUNT - 1;
+                while (j > 0 && votes[i] > topVotes[j - 1]) {
+                    topVotes[j] = topVotes[j - 1];
+                    topIndexes[j] = topIndexes[j - 1];
+                    j--;
+                }
+                topVotes[j] = votes[i];
+                topIndexes[j] = i;
+            }
+        }
+
+        if (topVotes[LINE_COUNT - 1] == 0) {
+            return 0;
+        }
+        double sum = 0;
+        for (int index : topIndexes) {
+            sum += getAlpha(index / dCount);
+        }
+        return sum / LINE_COUNT;
+    }
+
+    /**
+     * Return the angle of an index.
+     *
+     * @param index Angle index
+     * @return Angle in degrees
+     */
+    private static double getAlpha(int index) {
+        return ALPHA_START + index * ALPHA_STEP;
     }
 }
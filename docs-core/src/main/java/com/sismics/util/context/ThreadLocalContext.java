@@ -58,16 +58,25 @@ public class ThreadLocalContext {
     
     /**
      * Getter of entityManager.
+     * The persistence context is kept for the whole unit of work (request or transaction),
+     * changes are flushed before the queries reading them and at commit.
      *
      * @return entityManager
      */
     public EntityManager getEntityManager() {
+        return entityManager;
+    }
+
+    /**
+     * Flush the pending changes and detach all managed entities.
+     * Bulk update and delete statements bypass the persistence context, this must be called after them
+     * so that the next reads see the database state and stale entities are never flushed back.
+     */
+    public void clearEntityManager() {
         if (entityManager != null && entityManager.isOpen()) {
-            // This disables the L1 cache
             entityManager.flush();
             entityManager.clear();
         }
-        return entityManager;
     }
 
     /**
@@ -88,6 +97,19 @@ public class ThreadLocalContext {
         asyncEventList.add(asyncEvent);
     }
 
+    /**
+     * Post all pending async events to the pre-commit listeners, in the current transaction.
+     * This way, the changes done by these listeners are committed atomically with the request.
+     */
+    public void firePreCommitEvents() {
+        for (Object asyncEvent : asyncEventList) {
+            AppContext.getInstance().getPreCommitEventBus().post(asyncEvent);
+        }
+        if (!asyncEventList.isEmpty() && entityManager.getTransaction().getRollbackOnly()) {
+            throw new IllegalStateException("A pre-commit listener has failed");
+        }
+    }
+
     /**
      * Fire all pending async events.
      */
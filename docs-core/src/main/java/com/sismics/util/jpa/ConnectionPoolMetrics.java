@@ -0,0 +1,157 @@
+package com.sismics.util.jpa;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of the database connection pool.
+ * Keeps the counters in memory, to be exposed without any external metrics registry.
+ *
+ * @author bgamard
+ */
+public class ConnectionPoolMetrics implements MetricsTrackerFactory {
+    /**
+     * Pool statistics, null until the pool is started.
+     */
+    private volatile PoolStats poolStats;
+
+    /**
+     * Number of connections acquired.
+     */
+    private final AtomicLong acquiredCount = new AtomicLong();
+
+    /**
+     * Total time spent waiting for a connection (in nanoseconds).
+     */
+    private final AtomicLong totalAcquireTime = new AtomicLong();
+
+    /**
+     * Longest time spent waiting for a connection (in nanoseconds).
+     */
+    private final AtomicLong maxAcquireTime = new AtomicLong();
+
+    /**
+     * Number of connections returned to the pool.
+     */
+    private final AtomicLong usageCount = new AtomicLong();
+
+    /**
+     * Total time a connection has been borrowed (in milliseconds).
+     */
+    private final AtomicLong totalUsageTime = new AtomicLong();
+
+    /**
+     * Number of connection requests which timed out.
+     */
+    private final AtomicLong timeoutCount = new AtomicLong();
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        this.poolStats = poolStats;
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquiredCount.incrementAndGet();
+                totalAcquireTime.addAndGet(elapsedAcquiredNanos);
+                maxAcquireTime.accumulateAndGet(elapsedAcquiredNanos, Math::max);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                usageCount.incrementAndGet();
+                totalUsageTime.addAndGet(elapsedBorrowedMillis);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeoutCount.incrementAndGet();
+            }
+        };
+    }
+
+    /**
+     * Returns the number of connections in use.
+     *
+     * @return Number of connections
+     */
+    public int getActiveConnections() {
+        return poolStats == null ? 0 : poolStats.getActiveConnections();
+    }
+
+    /**
+     * Returns the number of idle connections.
+     *
+     * @return Number of connections
+     */
+    public int getIdleConnections() {
+        return poolStats == null ? 0 : poolStats.getIdleConnections();
+    }
+
+    /**
+     * Returns the number of connections, in use or idle.
+     *
+     * @return Number of connections
+     */
+    public int getTotalConnections() {
+        return poolStats == null ? 0 : poolStats.getTotalConnections();
+    }
+
+    /**
+     * Returns the number of threads waiting for a connection.
+     *
+     * @return Number of threads
+     */
+    public int getPendingThreads() {
+        return poolStats == null ? 0 : poolStats.getPendingThreads();
+    }
+
+    /**
+     * Returns the maximum number of connections.
+     *
+     * @return Number of connections
+     */
+    public int getMaxConnections() {
+        return poolStats == null ? 0 : poolStats.getMaxConnections();
+    }
+
+    public long getAcquiredCount() {
+        return acquiredCount.get();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    /**
+     * Returns the average time spent waiting for a connection.
+     *
+     * @return Average wait time (in microseconds)
+     */
+    public long getAverageAcquireTime() {
+        long count = acquiredCount.get();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalAcquireTime.get() / count);
+    }
+
+    /**
+     * Returns the longest time spent waiting for a connection.
+     *
+     * @return Maximum wait time (in microseconds)
+     */
+    public long getMaxAcquireTime() {
+        return TimeUnit.NANOSECONDS.toMicros(maxAcquireTime.get());
+    }
+
+    /**
+     * Returns the average time a connection is borrowed.
+     *
+     * @return Average usage time (in milliseconds)
+     */
+    public long getAverageUsageTime() {
+        long count = usageCount.get();
+        return count == 0 ? 0 : totalUsageTime.get() / count;
+    }
+}
@@ -2,6 +2,15 @@ package com.sismics.util.jpa;
 
 import com.google.common.base.Strings;
 import com.sismics.docs.core.util.DirectoryUtil;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.jcache.MissingCacheStrategy;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.internal.util.config.ConfigurationHelper;
 import org.hibernate.service.ServiceRegistry;
@@ -10,13 +19,16 @@ import org.slf4j.LoggerFactory;
 
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.Persistence;
+import jakarta.persistence.SharedCacheMode;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.nio.file.Path;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.OptionalLong;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Entity manager factory.
@@ -26,15 +38,26 @@ import java.util.Properties;
 public final class EMF {
     private static final Logger log = LoggerFactory.getLogger(EMF.class);
 
+    /**
+     * Second-level cache region of the reference entities.
+     */
+    public static final String REFERENCE_CACHE_REGION = "reference";
+
     private static Properties properties;
 
     private static EntityManagerFactory emfInstance;
 
+    private static HikariDataSource dataSource;
+
+    private static final ConnectionPoolMetrics poolMetrics = new ConnectionPoolMetrics();
+
     static {
         try {
             properties = getEntityManagerProperties();
 
             ConfigurationHelper.resolvePlaceHolders(properties);
+            dataSource = createDataSource(properties);
+            properties.put(AvailableSettings.CONNECTION_PROVIDER, new PooledConnectionProvider(dataSource));
             ServiceRegistry reg = new StandardServiceRegistryBuilder().applySettings(properties).build();
 
             DbOpenHelper openHelper = new DbOpenHelper(reg) {
@@ -51,8 +74,9 @@ public final class EMF {
                 }
             };
             openHelper.open();
-            
-            emfInstance = Persistence.createEntityManagerFactory("transactions-optional", getEntityManagerProperties());
+
+            configureCache(properties);
+            emfInstance = Persistence.createEntityManagerFactory("transactions-optional", properties);
             
         } catch (Throwable t) {
             log.error("Error creating EMF", t);
@@ -105,12 +129,109 @@ public final class EMF {
         props.put("hibernate.show_sql", "false");
         props.put("hibernate.format_sql", "false");
         props.put("hibernate.max_fetch_depth", "5");
-        props.put("hibernate.cache.use_second_level_cache", "false");
+        props.put("hibernate.cache.use_second_level_cache", Boolean.toString(Boolean.parseBoolean(System.getenv("DATABASE_CACHE"))));
         props.put("hibernate.connection.initial_pool_size", "1");
         props.put("hibernate.connection.pool_size", databasePoolSize);
-        props.put("hibernate.connection.pool_validation_interval", "5");
         return props;
     }
+
+    /**
+     * Create the connection pool from the connection properties.
+     * The pool settings can be overridden by environment parameters, durations are in seconds.
+     *
+     * @param properties Entity manager properties
+     * @return Pooled data source
+     */
+    private static HikariDataSource createDataSource(Properties properties) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("docs");
+        config.setDriverClassName(properties.getProperty("hibernate.connection.driver_class"));
+        config.setJdbcUrl(properties.getProperty("hibernate.connection.url"));
+        config.setUsername(properties.getProperty("hibernate.connection.username"));
+        config.setPassword(properties.getProperty("hibernate.connection.password"));
+        // Hibernate manages the transactions, same as its built-in pool
+        config.setAutoCommit(false);
+        properties.put(AvailableSettings.CONNECTION_PROVIDER_DISABLES_AUTOCOMMIT, "true");
+
+        int maxPoolSize = getIntegerSetting("DATABASE_POOL_SIZE",
+                properties.remove("hibernate.connection.pool_size"), 10);
+        int minIdle = getIntegerSetting("DATABASE_POOL_MIN_IDLE",
+                properties.remove("hibernate.connection.initial_pool_size"), 1);
+        properties.remove("hibernate.connection.pool_validation_interval");
+        config.setMaximumPoolSize(maxPoolSize);
+        config.setMinimumIdle(Math.min(minIdle, maxPoolSize));
+        config.setConnectionTimeout(TimeUnit.SECONDS.toMillis(getIntegerSetting("DATABASE_CONNECTION_TIMEOUT", null, 30)));
+        config.setIdleTimeout(TimeUnit.SECONDS.toMillis(getIntegerSetting("DATABASE_IDLE_TIMEOUT", null, 600)));
+        // Disabled by default, a connection borrowed for longer is logged with the borrowing stack trace
+        config.setLeakDetectionThreshold(TimeUnit.SECONDS.toMillis(getIntegerSetting("DATABASE_LEAK_DETECTION_THRESHOLD", null, 0)));
+
+        // Statements are cached by the driver on each pooled connection
+        int statementCacheSize = getIntegerSetting("DATABASE_STATEMENT_CACHE_SIZE", null, 256);
+        if (config.getDriverClassName().contains("postgresql")) {
+            config.addDataSourceProperty("preparedStatementCacheQueries", statementCacheSize);
+            config.addDataSourceProperty("prepareThreshold", statementCacheSize > 0 ? 5 : 0);
+        }
+
+        config.setMetricsTrackerFactory(poolMetrics);
+        log.info("Database connection pool with {} to {} connections", config.getMinimumIdle(), maxPoolSize);
+        return new HikariDataSource(config);
+    }
+
+    /**
+     * Configure the second-level and query caches, if enabled.
+     * The caches are local to this instance and bounded in size, entries expire to limit
+     * the staleness when the database is updated by another instance.
+     *
+     * @param properties Entity manager properties
+     */
+    private static void configureCache(Properties properties) {
+        if (!Boolean.parseBoolean(properties.getProperty(AvailableSettings.USE_SECOND_LEVEL_CACHE))) {
+            return;
+        }
+
+        int size = getIntegerSetting("DATABASE_CACHE_SIZE", null, 10000);
+        int ttl = getIntegerSetting("DATABASE_CACHE_TTL", null, 300);
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName()).getCacheManager();
+        for (String region : new String[] { REFERENCE_CACHE_REGION, RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME }) {
+            CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+            configuration.setMaximumSize(OptionalLong.of(size));
+            configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.SECONDS.toNanos(ttl)));
+            cacheManager.createCache(region, configuration);
+        }
+        // One entry by table, never evicted to keep the query results consistent
+        cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, new CaffeineConfiguration<>());
+
+        properties.put(AvailableSettings.USE_QUERY_CACHE, "true");
+        properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+        properties.put(AvailableSettings.JAKARTA_SHARED_CACHE_MODE, SharedCacheMode.ENABLE_SELECTIVE.name());
+        properties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+        properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, MissingCacheStrategy.FAIL.getExternalRepresentation());
+        log.info("Second-level cache enabled with {} entries by region, expiring after {}s", size, ttl);
+    }
+
+    /**
+     * Returns an integer setting.
+     *
+     * @param env Environment parameter overriding the value
+     * @param value Value from the properties, may be null
+     * @param defaultValue Default value
+     * @return Setting value
+     */
+    private static int getIntegerSetting(String env, Object value, int defaultValue) {
+        String envValue = System.getenv(env);
+        if (!Strings.isNullOrEmpty(envValue)) {
+            value = envValue;
+        }
+        if (value == null || value.toString().isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.toString().trim());
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value for {}: {}", env, value);
+            return defaultValue;
+        }
+    }
     
     /**
      * Private constructor.
@@ -127,6 +248,22 @@ public final class EMF {
         return emfInstance;
     }
 
+    /**
+     * Evict all entities and query results from the second-level cache.
+     */
+    public static void evictCache() {
+        emfInstance.unwrap(SessionFactory.class).getCache().evictAllRegions();
+    }
+
+    /**
+     * Returns the metrics of the connection pool.
+     *
+     * @return Connection pool metrics
+     */
+    public static ConnectionPoolMetrics getPoolMetrics() {
+        return poolMetrics;
+    }
+
     public static boolean isDriverH2() {
         String driver = getDriver();
         return driver.contains("h2");
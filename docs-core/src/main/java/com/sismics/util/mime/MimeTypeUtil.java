@@ -1,9 +1,12 @@
 package com.sismics.util.mime;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URLConnection;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * Utility to check MIME types.
@@ -33,6 +36,38 @@ public class MimeTypeUtil {
         return mimeType;
     }
     
+    /**
+     * Try to guess the MIME type of a file from its name, then from its first bytes.
+     *
+     * @param header First bytes of the file
+     * @param name File name
+     * @return MIME type
+     * @throws IOException e
+     */
+    public static String guessMimeType(byte[] header, String name) throws IOException {
+        String mimeType = null;
+        if (name != null) {
+            try {
+                mimeType = Files.probeContentType(Paths.get(name).getFileName());
+            } catch (InvalidPathException e) {
+                // Not a valid file name on this system, try the name map
+            }
+            if (mimeType == null) {
+                mimeType = URLConnection.getFileNameMap().getContentTypeFor(name);
+            }
+        }
+
+        if (mimeType == null) {
+            mimeType = URLConnection.guessContentTypeFromStream(new ByteArrayInputStream(header));
+        }
+
+        if (mimeType == null) {
+            return MimeType.DEFAULT;
+        }
+
+        return mimeType;
+    }
+
     /**
      * Get a file extension linked to a MIME type.
      * 
@@ -67,4 +102,29 @@ public class MimeTypeUtil {
                 return "bin";
         }
     }
+
+    /**
+     * Return true if the content of a MIME type is already compressed.
+     *
+     * @param mimeType MIME type
+     * @return True if already compressed
+     */
+    public static boolean isCompressed(String mimeType) {
+        switch (mimeType) {
+            case MimeType.APPLICATION_ZIP:
+            case MimeType.IMAGE_GIF:
+            case MimeType.IMAGE_JPEG:
+            case MimeType.IMAGE_PNG:
+            case MimeType.APPLICATION_PDF:
+            case MimeType.OPEN_DOCUMENT_TEXT:
+            case MimeType.OFFICE_DOCUMENT:
+            case MimeType.OFFICE_PRESENTATION:
+            case MimeType.OFFICE_SHEET:
+            case MimeType.VIDEO_MP4:
+            case MimeType.VIDEO_WEBM:
+                return true;
+            default:
+                return false;
+        }
+    }
 }
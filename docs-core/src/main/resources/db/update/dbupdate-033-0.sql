@@ -0,0 +1,10 @@
+-- DBUPDATE-033-0.SQL
+
+-- Track file updates, used to replay uncommitted index operations
+alter table T_FILE add column FIL_UPDATEDATE_D datetime;
+update T_FILE set FIL_UPDATEDATE_D = FIL_CREATEDATE_D;
+create index IDX_FIL_UPDATEDATE_D on T_FILE (FIL_UPDATEDATE_D asc);
+create index IDX_DOC_UPDATEDATE_D on T_DOCUMENT (DOC_UPDATEDATE_D asc);
+
+-- Update the database version
+update T_CONFIG set CFG_VALUE_C = '33' where CFG_ID_C = 'DB_VERSION';
@@ -0,0 +1,8 @@
+-- DBUPDATE-034-0.SQL
+
+-- Create the outbox of the webhook deliveries
+create cached table T_WEBHOOK_DELIVERY ( WHD_ID_C varchar(36) not null, WHD_IDWEBHOOK_C varchar(36) not null, WHD_EVENT_C varchar(50) not null, WHD_ENTITYID_C varchar(36) not null, WHD_STATUS_C varchar(10) not null, WHD_ATTEMPTS_N int not null, WHD_NEXTATTEMPTDATE_D datetime not null, WHD_LASTERROR_C varchar(500), WHD_CREATEDATE_D datetime not null, WHD_DELIVERYDATE_D datetime, primary key (WHD_ID_C) );
+create index IDX_WHD_STATUS_NEXTATTEMPTDATE on T_WEBHOOK_DELIVERY (WHD_STATUS_C asc, WHD_NEXTATTEMPTDATE_D asc);
+
+-- Update the database version
+update T_CONFIG set CFG_VALUE_C = '34' where CFG_ID_C = 'DB_VERSION';
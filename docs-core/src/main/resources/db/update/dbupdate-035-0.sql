@@ -0,0 +1,8 @@
+-- DBUPDATE-035-0.SQL
+
+-- Hash of the file content, used to deduplicate the stored files
+alter table T_FILE add column FIL_HASH_C varchar(64);
+create index IDX_FIL_IDUSER_HASH_C on T_FILE (FIL_IDUSER_C asc, FIL_HASH_C asc);
+
+-- Update the database version
+update T_CONFIG set CFG_VALUE_C = '35' where CFG_ID_C = 'DB_VERSION';
@@ -0,0 +1,9 @@
+-- DBUPDATE-036-0.SQL
+
+-- Move the extracted content out of the files
+create cached table T_FILE_CONTENT ( FCT_IDFILE_C varchar(36) not null, FCT_CONTENT_C longvarchar, primary key (FCT_IDFILE_C) );
+insert into T_FILE_CONTENT (FCT_IDFILE_C, FCT_CONTENT_C) select FIL_ID_C, FIL_CONTENT_C from T_FILE where FIL_CONTENT_C is not null;
+alter table T_FILE drop column FIL_CONTENT_C;
+
+-- Update the database version
+update T_CONFIG set CFG_VALUE_C = '36' where CFG_ID_C = 'DB_VERSION';
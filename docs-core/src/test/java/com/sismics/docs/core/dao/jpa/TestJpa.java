@@ -1,16 +1,20 @@
 package com.sismics.docs.core.dao.jpa;
 
 import com.sismics.docs.BaseTransactionalTest;
+import com.sismics.docs.core.dao.FileDao;
 import com.sismics.docs.core.dao.GroupDao;
 import com.sismics.docs.core.dao.UserDao;
 import com.sismics.docs.core.dao.criteria.GroupCriteria;
 import com.sismics.docs.core.dao.dto.GroupDto;
+import com.sismics.docs.core.model.jpa.File;
 import com.sismics.docs.core.model.jpa.Group;
 import com.sismics.docs.core.model.jpa.User;
 import com.sismics.docs.core.model.jpa.UserGroup;
 import com.sismics.docs.core.util.TransactionUtil;
 import com.sismics.docs.core.util.authentication.InternalAuthenticationHandler;
 import com.sismics.docs.core.util.jpa.SortCriteria;
+import com.sismics.util.context.ThreadLocalContext;
+import com.sismics.util.jpa.EMF;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -44,6 +48,29 @@ public class TestJpa extends BaseTransactionalTest {
         TransactionUtil.commit();
     }
 
+    @Test
+    public void testFileContent() throws Exception {
+        // Create a file with some content
+        User user = createUser("fileContentTest");
+        File file = createFile(user, FILE_JPG_SIZE);
+        FileDao fileDao = new FileDao();
+        fileDao.updateContent(file.getId(), "Apollo");
+        TransactionUtil.commit();
+
+        // The content is not loaded with the file
+        ThreadLocalContext.get().getEntityManager().clear();
+        file = fileDao.getActiveById(file.getId());
+        Assert.assertNull(file.getContent());
+        Assert.assertEquals("Apollo", fileDao.getContent(file.getId()));
+        fileDao.loadContent(List.of(file));
+        Assert.assertEquals("Apollo", file.getContent());
+
+        // Remove the content
+        fileDao.updateContent(file.getId(), null);
+        TransactionUtil.commit();
+        Assert.assertNull(fileDao.getContent(file.getId()));
+    }
+
     @Test
     public void testJpa2() throws Exception {
         // Create user for testing
@@ -62,6 +89,7 @@ public class TestJpa extends BaseTransactionalTest {
         Group groupById = groupDao.getActiveById(groupId);
         Assert.assertNotNull(groupById);
         Assert.assertEquals("testGroup", groupById.getName());
+        Assert.assertTrue(EMF.get().getCache().contains(Group.class, groupId));
         
         // Get the group by name
         Group groupByName = groupDao.getActiveByName("testGroup");
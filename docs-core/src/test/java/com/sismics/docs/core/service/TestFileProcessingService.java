@@ -0,0 +1,69 @@
+package com.sismics.docs.core.service;
+
+import com.google.common.collect.Lists;
+import com.sismics.docs.core.constant.FileProcessingPriority;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test of the file processing service.
+ *
+ * @author bgamard
+ */
+public class TestFileProcessingService {
+    @Test
+    public void testPriority() throws Exception {
+        FileProcessingService fileProcessingService = new FileProcessingService(1, 2);
+        fileProcessingService.startAsync().awaitRunning();
+        List<String> processedList = Collections.synchronizedList(Lists.newArrayList());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // Keep the only thread busy
+            fileProcessingService.submit(FileProcessingPriority.INTERACTIVE, () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // NOP
+                }
+            });
+            Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            // Two bulk files fill their queue, an interactive file is still accepted
+            fileProcessingService.submit(FileProcessingPriority.BULK, () -> processedList.add("bulk1"));
+            fileProcessingService.submit(FileProcessingPriority.BULK, () -> processedList.add("bulk2"));
+            Assert.assertTrue(fileProcessingService.isSaturated(FileProcessingPriority.BULK));
+            Assert.assertFalse(fileProcessingService.isSaturated(FileProcessingPriority.INTERACTIVE));
+            fileProcessingService.submit(FileProcessingPriority.INTERACTIVE, () -> processedList.add("interactive"));
+            Assert.assertEquals(2, fileProcessingService.getStats(FileProcessingPriority.BULK).getQueued());
+            Assert.assertEquals(1, fileProcessingService.getStats(FileProcessingPriority.INTERACTIVE).getQueued());
+        } finally {
+            release.countDown();
+            fileProcessingService.stopAsync().awaitTerminated();
+        }
+
+        // The interactive file overtakes the bulk files queued before it
+        Assert.assertEquals(Lists.newArrayList("interactive", "bulk1", "bulk2"), processedList);
+        Assert.assertFalse(fileProcessingService.isSaturated(FileProcessingPriority.BULK));
+        Assert.assertEquals(2, fileProcessingService.getStats(FileProcessingPriority.BULK).getProcessed());
+        Assert.assertEquals(2, fileProcessingService.getStats(FileProcessingPriority.INTERACTIVE).getProcessed());
+    }
+
+    @Test
+    public void testSynchronous() {
+        // Without threads, the files are processed right away and never wait in a queue
+        FileProcessingService fileProcessingService = new FileProcessingService(0, 1);
+        fileProcessingService.startAsync().awaitRunning();
+        List<String> processedList = Lists.newArrayList();
+        fileProcessingService.submit(FileProcessingPriority.BULK, () -> processedList.add("bulk"));
+        Assert.assertEquals(Lists.newArrayList("bulk"), processedList);
+        Assert.assertFalse(fileProcessingService.isSaturated(FileProcessingPriority.BULK));
+        fileProcessingService.stopAsync().awaitTerminated();
+    }
+}
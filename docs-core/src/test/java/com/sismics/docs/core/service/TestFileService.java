@@ -0,0 +1,37 @@
+package com.sismics.docs.core.service;
+
+import com.sismics.docs.core.util.TemporaryFile;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+
+public class TestFileService {
+
+    @Test
+    public void temporaryFileTest() throws Exception {
+        FileService fileService = new FileService();
+
+        // The file is deleted when its last holder releases it
+        TemporaryFile temporaryFile = fileService.createTemporaryFile("test.pdf");
+        Assert.assertTrue(Files.exists(temporaryFile.getPath()));
+        Assert.assertTrue(temporaryFile.getPath().getFileName().toString().endsWith("test.pdf"));
+        Assert.assertEquals(1, fileService.getTemporaryFileCount());
+
+        try (TemporaryFile retainedFile = temporaryFile.retain()) {
+            temporaryFile.close();
+            Assert.assertTrue(Files.exists(retainedFile.getPath()));
+        }
+        Assert.assertFalse(Files.exists(temporaryFile.getPath()));
+        Assert.assertEquals(0, fileService.getTemporaryFileCount());
+
+        // Closing again has no effect, a deleted file cannot be retained
+        temporaryFile.close();
+        try {
+            temporaryFile.retain();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.sismics.docs.core.service;
+
+import com.sismics.docs.core.dao.AuthenticationTokenDao;
+import com.sismics.docs.core.model.jpa.AuthenticationToken;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Test of the token activity service.
+ *
+ * @author bgamard
+ */
+public class TestTokenActivityService {
+    @Test
+    public void testFlushFailure() {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        Map<String, Date> writtenMap = new HashMap<>();
+        TokenActivityService tokenActivityService = new TokenActivityService(new AuthenticationTokenDao() {
+            @Override
+            public void updateLastConnectionDate(Map<String, Date> dateMap) {
+                if (failing.get()) {
+                    throw new RuntimeException("Database unavailable");
+                }
+                writtenMap.putAll(dateMap);
+            }
+        });
+        AuthenticationToken authenticationToken = new AuthenticationToken().setId("token1");
+        tokenActivityService.touch(authenticationToken.getId());
+        Date lastConnectionDate = tokenActivityService.getLastConnectionDate(authenticationToken);
+        Assert.assertNotNull(lastConnectionDate);
+
+        // The date not written is kept pending
+        Assert.assertFalse(tokenActivityService.flush());
+        Assert.assertEquals(lastConnectionDate, tokenActivityService.getLastConnectionDate(authenticationToken));
+
+        // Written by the next flush
+        failing.set(false);
+        Assert.assertTrue(tokenActivityService.flush());
+        Assert.assertEquals(lastConnectionDate, writtenMap.get(authenticationToken.getId()));
+        Assert.assertNull(tokenActivityService.getLastConnectionDate(authenticationToken));
+        Assert.assertTrue(tokenActivityService.flush());
+    }
+}
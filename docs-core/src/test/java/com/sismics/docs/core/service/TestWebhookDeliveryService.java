@@ -0,0 +1,183 @@
+package com.sismics.docs.core.service;
+
+import com.sismics.docs.BaseTransactionalTest;
+import com.sismics.docs.core.constant.WebhookDeliveryStatus;
+import com.sismics.docs.core.constant.WebhookEvent;
+import com.sismics.docs.core.dao.WebhookDao;
+import com.sismics.docs.core.dao.WebhookDeliveryDao;
+import com.sismics.docs.core.event.DocumentCreatedAsyncEvent;
+import com.sismics.docs.core.model.jpa.Webhook;
+import com.sismics.docs.core.model.jpa.WebhookDelivery;
+import com.sismics.util.context.ThreadLocalContext;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test of the webhook delivery service against a local HTTP stub.
+ *
+ * @author bgamard
+ */
+public class TestWebhookDeliveryService extends BaseTransactionalTest {
+    @Test
+    public void deliverTest() throws Exception {
+        // Local endpoints: one accepting the payloads, one failing
+        List<String> payloadList = new CopyOnWriteArrayList<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/ok", exchange -> {
+            payloadList.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.createContext("/error", exchange -> {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        server.start();
+        String baseUrl = "http://localhost:" + server.getAddress().getPort();
+
+        try {
+            WebhookDao webhookDao = new WebhookDao();
+            webhookDao.create(new Webhook().setEvent(WebhookEvent.DOCUMENT_CREATED).setUrl(baseUrl + "/ok"));
+            webhookDao.create(new Webhook().setEvent(WebhookEvent.DOCUMENT_CREATED).setUrl(baseUrl + "/error"));
+            webhookDao.create(new Webhook().setEvent(WebhookEvent.FILE_CREATED).setUrl(baseUrl + "/ok"));
+
+            // Deliver two events, in order
+            WebhookDeliveryService webhookDeliveryService = new WebhookDeliveryService();
+            webhookDeliveryService.enqueue(WebhookEvent.DOCUMENT_CREATED, "document1");
+            webhookDeliveryService.wakeUp();
+            webhookDeliveryService.enqueue(WebhookEvent.DOCUMENT_CREATED, "document2");
+            webhookDeliveryService.wakeUp();
+            Assert.assertEquals(2, payloadList.size());
+            Assert.assertEquals("{\"event\": \"DOCUMENT_CREATED\", \"id\": \"document1\"}", payloadList.get(0));
+            Assert.assertEquals("{\"event\": \"DOCUMENT_CREATED\", \"id\": \"document2\"}", payloadList.get(1));
+
+            // The failed deliveries are postponed
+            Map<WebhookDeliveryStatus, Long> countMap = new WebhookDeliveryDao().countByStatus();
+            Assert.assertEquals(2L, (long) countMap.get(WebhookDeliveryStatus.SENT));
+            Assert.assertEquals(2L, (long) countMap.get(WebhookDeliveryStatus.PENDING));
+            Assert.assertEquals(0L, (long) countMap.get(WebhookDeliveryStatus.SENDING));
+            Assert.assertEquals(2, webhookDeliveryService.getStats().getSent());
+            Assert.assertEquals(2, webhookDeliveryService.getStats().getRetried());
+
+            // Nothing is due before the retry delay
+            webhookDeliveryService.deliverDue();
+            Assert.assertEquals(2, webhookDeliveryService.getStats().getRetried());
+            Assert.assertTrue(new WebhookDeliveryDao().findDue(null, 10).isEmpty());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void preCommitTest() {
+        new WebhookDao().create(new Webhook().setEvent(WebhookEvent.DOCUMENT_CREATED).setUrl("http://localhost:1/hook"));
+
+        // The deliveries are stored in the transaction of the event, before it is committed
+        DocumentCreatedAsyncEvent event = new DocumentCreatedAsyncEvent();
+        event.setDocumentId("document1");
+        ThreadLocalContext.get().addAsyncEvent(event);
+        ThreadLocalContext.get().firePreCommitEvents();
+        Map<WebhookDeliveryStatus, Long> countMap = new WebhookDeliveryDao().countByStatus();
+        Assert.assertEquals(1L, (long) countMap.get(WebhookDeliveryStatus.PENDING));
+        Assert.assertFalse(ThreadLocalContext.get().getEntityManager().getTransaction().getRollbackOnly());
+    }
+
+    @Test
+    public void saturatedEndpointTest() throws Exception {
+        // Local endpoints: one blocked until released, one accepting the payloads
+        AtomicInteger slowCount = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch okReceived = new CountDownLatch(1);
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/slow", exchange -> {
+            slowCount.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                // NOP
+            }
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.createContext("/ok", exchange -> {
+            okReceived.countDown();
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+        String baseUrl = "http://localhost:" + server.getAddress().getPort();
+
+        WebhookDeliveryService webhookDeliveryService = new WebhookDeliveryService(4);
+        webhookDeliveryService.startUp();
+        try {
+            // A backlog of deliveries to the slow endpoint, larger than a lookup, before a delivery to the healthy one
+            WebhookDao webhookDao = new WebhookDao();
+            String slowWebhookId = webhookDao.create(new Webhook().setEvent(WebhookEvent.DOCUMENT_CREATED).setUrl(baseUrl + "/slow"));
+            String okWebhookId = webhookDao.create(new Webhook().setEvent(WebhookEvent.FILE_CREATED).setUrl(baseUrl + "/ok"));
+            WebhookDeliveryDao webhookDeliveryDao = new WebhookDeliveryDao();
+            Date dueDate = new Date(System.currentTimeMillis() - 1000);
+            for (int i = 0; i < 250; i++) {
+                createDelivery(webhookDeliveryDao, slowWebhookId, WebhookEvent.DOCUMENT_CREATED, dueDate);
+            }
+            createDelivery(webhookDeliveryDao, okWebhookId, WebhookEvent.FILE_CREATED, dueDate);
+
+            // The slow endpoint gets its 2 batches in progress, the healthy endpoint is served anyway
+            webhookDeliveryService.deliverDue();
+            Assert.assertTrue(okReceived.await(10, TimeUnit.SECONDS));
+            Assert.assertEquals(41L, (long) webhookDeliveryDao.countByStatus().get(WebhookDeliveryStatus.SENDING));
+
+            // Nothing more is claimed for the saturated endpoint
+            webhookDeliveryService.deliverDue();
+            Map<WebhookDeliveryStatus, Long> countMap = webhookDeliveryDao.countByStatus();
+            Assert.assertEquals(41L, (long) countMap.get(WebhookDeliveryStatus.SENDING));
+            Assert.assertEquals(210L, (long) countMap.get(WebhookDeliveryStatus.PENDING));
+            Assert.assertEquals(2, slowCount.get());
+        } finally {
+            release.countDown();
+            webhookDeliveryService.shutDown();
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Create a pending delivery.
+     *
+     * @param webhookDeliveryDao Webhook delivery DAO
+     * @param webhookId Webhook ID
+     * @param event Event
+     * @param dueDate Date of the next attempt
+     */
+    private void createDelivery(WebhookDeliveryDao webhookDeliveryDao, String webhookId, WebhookEvent event, Date dueDate) {
+        webhookDeliveryDao.create(new WebhookDelivery()
+                .setWebhookId(webhookId)
+                .setEvent(event)
+                .setEntityId("entity")
+                .setStatus(WebhookDeliveryStatus.PENDING)
+                .setAttemptCount(0)
+                .setNextAttemptDate(dueDate));
+    }
+
+    @Test
+    public void retryDelayTest() {
+        long firstDelay = WebhookDeliveryService.getRetryDelay(1);
+        Assert.assertTrue(firstDelay >= TimeUnit.SECONDS.toMillis(30));
+        Assert.assertTrue(firstDelay <= TimeUnit.SECONDS.toMillis(33));
+        long secondDelay = WebhookDeliveryService.getRetryDelay(2);
+        Assert.assertTrue(secondDelay >= TimeUnit.SECONDS.toMillis(60));
+        Assert.assertTrue(secondDelay <= TimeUnit.SECONDS.toMillis(66));
+        Assert.assertTrue(WebhookDeliveryService.getRetryDelay(100) <= TimeUnit.HOURS.toMillis(6) * 11 / 10);
+    }
+}
@@ -8,7 +8,9 @@ import org.junit.Test;
 
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
+import javax.crypto.SecretKey;
 import java.io.InputStream;
+import java.util.Arrays;
 
 /**
  * Test of the encryption utilities.
@@ -48,4 +50,41 @@ public class TestEncryptUtil extends BaseTest {
         
         Assert.assertEquals(encryptedData.length, assertData.length);
     }
+
+    @Test
+    public void decryptStreamOffsetTest() throws Exception {
+        byte[] data = ByteStreams.toByteArray(getSystemResourceAsStream(FILE_PDF));
+        for (long offset : new long[] { 0, 1, 15, 16, 17, 1000, data.length - 1 }) {
+            InputStream inputStream = EncryptionUtil.decryptInputStream(
+                    getSystemResourceAsStream(FILE_PDF_ENCRYPTED), "OnceUponATime", offset);
+            byte[] decryptedData = ByteStreams.toByteArray(inputStream);
+            Assert.assertArrayEquals(Arrays.copyOfRange(data, (int) offset, data.length), decryptedData);
+        }
+    }
+
+    @Test
+    public void cachedSecretKeyTest() throws Exception {
+        // Streams decrypted with a derived then a cached secret key are identical
+        EncryptionUtil.invalidateSecretKey("OnceUponATime");
+        byte[] derivedData = ByteStreams.toByteArray(EncryptionUtil.decryptInputStream(
+                getSystemResourceAsStream(FILE_PDF_ENCRYPTED), "OnceUponATime"));
+        byte[] cachedData = ByteStreams.toByteArray(EncryptionUtil.decryptInputStream(
+                getSystemResourceAsStream(FILE_PDF_ENCRYPTED), "OnceUponATime"));
+        Assert.assertArrayEquals(ByteStreams.toByteArray(getSystemResourceAsStream(FILE_PDF)), derivedData);
+        Assert.assertArrayEquals(derivedData, cachedData);
+    }
+
+    @Test
+    public void secretKeyCacheTest() throws Exception {
+        // The key is derived once, then served from the cache until invalidated
+        EncryptionUtil.invalidateSecretKey("OnceUponATime");
+        SecretKey derivedKey = EncryptionUtil.getSecretKey("OnceUponATime");
+        Assert.assertSame(derivedKey, EncryptionUtil.getSecretKey("OnceUponATime"));
+        Assert.assertNotSame(derivedKey, EncryptionUtil.getSecretKey("TwiceUponATime"));
+
+        EncryptionUtil.invalidateSecretKey("OnceUponATime");
+        SecretKey newKey = EncryptionUtil.getSecretKey("OnceUponATime");
+        Assert.assertNotSame(derivedKey, newKey);
+        Assert.assertArrayEquals(derivedKey.getEncoded(), newKey.getEncoded());
+    }
 }
@@ -0,0 +1,62 @@
+package com.sismics.docs.core.util;
+
+import com.sismics.docs.BaseTransactionalTest;
+import com.sismics.docs.core.dao.FileDao;
+import com.sismics.docs.core.model.jpa.File;
+import com.sismics.docs.core.model.jpa.User;
+import com.sismics.util.mime.MimeType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Test of the stored files deduplication.
+ *
+ * @author bgamard
+ */
+public class TestFileDeduplication extends BaseTransactionalTest {
+    @Test
+    public void deduplicateTest() throws Exception {
+        User user = createUser("deduplicateTest");
+        Path storageDirectory = DirectoryUtil.getStorageDirectory();
+
+        // Original file, already processed
+        File original = createFile(user, FILE_JPG_SIZE);
+        original.setHash("0123456789abcdef");
+        new FileDao().updateContent(original.getId(), "Apollo");
+        Files.write(storageDirectory.resolve(original.getId() + "_web"), new byte[] { 1 });
+        Files.write(storageDirectory.resolve(original.getId() + "_thumb"), new byte[] { 2 });
+
+        // No duplicate for another content
+        File file = newFile(user, "fedcba9876543210");
+        Assert.assertFalse(FileUtil.deduplicate(file));
+
+        // Identical file
+        file = newFile(user, "0123456789abcdef");
+        Assert.assertTrue(FileUtil.deduplicate(file));
+        Assert.assertTrue(Files.isSameFile(storageDirectory.resolve(original.getId()), storageDirectory.resolve(file.getId())));
+        Assert.assertTrue(Files.isSameFile(storageDirectory.resolve(original.getId() + "_thumb"), storageDirectory.resolve(file.getId() + "_thumb")));
+        Assert.assertEquals("Apollo", file.getContent());
+        Assert.assertEquals("Apollo", new FileDao().getContent(file.getId()));
+
+        // The content is kept while a file references it
+        FileUtil.delete(original.getId());
+        Assert.assertEquals(FILE_JPG_SIZE.longValue(), FileUtil.getFileSize(file.getId(), user));
+        FileUtil.delete(file.getId());
+        Assert.assertFalse(Files.exists(storageDirectory.resolve(file.getId())));
+    }
+
+    private File newFile(User user, String hash) throws Exception {
+        File file = new File();
+        file.setUserId(user.getId());
+        file.setVersion(0);
+        file.setMimeType(MimeType.IMAGE_JPEG);
+        file.setSize(FILE_JPG_SIZE);
+        file.setHash(hash);
+        new FileDao().create(file, user.getId());
+        Files.write(DirectoryUtil.getStorageDirectory().resolve(file.getId()), new byte[] { 3 });
+        return file;
+    }
+}
@@ -8,6 +8,7 @@ import com.sismics.docs.core.model.jpa.File;
 import com.sismics.docs.core.util.format.*;
 import com.sismics.util.mime.MimeType;
 import com.sismics.util.mime.MimeTypeUtil;
+import org.apache.pdfbox.pdmodel.PDDocument;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -140,4 +141,31 @@ public class TestFileUtil extends BaseTest {
             Assert.assertTrue(outputStream.toByteArray().length > 0);
         }
     }
+
+    @Test
+    public void convertToPdfRenditionTest() throws Exception {
+        // PDF rendition generated when the file is processed
+        Path path = Paths.get(getResource(FILE_DOCX).toURI());
+        int pageCount;
+        try (FormatHandler formatHandler = FormatHandlerUtil.find(MimeType.OFFICE_DOCUMENT)) {
+            Assert.assertNotNull(formatHandler);
+            Path pdfRendition = formatHandler.generatePdfRendition(path);
+            Files.copy(pdfRendition, DirectoryUtil.getStorageDirectory().resolve("rendition_docx_pdf"), StandardCopyOption.REPLACE_EXISTING);
+            try (PDDocument pdfDocument = PDDocument.load(pdfRendition.toFile())) {
+                pageCount = pdfDocument.getNumberOfPages();
+            }
+        }
+
+        // The stored file is not converted again, only its rendition is merged
+        Files.write(DirectoryUtil.getStorageDirectory().resolve("rendition_docx"), new byte[] { 0 });
+        File file = new File();
+        file.setId("rendition_docx");
+        file.setMimeType(MimeType.OFFICE_DOCUMENT);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        PdfUtil.convertToPdf(new DocumentDto(), Lists.newArrayList(file), true, false, 10, outputStream);
+        try (PDDocument pdfDocument = PDDocument.load(outputStream.toByteArray())) {
+            Assert.assertEquals(pageCount, pdfDocument.getNumberOfPages());
+        }
+    }
 }
@@ -0,0 +1,135 @@
+package com.sismics.docs.core.util;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.sismics.docs.BaseTransactionalTest;
+import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.model.jpa.File;
+import com.sismics.docs.core.service.FileService;
+import com.sismics.util.mime.MimeType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.crypto.CipherInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Test of the ZIP utilities.
+ *
+ * @author bgamard
+ */
+public class TestZipUtil extends BaseTransactionalTest {
+    @Test
+    public void writeZipTest() throws Exception {
+        List<File> fileList = Lists.newArrayList(
+                createFile(FILE_TXT, MimeType.TEXT_PLAIN),
+                createFile(FILE_JPG, MimeType.IMAGE_JPEG),
+                createFile(FILE_PNG, MimeType.IMAGE_PNG));
+        try {
+            // The stored files are staged within the budget
+            assertZip(fileList, Long.MAX_VALUE);
+
+            // The stored files are streamed without compression over the budget
+            assertZip(fileList, 0);
+        } finally {
+            for (File file : fileList) {
+                Files.deleteIfExists(DirectoryUtil.getStorageDirectory().resolve(file.getId()));
+            }
+        }
+    }
+
+    @Test
+    public void writeZipAbortedTest() throws Exception {
+        List<File> fileList = Lists.newArrayList();
+        for (int i = 0; i < 20; i++) {
+            fileList.add(createFile(FILE_JPG, MimeType.IMAGE_JPEG));
+        }
+        FileService fileService = AppContext.getInstance().getFileService();
+        int temporaryFileCount = fileService.getTemporaryFileCount();
+        try {
+            // The client aborts the download after the first file
+            OutputStream outputStream = new OutputStream() {
+                private long size;
+
+                @Override
+                public void write(int b) throws IOException {
+                    if (++size > FILE_JPG_SIZE) {
+                        throw new IOException("Broken pipe");
+                    }
+                }
+            };
+            try {
+                ZipUtil.writeZip(fileList, outputStream);
+                Assert.fail();
+            } catch (IOException e) {
+                Assert.assertEquals("Broken pipe", e.getMessage());
+            }
+
+            // No staged file is left
+            Assert.assertEquals(temporaryFileCount, fileService.getTemporaryFileCount());
+        } finally {
+            for (File file : fileList) {
+                Files.deleteIfExists(DirectoryUtil.getStorageDirectory().resolve(file.getId()));
+            }
+        }
+    }
+
+    /**
+     * Write the files to a ZIP stream and check its entries.
+     *
+     * @param fileList List of files
+     * @param stagingBudget Maximum number of staged bytes
+     */
+    private void assertZip(List<File> fileList, long stagingBudget) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ZipUtil.writeZip(fileList, outputStream, stagingBudget);
+
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            for (int i = 0; i < fileList.size(); i++) {
+                File file = fileList.get(i);
+                ZipEntry zipEntry = zipInputStream.getNextEntry();
+                Assert.assertNotNull(zipEntry);
+                Assert.assertEquals(i + "-" + file.getName(), zipEntry.getName());
+                Assert.assertEquals(MimeType.TEXT_PLAIN.equals(file.getMimeType()) || stagingBudget == 0 ?
+                        ZipEntry.DEFLATED : ZipEntry.STORED, zipEntry.getMethod());
+                try (InputStream inputStream = getSystemResourceAsStream(file.getName())) {
+                    Assert.assertArrayEquals(ByteStreams.toByteArray(inputStream), ByteStreams.toByteArray(zipInputStream));
+                }
+            }
+            Assert.assertNull(zipInputStream.getNextEntry());
+        }
+    }
+
+    /**
+     * Encrypt a test file to the storage directory.
+     *
+     * @param name File name
+     * @param mimeType MIME type
+     * @return File
+     */
+    private File createFile(String name, String mimeType) throws Exception {
+        File file = new File();
+        file.setId(UUID.randomUUID().toString());
+        file.setName(name);
+        file.setMimeType(mimeType);
+        file.setPrivateKey("OnceUponATime");
+        try (InputStream inputStream = getSystemResourceAsStream(name)) {
+            Files.copy(new CipherInputStream(inputStream, EncryptionUtil.getEncryptionCipher(file.getPrivateKey())),
+                    DirectoryUtil.getStorageDirectory().resolve(file.getId()), REPLACE_EXISTING);
+        }
+        file.setSize(Files.size(Paths.get(getResource(name).toURI())));
+        return file;
+    }
+}
@@ -0,0 +1,268 @@
+package com.sismics.docs.core.util.indexing;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.sismics.docs.BaseTransactionalTest;
+import com.sismics.docs.core.constant.AclType;
+import com.sismics.docs.core.constant.ConfigType;
+import com.sismics.docs.core.constant.PermType;
+import com.sismics.docs.core.dao.AclDao;
+import com.sismics.docs.core.dao.ConfigDao;
+import com.sismics.docs.core.dao.DocumentDao;
+import com.sismics.docs.core.dao.FileDao;
+import com.sismics.docs.core.dao.TagDao;
+import com.sismics.docs.core.dao.criteria.DocumentCriteria;
+import com.sismics.docs.core.dao.dto.DocumentDto;
+import com.sismics.docs.core.model.jpa.Acl;
+import com.sismics.docs.core.model.jpa.Document;
+import com.sismics.docs.core.model.jpa.File;
+import com.sismics.docs.core.model.jpa.Tag;
+import com.sismics.docs.core.model.jpa.User;
+import com.sismics.docs.core.util.jpa.PaginatedList;
+import com.sismics.docs.core.util.jpa.PaginatedLists;
+import com.sismics.docs.core.util.jpa.SortCriteria;
+import com.sismics.util.context.ThreadLocalContext;
+import com.sismics.util.mime.MimeType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Test of the searches filtered, sorted and paginated in the Lucene index.
+ *
+ * @author bgamard
+ */
+public class TestLuceneIndexingHandler extends BaseTransactionalTest {
+    /**
+     * Indexing handler.
+     */
+    private LuceneIndexingHandler indexingHandler;
+
+    /**
+     * Owner of the documents.
+     */
+    private User user1;
+
+    /**
+     * User reading some documents.
+     */
+    private User user2;
+
+    /**
+     * Tag readable by the second user.
+     */
+    private String tagId;
+
+    @Before
+    public void setUpIndex() throws Exception {
+        new ConfigDao().update(ConfigType.LUCENE_DIRECTORY_STORAGE, "RAM");
+        indexingHandler = new LuceneIndexingHandler();
+        indexingHandler.startUp();
+
+        user1 = createUser("search1");
+        user2 = createUser("search2");
+
+        // A tag readable by the second user
+        Tag tag = new Tag();
+        tag.setName("shared");
+        tag.setColor("#ff0000");
+        tag.setUserId(user1.getId());
+        tagId = new TagDao().create(tag, user1.getId());
+        createAcl(tagId, user2.getId());
+
+        // Invoice alpha (2020), tagged, invoice beta (2021), contract gamma (2022) with an invoice in its file
+        String alphaId = createDocument("Invoice alpha", "2020-01-01", user1.getId());
+        new TagDao().updateTagList(alphaId, Sets.newHashSet(tagId));
+        ThreadLocalContext.get().getEntityManager().flush();
+        indexingHandler.updateDocument(new DocumentDao().getById(alphaId));
+        createDocument("Invoice beta", "2021-01-01", user1.getId());
+        String gammaId = createDocument("Contract gamma", "2022-01-01", user1.getId());
+        createFile(gammaId, "invoice payment received");
+
+        // Invoice delta, readable only by the second user
+        createDocument("Invoice delta", "2023-01-01", user2.getId());
+    }
+
+    @After
+    public void tearDownIndex() {
+        indexingHandler.shutDown();
+    }
+
+    @Test
+    public void testAcl() throws Exception {
+        Assert.assertEquals(Lists.newArrayList("Contract gamma", "Invoice alpha", "Invoice beta"),
+                search(newCriteria(user1), new SortCriteria(1, true), 10, 0));
+
+        // The second user reads the tagged document through the tag ACL
+        Assert.assertEquals(Lists.newArrayList("Invoice alpha", "Invoice delta"),
+                search(newCriteria(user2), new SortCriteria(1, true), 10, 0));
+    }
+
+    @Test
+    public void testFileContent() throws Exception {
+        DocumentCriteria criteria = newCriteria(user1);
+        criteria.setFullSearch("payment");
+        PaginatedList<DocumentDto> paginatedList = PaginatedLists.create(10, 0);
+        indexingHandler.findByCriteria(paginatedList, new ArrayList<>(), criteria, null);
+        Assert.assertEquals(1, paginatedList.getResultCount());
+        DocumentDto documentDto = paginatedList.getResultList().get(0);
+        Assert.assertEquals("Contract gamma", documentDto.getTitle());
+        Assert.assertTrue(documentDto.getHighlight().contains("<strong>payment</strong>"));
+    }
+
+    @Test
+    public void testTags() throws Exception {
+        DocumentCriteria criteria = newCriteria(user1);
+        criteria.getTagIdList().add(Lists.newArrayList(tagId));
+        Assert.assertEquals(Lists.newArrayList("Invoice alpha"),
+                search(criteria, new SortCriteria(1, true), 10, 0));
+
+        criteria = newCriteria(user1);
+        criteria.getExcludedTagIdList().add(Lists.newArrayList(tagId));
+        Assert.assertEquals(Lists.newArrayList("Contract gamma", "Invoice beta"),
+                search(criteria, new SortCriteria(1, true), 10, 0));
+    }
+
+    @Test
+    public void testDates() throws Exception {
+        DocumentCriteria criteria = newCriteria(user1);
+        criteria.setCreateDateMin(date("2020-06-01"));
+        criteria.setCreateDateMax(date("2021-06-01"));
+        Assert.assertEquals(Lists.newArrayList("Invoice beta"),
+                search(criteria, new SortCriteria(1, true), 10, 0));
+    }
+
+    @Test
+    public void testSortAndPagination() throws Exception {
+        // Sorted by creation date
+        SortCriteria sortCriteria = new SortCriteria(3, false);
+        Assert.assertEquals(Lists.newArrayList("Contract gamma", "Invoice beta"),
+                search(newCriteria(user1), sortCriteria, 2, 0));
+        PaginatedList<DocumentDto> paginatedList = PaginatedLists.create(2, 2);
+        indexingHandler.findByCriteria(paginatedList, new ArrayList<>(), newCriteria(user1), sortCriteria);
+        Assert.assertEquals(3, paginatedList.getResultCount());
+        Assert.assertEquals(Lists.newArrayList("Invoice alpha"), paginatedList.getResultList().stream()
+                .map(DocumentDto::getTitle)
+                .collect(Collectors.toList()));
+
+        // Sorted by title, descending
+        Assert.assertEquals(Lists.newArrayList("Invoice beta", "Invoice alpha", "Contract gamma"),
+                search(newCriteria(user1), new SortCriteria(1, false), 10, 0));
+    }
+
+    @Test
+    public void testRebuild() throws Exception {
+        // The documents modified during the rebuild are replayed in the new index
+        indexingHandler.rebuildIndex();
+        Assert.assertEquals(Lists.newArrayList("Contract gamma", "Invoice alpha", "Invoice beta"),
+                search(newCriteria(user1), new SortCriteria(1, true), 10, 0));
+        DocumentCriteria criteria = newCriteria(user1);
+        criteria.setFullSearch("payment");
+        Assert.assertEquals(Lists.newArrayList("Contract gamma"),
+                search(criteria, new SortCriteria(1, true), 10, 0));
+    }
+
+    /**
+     * Search the documents.
+     *
+     * @param criteria Search criteria
+     * @param sortCriteria Sort criteria
+     * @param limit Page size
+     * @param offset Offset
+     * @return Titles of the documents of the page
+     */
+    private List<String> search(DocumentCriteria criteria, SortCriteria sortCriteria, int limit, int offset) throws Exception {
+        PaginatedList<DocumentDto> paginatedList = PaginatedLists.create(limit, offset);
+        indexingHandler.findByCriteria(paginatedList, new ArrayList<>(), criteria, sortCriteria);
+        return paginatedList.getResultList().stream()
+                .map(DocumentDto::getTitle)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Create the criteria of an "invoice" search by a user.
+     *
+     * @param user User
+     * @return Search criteria
+     */
+    private DocumentCriteria newCriteria(User user) {
+        DocumentCriteria criteria = new DocumentCriteria();
+        criteria.setTargetIdList(Lists.newArrayList(user.getId()));
+        criteria.setSimpleSearch("");
+        criteria.setFullSearch("invoice");
+        return criteria;
+    }
+
+    /**
+     * Create and index a document readable by a user.
+     *
+     * @param title Title
+     * @param createDate Creation date
+     * @param readerId Reader ID
+     * @return Document ID
+     */
+    private String createDocument(String title, String createDate, String readerId) throws Exception {
+        Document document = new Document();
+        document.setTitle(title);
+        document.setLanguage("eng");
+        document.setUserId(user1.getId());
+        document.setCreateDate(date(createDate));
+        String documentId = new DocumentDao().create(document, user1.getId());
+        createAcl(documentId, readerId);
+        ThreadLocalContext.get().getEntityManager().flush();
+        indexingHandler.createDocument(document);
+        return documentId;
+    }
+
+    /**
+     * Create and index a file.
+     *
+     * @param documentId Document ID
+     * @param content Content
+     */
+    private void createFile(String documentId, String content) throws Exception {
+        File file = new File();
+        file.setDocumentId(documentId);
+        file.setUserId(user1.getId());
+        file.setName("file.txt");
+        file.setMimeType(MimeType.TEXT_PLAIN);
+        file.setVersion(0);
+        file.setSize(0L);
+        FileDao fileDao = new FileDao();
+        fileDao.create(file, user1.getId());
+        fileDao.updateContent(file.getId(), content);
+        file.setContent(content);
+        indexingHandler.createFile(file);
+    }
+
+    /**
+     * Give the read permission on a source.
+     *
+     * @param sourceId Source ID
+     * @param targetId Target ID
+     */
+    private void createAcl(String sourceId, String targetId) {
+        Acl acl = new Acl();
+        acl.setPerm(PermType.READ);
+        acl.setType(AclType.USER);
+        acl.setSourceId(sourceId);
+        acl.setTargetId(targetId);
+        new AclDao().create(acl, user1.getId());
+    }
+
+    /**
+     * Parse a date.
+     *
+     * @param date Date in the yyyy-MM-dd format
+     * @return Date
+     */
+    private Date date(String date) {
+        return java.sql.Date.valueOf(date);
+    }
+}
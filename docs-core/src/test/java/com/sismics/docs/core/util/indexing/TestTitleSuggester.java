@@ -0,0 +1,112 @@
+package com.sismics.docs.core.util.indexing;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Test of the title suggester.
+ *
+ * @author bgamard
+ */
+public class TestTitleSuggester {
+    /**
+     * Words used to generate titles.
+     */
+    private static final String[] WORDS = {
+            "invoice", "contract", "report", "meeting", "budget", "document", "annual",
+            "quarterly", "scan", "letter", "receipt", "tax", "insurance", "project", "minutes"
+    };
+
+    @Test
+    public void testBuildStoreLoad() throws Exception {
+        Path tempDirectory = Files.createTempDirectory("suggester");
+        Path storeFile = tempDirectory.resolve("title.suggester");
+        try (Directory directory = new ByteBuffersDirectory();
+             Directory suggesterDirectory = FSDirectory.open(tempDirectory)) {
+            indexTitles(directory, 100);
+
+            TitleSuggester suggester = new TitleSuggester(storeFile, suggesterDirectory);
+            Assert.assertFalse(suggester.load());
+            Assert.assertTrue(suggester.lookup("docu", 10).isEmpty());
+
+            try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                suggester.build(reader);
+            }
+            Assert.assertTrue(suggester.lookup("docu", 10).contains("document"));
+            Assert.assertTrue(Files.exists(storeFile));
+
+            // A new suggester is usable right after loading, without an index
+            TitleSuggester loadedSuggester = new TitleSuggester(storeFile, suggesterDirectory);
+            Assert.assertTrue(loadedSuggester.load());
+            Assert.assertTrue(loadedSuggester.lookup("docu", 10).contains("document"));
+        }
+    }
+
+    /**
+     * Lookups are served by the built suggester, the index is not needed anymore.
+     */
+    @Test
+    public void testLookup() throws Exception {
+        Path tempDirectory = Files.createTempDirectory("suggester");
+        try (Directory suggesterDirectory = FSDirectory.open(tempDirectory)) {
+            TitleSuggester suggester = new TitleSuggester(null, suggesterDirectory);
+            try (Directory directory = new ByteBuffersDirectory()) {
+                indexTitles(directory, 200);
+                try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                    suggester.build(reader);
+                }
+            }
+
+            for (String word : WORDS) {
+                List<String> suggestionList = suggester.lookup(word.substring(0, 3), 10);
+                Assert.assertTrue(suggestionList.contains(word));
+                Assert.assertTrue(suggestionList.size() <= 10);
+            }
+            Assert.assertEquals(1, suggester.lookup("inv", 1).size());
+            Assert.assertTrue(suggester.lookup("zzzzzz", 10).isEmpty());
+
+            // Rebuilding from an empty index replaces the previous suggester
+            try (Directory directory = new ByteBuffersDirectory()) {
+                indexTitles(directory, 0);
+                try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                    suggester.build(reader);
+                }
+            }
+            Assert.assertTrue(suggester.lookup("inv", 10).isEmpty());
+        }
+    }
+
+    /**
+     * Index random titles.
+     *
+     * @param directory Directory
+     * @param count Number of titles
+     */
+    private void indexTitles(Directory directory, int count) throws Exception {
+        Random random = new Random(42);
+        try (IndexWriter indexWriter = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()))) {
+            for (int i = 0; i < count; i++) {
+                Document document = new Document();
+                String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                        + " " + Integer.toString(random.nextInt(count), 36);
+                document.add(new TextField("title", title, Field.Store.NO));
+                indexWriter.addDocument(document);
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.sismics.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Test of the image deskew.
+ *
+ * @author bgamard
+ */
+public class TestImageDeskew {
+    @Test
+    public void getSkewAngleTest() {
+        Assert.assertEquals(0, new ImageDeskew(createLinesImage(0, BufferedImage.TYPE_INT_ARGB)).getSkewAngle(), 0.3);
+        Assert.assertEquals(3, new ImageDeskew(createLinesImage(3, BufferedImage.TYPE_INT_RGB)).getSkewAngle(), 0.3);
+        Assert.assertEquals(-5, new ImageDeskew(createLinesImage(-5, BufferedImage.TYPE_BYTE_GRAY)).getSkewAngle(), 0.3);
+        Assert.assertEquals(2, new ImageDeskew(createLinesImage(2, BufferedImage.TYPE_3BYTE_BGR)).getSkewAngle(), 0.3);
+
+        // No line in a blank image
+        Assert.assertEquals(0, new ImageDeskew(new BufferedImage(1000, 1400, BufferedImage.TYPE_INT_RGB)).getSkewAngle(), 0);
+    }
+
+    /**
+     * Create an image of text-like lines.
+     *
+     * @param angle Rotation of the lines in degrees
+     * @param type Image type
+     * @return Image
+     */
+    private BufferedImage createLinesImage(double angle, int type) {
+        BufferedImage image = new BufferedImage(2500, 3500, type);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+        graphics.rotate(Math.toRadians(angle), image.getWidth() / 2.0, image.getHeight() / 2.0);
+        graphics.setColor(Color.BLACK);
+        for (int y = 300; y < image.getHeight() - 300; y += 60) {
+            for (int x = 300; x < image.getWidth() - 300; x += 40) {
+                graphics.fillRect(x, y, 30, 25);
+            }
+        }
+        graphics.dispose();
+        return image;
+    }
+}
@@ -6,6 +6,7 @@ import com.sismics.util.mime.MimeTypeUtil;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
@@ -69,4 +70,26 @@ public class TestMimeTypeUtil extends BaseTest {
         path = Paths.get(getResource(FILE_MP4).toURI());
         Assert.assertEquals(MimeType.VIDEO_MP4, MimeTypeUtil.guessMimeType(path, FILE_MP4));
     }
+
+    @Test
+    public void testHeader() throws Exception {
+        // Detect from the file name
+        Assert.assertEquals(MimeType.OPEN_DOCUMENT_TEXT, MimeTypeUtil.guessMimeType(readHeader(FILE_ODT), FILE_ODT));
+        Assert.assertEquals(MimeType.APPLICATION_PDF, MimeTypeUtil.guessMimeType(readHeader(FILE_PDF), FILE_PDF));
+        Assert.assertEquals(MimeType.VIDEO_MP4, MimeTypeUtil.guessMimeType(readHeader(FILE_MP4), FILE_MP4));
+
+        // Detect from the first bytes without a file name
+        Assert.assertEquals(MimeType.IMAGE_PNG, MimeTypeUtil.guessMimeType(readHeader(FILE_PNG), null));
+        Assert.assertEquals(MimeType.DEFAULT, MimeTypeUtil.guessMimeType(new byte[0], null));
+
+        // Already compressed content
+        Assert.assertTrue(MimeTypeUtil.isCompressed(MimeType.IMAGE_JPEG));
+        Assert.assertFalse(MimeTypeUtil.isCompressed(MimeType.TEXT_PLAIN));
+    }
+
+    private byte[] readHeader(String name) throws Exception {
+        try (InputStream is = getResource(name).openStream()) {
+            return is.readNBytes(64);
+        }
+    }
 }
@@ -0,0 +1,73 @@
+package com.sismics.util.benchmark;
+
+import com.sismics.util.ImageDeskew;
+import com.sismics.util.Scalr;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the skew angle detection on a sample scan, prepared like the OCR does.
+ * Compile with the benchmark profile: mvn -Pdev,benchmark test-compile, then run this class with the test classpath.
+ *
+ * @author bgamard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImageDeskewBenchmark {
+    /**
+     * Skew of the scan in degrees.
+     */
+    @Param({ "0", "4" })
+    public double skew;
+
+    /**
+     * Scan upscaled and grayscaled.
+     */
+    private BufferedImage image;
+
+    @Setup
+    public void setup() throws Exception {
+        BufferedImage scan;
+        try (InputStream inputStream = ClassLoader.getSystemResourceAsStream("file/scanned.pdf");
+             PDDocument pdfDocument = PDDocument.load(inputStream)) {
+            scan = new PDFRenderer(pdfDocument).renderImageWithDPI(0, 300, ImageType.GRAY);
+        }
+        if (skew != 0) {
+            scan = Scalr.rotate(scan, skew);
+        }
+        image = Scalr.resize(scan, Scalr.Method.AUTOMATIC, Scalr.Mode.AUTOMATIC, 3500, Scalr.OP_ANTIALIAS, Scalr.OP_GRAYSCALE);
+    }
+
+    @Benchmark
+    public double getSkewAngle() {
+        return new ImageDeskew(image).getSkewAngle();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(ImageDeskewBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,74 @@
+package com.sismics.util.benchmark;
+
+import com.google.common.io.ByteStreams;
+import com.sismics.docs.core.util.EncryptionUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.CipherInputStream;
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the thumbnail decryption, with and without the secret key cache.
+ * Compile with the benchmark profile: mvn -Pdev,benchmark test-compile, then run this class with the test classpath.
+ *
+ * @author bgamard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ThumbnailDecryptionBenchmark {
+    /**
+     * Private key of the thumbnail.
+     */
+    private static final String PRIVATE_KEY = "OnceUponATime";
+
+    /**
+     * True to keep the secret key in cache between the decryptions.
+     */
+    @Param({ "false", "true" })
+    public boolean cached;
+
+    /**
+     * Encrypted thumbnail of 16 KB.
+     */
+    private byte[] encryptedThumbnail;
+
+    @Setup
+    public void setup() throws Exception {
+        byte[] thumbnail = new byte[16 * 1024];
+        new Random(42).nextBytes(thumbnail);
+        encryptedThumbnail = ByteStreams.toByteArray(new CipherInputStream(
+                new ByteArrayInputStream(thumbnail), EncryptionUtil.getEncryptionCipher(PRIVATE_KEY)));
+    }
+
+    @Benchmark
+    public long decrypt() throws Exception {
+        if (!cached) {
+            EncryptionUtil.invalidateSecretKey(PRIVATE_KEY);
+        }
+        return ByteStreams.exhaust(EncryptionUtil.decryptInputStream(new ByteArrayInputStream(encryptedThumbnail), PRIVATE_KEY));
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(ThumbnailDecryptionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
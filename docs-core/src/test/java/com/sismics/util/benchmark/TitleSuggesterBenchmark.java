@@ -0,0 +1,112 @@
+package com.sismics.util.benchmark;
+
+import com.sismics.docs.core.util.indexing.TitleSuggester;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the title suggester lookups, which must not depend on the index size.
+ * Compile with the benchmark profile: mvn -Pdev,benchmark test-compile, then run this class with the test classpath.
+ *
+ * @author bgamard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TitleSuggesterBenchmark {
+    /**
+     * Words used to generate titles.
+     */
+    private static final String[] WORDS = {
+            "invoice", "contract", "report", "meeting", "budget", "document", "annual",
+            "quarterly", "scan", "letter", "receipt", "tax", "insurance", "project", "minutes"
+    };
+
+    /**
+     * Number of indexed titles.
+     */
+    @Param({ "1000", "10000", "100000" })
+    public int titleCount;
+
+    /**
+     * Directory used by the suggester.
+     */
+    private Directory suggesterDirectory;
+
+    /**
+     * Suggester built from the titles.
+     */
+    private TitleSuggester suggester;
+
+    /**
+     * Index of the next lookup.
+     */
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        suggesterDirectory = FSDirectory.open(Files.createTempDirectory("suggester"));
+        suggester = new TitleSuggester(null, suggesterDirectory);
+        Random random = new Random(42);
+        try (Directory directory = new ByteBuffersDirectory()) {
+            try (IndexWriter indexWriter = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()))) {
+                for (int i = 0; i < titleCount; i++) {
+                    Document document = new Document();
+                    String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                            + " " + Integer.toString(random.nextInt(titleCount), 36);
+                    document.add(new TextField("title", title, Field.Store.NO));
+                    indexWriter.addDocument(document);
+                }
+            }
+            try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                suggester.build(reader);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        suggesterDirectory.close();
+    }
+
+    @Benchmark
+    public List<String> lookup() throws Exception {
+        return suggester.lookup(WORDS[next++ % WORDS.length].substring(0, 3), 10);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(TitleSuggesterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
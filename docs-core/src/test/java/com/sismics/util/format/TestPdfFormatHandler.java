@@ -1,6 +1,7 @@
 package com.sismics.util.format;
 
 import com.sismics.BaseTest;
+import com.sismics.docs.core.util.format.FormatSession;
 import com.sismics.docs.core.util.format.PdfFormatHandler;
 import org.junit.Assert;
 import org.junit.Test;
@@ -25,4 +26,17 @@ public class TestPdfFormatHandler extends BaseTest {
         Assert.assertTrue(content.contains("Grundumsatzmessungen"));
         Assert.assertTrue(content.contains("ermitteln"));
     }
+
+    /**
+     * Test of a processing session, the PDF is loaded once.
+     */
+    @Test
+    public void testSession() throws Exception {
+        PdfFormatHandler formatHandler = new PdfFormatHandler();
+        try (FormatSession session = formatHandler.open(Paths.get(getResource(FILE_PDF).toURI()))) {
+            Assert.assertEquals(8, session.getPageCount());
+            Assert.assertNotNull(session.generateThumbnail());
+            Assert.assertTrue(session.extractContent(null).contains("All human beings are born free and equal in dignity and rights."));
+        }
+    }
 }
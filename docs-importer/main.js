@@ -461,6 +461,7 @@ const importFile = (file, remove, resolve) => {
         url: prefs.importer.baseUrl + '/api/file',
         formData: {
           id: JSON.parse(body).id,
+          bulk: 'true',
           file: fs.createReadStream(file)
         }
       }, function (error, response) {
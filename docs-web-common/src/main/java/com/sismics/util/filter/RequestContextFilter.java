@@ -117,9 +117,13 @@ public class RequestContextFilter implements Filter {
                 int statusClass = r.getStatus() / 100;
                 if (statusClass == 2 || statusClass == 3) {
                     try {
+                        context.firePreCommitEvents();
                         em.getTransaction().commit();
                     } catch (Exception e) {
                         log.error("Error during commit", e);
+                        if (em.getTransaction().isActive()) {
+                            em.getTransaction().rollback();
+                        }
                         r.sendError(500);
                     }
                 } else {
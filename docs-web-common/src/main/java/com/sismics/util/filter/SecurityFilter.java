@@ -6,6 +6,7 @@ import com.sismics.docs.core.dao.GroupDao;
 import com.sismics.docs.core.dao.RoleBaseFunctionDao;
 import com.sismics.docs.core.dao.criteria.GroupCriteria;
 import com.sismics.docs.core.dao.dto.GroupDto;
+import com.sismics.docs.core.dao.dto.PrincipalDto;
 import com.sismics.docs.core.model.jpa.User;
 import com.sismics.security.AnonymousPrincipal;
 import com.sismics.security.UserPrincipal;
@@ -16,6 +17,7 @@ import org.slf4j.LoggerFactory;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -50,29 +52,22 @@ public abstract class SecurityFilter implements Filter {
     }
 
     /**
-     * Injects the given user into the request, with the appropriate authentication state.
+     * Returns true if the user is still valid.
      *
-     * @param request HTTP request
-     * @param user nullable User to inject
+     * @param user nullable User
+     * @return True if the user can be authenticated
      */
-    private void injectUser(HttpServletRequest request, User user) {
-        // Check if the user is still valid
-        if (user != null && user.getDeleteDate() == null && user.getDisableDate() == null) {
-            injectAuthenticatedUser(request, user);
-        } else {
-            injectAnonymousUser(request);
-        }
+    static boolean isValidUser(User user) {
+        return user != null && user.getDeleteDate() == null && user.getDisableDate() == null;
     }
 
     /**
-     * Inject an authenticated user into the request attributes.
+     * Resolves the principal of a user: its groups hierarchy and its base functions.
      *
-     * @param request HTTP request
-     * @param user User to inject
+     * @param user User
+     * @return Principal
      */
-    private void injectAuthenticatedUser(HttpServletRequest request, User user) {
-        UserPrincipal userPrincipal = new UserPrincipal(user.getId(), user.getUsername());
-
+    static PrincipalDto resolvePrincipal(User user) {
         // Add groups
         GroupDao groupDao = new GroupDao();
         Set<String> groupRoleIdSet = new HashSet<>();
@@ -86,16 +81,31 @@ public abstract class SecurityFilter implements Filter {
                 groupRoleIdSet.add(groupDto.getRoleId());
             }
         }
-        userPrincipal.setGroupIdSet(groupIdSet);
 
         // Add base functions
         groupRoleIdSet.add(user.getRoleId());
         RoleBaseFunctionDao userBaseFunction = new RoleBaseFunctionDao();
         Set<String> baseFunctionSet = userBaseFunction.findByRoleId(groupRoleIdSet);
-        userPrincipal.setBaseFunctionSet(baseFunctionSet);
 
-        // Add email
-        userPrincipal.setEmail(user.getEmail());
+        return new PrincipalDto()
+                .setUserId(user.getId())
+                .setUsername(user.getUsername())
+                .setEmail(user.getEmail())
+                .setGroupIdSet(Collections.unmodifiableSet(groupIdSet))
+                .setBaseFunctionSet(Collections.unmodifiableSet(baseFunctionSet));
+    }
+
+    /**
+     * Inject an authenticated user into the request attributes.
+     *
+     * @param request HTTP request
+     * @param principalDto Principal of the user to inject
+     */
+    private void injectAuthenticatedUser(HttpServletRequest request, PrincipalDto principalDto) {
+        UserPrincipal userPrincipal = new UserPrincipal(principalDto.getUserId(), principalDto.getUsername());
+        userPrincipal.setGroupIdSet(principalDto.getGroupIdSet());
+        userPrincipal.setBaseFunctionSet(principalDto.getBaseFunctionSet());
+        userPrincipal.setEmail(principalDto.getEmail());
 
         request.setAttribute(PRINCIPAL_ATTRIBUTE, userPrincipal);
     }
@@ -127,13 +137,28 @@ public abstract class SecurityFilter implements Filter {
         HttpServletRequest request = (HttpServletRequest) req;
 
         if (!hasIdentifiedUser(request)) {
-            User user = authenticate(request);
-            injectUser(request, user);
+            PrincipalDto principalDto = authenticatePrincipal(request);
+            if (principalDto != null) {
+                injectAuthenticatedUser(request, principalDto);
+            } else {
+                injectAnonymousUser(request);
+            }
         }
 
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Authenticates an user from the given request parameters, and resolves its principal.
+     *
+     * @param request HTTP request
+     * @return nullable Principal
+     */
+    protected PrincipalDto authenticatePrincipal(HttpServletRequest request) {
+        User user = authenticate(request);
+        return isValidUser(user) ? resolvePrincipal(user) : null;
+    }
+
     /**
      * Authenticates an user from the given request parameters.
      *
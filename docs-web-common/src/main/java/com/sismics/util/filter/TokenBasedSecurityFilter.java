@@ -2,8 +2,11 @@ package com.sismics.util.filter;
 
 import com.sismics.docs.core.dao.AuthenticationTokenDao;
 import com.sismics.docs.core.dao.UserDao;
+import com.sismics.docs.core.dao.dto.PrincipalDto;
+import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.AuthenticationToken;
 import com.sismics.docs.core.model.jpa.User;
+import com.sismics.docs.core.util.PrincipalCacheUtil;
 
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
@@ -78,12 +81,47 @@ public class TokenBasedSecurityFilter extends SecurityFilter {
         if (authenticationToken.isLongLasted()) {
             return now >= creationDate + ((long) TOKEN_LONG_LIFETIME) * 1000L;
         } else {
-            long date = authenticationToken.getLastConnectionDate() != null ?
-                    authenticationToken.getLastConnectionDate().getTime() : creationDate;
+            // The last connection may not be written yet
+            Date lastConnectionDate = AppContext.getInstance().getTokenActivityService().getLastConnectionDate(authenticationToken);
+            long date = lastConnectionDate != null ? lastConnectionDate.getTime() : creationDate;
             return now >= date + ((long) TOKEN_SESSION_LIFETIME) * 1000L;
         }
     }
 
+    @Override
+    protected PrincipalDto authenticatePrincipal(HttpServletRequest request) {
+        // Get the value of the client authentication token
+        String authTokenId = extractAuthToken(request.getCookies());
+        if (authTokenId == null) {
+            return null;
+        }
+
+        // Get the principal already resolved from this token
+        PrincipalDto principalDto = PrincipalCacheUtil.get(authTokenId);
+        if (principalDto == null) {
+            AuthenticationToken authToken = new AuthenticationTokenDao().get(authTokenId);
+            if (authToken == null) {
+                return null;
+            }
+
+            User user = new UserDao().getById(authToken.getUserId());
+            if (!isValidUser(user)) {
+                return null;
+            }
+
+            principalDto = resolvePrincipal(user).setAuthenticationToken(authToken);
+            PrincipalCacheUtil.put(authTokenId, principalDto);
+        }
+
+        if (isTokenExpired(principalDto.getAuthenticationToken())) {
+            PrincipalCacheUtil.invalidateToken(authTokenId);
+            handleExpiredToken(new AuthenticationTokenDao(), authTokenId);
+            return null;
+        }
+
+        return principalDto;
+    }
+
     @Override
     protected User authenticate(HttpServletRequest request) {
         // Get the value of the client authentication token
@@ -3,6 +3,7 @@ package com.sismics.docs.rest.resource;
 import com.google.common.base.Strings;
 import com.sismics.docs.core.constant.ConfigType;
 import com.sismics.docs.core.constant.Constants;
+import com.sismics.docs.core.constant.FileProcessingPriority;
 import com.sismics.docs.core.dao.ConfigDao;
 import com.sismics.docs.core.dao.DocumentDao;
 import com.sismics.docs.core.dao.FileDao;
@@ -11,9 +12,11 @@ import com.sismics.docs.core.event.RebuildIndexAsyncEvent;
 import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.Config;
 import com.sismics.docs.core.model.jpa.File;
+import com.sismics.docs.core.service.FileProcessingService;
 import com.sismics.docs.core.service.InboxService;
 import com.sismics.docs.core.util.ConfigUtil;
 import com.sismics.docs.core.util.DirectoryUtil;
+import com.sismics.docs.core.util.indexing.IndexRebuildProgress;
 import com.sismics.docs.core.util.jpa.PaginatedList;
 import com.sismics.docs.core.util.jpa.PaginatedLists;
 import com.sismics.docs.rest.constant.BaseFunction;
@@ -23,6 +26,8 @@ import com.sismics.rest.exception.ServerException;
 import com.sismics.rest.util.ValidationUtil;
 import com.sismics.util.JsonUtil;
 import com.sismics.util.context.ThreadLocalContext;
+import com.sismics.util.jpa.ConnectionPoolMetrics;
+import com.sismics.util.jpa.EMF;
 import com.sismics.util.log4j.LogCriteria;
 import com.sismics.util.log4j.LogEntry;
 import com.sismics.util.log4j.MemoryAppender;
@@ -74,6 +79,15 @@ public class AppResource extends BaseResource {
      * @apiSuccess {String} active_user_count Number of active users
      * @apiSuccess {String} global_storage_current Global storage currently used (in bytes)
      * @apiSuccess {String} global_storage_quota Maximum global storage (in bytes)
+     * @apiSuccess {Object} file_processing Files waiting to be processed, by priority (interactive, bulk, inbox)
+     * @apiSuccess {Number} file_processing.queued Number of files waiting to be processed
+     * @apiSuccess {Number} file_processing.processed Number of files processed
+     * @apiSuccess {Number} file_processing.average_wait Average time spent waiting by a processed file (in milliseconds)
+     * @apiSuccess {Object} index_rebuild Progress of the running index rebuild
+     * @apiSuccess {Number} index_rebuild.processed Number of documents and files indexed
+     * @apiSuccess {Number} index_rebuild.total Number of documents and files to index
+     * @apiSuccess {Number} index_rebuild.rate Documents and files indexed per second
+     * @apiSuccess {Number} index_rebuild.eta Estimated remaining time (in seconds), -1 if unknown
      * @apiPermission none
      * @apiVersion 1.5.0
      *
@@ -110,6 +124,23 @@ public class AppResource extends BaseResource {
         if (globalQuota > 0) {
             response.add("global_storage_quota", globalQuota);
         }
+        JsonObjectBuilder fileProcessing = Json.createObjectBuilder();
+        for (FileProcessingPriority priority : FileProcessingPriority.values()) {
+            FileProcessingService.QueueStats stats = AppContext.getInstance().getFileProcessingService().getStats(priority);
+            fileProcessing.add(priority.name().toLowerCase(), Json.createObjectBuilder()
+                    .add("queued", stats.getQueued())
+                    .add("processed", stats.getProcessed())
+                    .add("average_wait", stats.getAverageWaitTime()));
+        }
+        response.add("file_processing", fileProcessing);
+        IndexRebuildProgress rebuildProgress = AppContext.getInstance().getIndexingHandler().getRebuildProgress();
+        if (rebuildProgress != null) {
+            response.add("index_rebuild", Json.createObjectBuilder()
+                    .add("processed", rebuildProgress.getProcessed())
+                    .add("total", rebuildProgress.getTotal())
+                    .add("rate", rebuildProgress.getRate())
+                    .add("eta", rebuildProgress.getEta()));
+        }
 
         return Response.ok().entity(response.build()).build();
     }
@@ -602,7 +633,53 @@ public class AppResource extends BaseResource {
     }
 
     /**
-     * Destroy and rebuild the search index.
+     * Returns the database connection pool metrics.
+     *
+     * @api {get} /app/pool Get the database connection pool metrics
+     * @apiName GetAppPool
+     * @apiGroup App
+     * @apiSuccess {Number} active Number of connections in use
+     * @apiSuccess {Number} idle Number of idle connections
+     * @apiSuccess {Number} total Number of connections
+     * @apiSuccess {Number} max Maximum number of connections
+     * @apiSuccess {Number} pending Number of threads waiting for a connection
+     * @apiSuccess {Number} acquired Number of connections acquired
+     * @apiSuccess {Number} timeouts Number of connection requests which timed out
+     * @apiSuccess {Number} average_wait Average time spent waiting for a connection (in microseconds)
+     * @apiSuccess {Number} max_wait Longest time spent waiting for a connection (in microseconds)
+     * @apiSuccess {Number} average_usage Average time a connection is used (in milliseconds)
+     * @apiError (client) ForbiddenError Access denied
+     * @apiPermission admin
+     * @apiVersion 1.5.0
+     *
+     * @return Response
+     */
+    @GET
+    @Path("pool")
+    public Response pool() {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+        checkBaseFunction(BaseFunction.ADMIN);
+
+        ConnectionPoolMetrics metrics = EMF.getPoolMetrics();
+        JsonObjectBuilder response = Json.createObjectBuilder()
+                .add("active", metrics.getActiveConnections())
+                .add("idle", metrics.getIdleConnections())
+                .add("total", metrics.getTotalConnections())
+                .add("max", metrics.getMaxConnections())
+                .add("pending", metrics.getPendingThreads())
+                .add("acquired", metrics.getAcquiredCount())
+                .add("timeouts", metrics.getTimeoutCount())
+                .add("average_wait", metrics.getAverageAcquireTime())
+                .add("max_wait", metrics.getMaxAcquireTime())
+                .add("average_usage", metrics.getAverageUsageTime());
+
+        return Response.ok().entity(response.build()).build();
+    }
+
+    /**
+     * Rebuild the search index, the current index is used until the new one is complete.
      *
      * @api {post} /app/batch/reindex Rebuild the search index
      * @apiName PostAppBatchReindex
@@ -632,6 +709,35 @@ public class AppResource extends BaseResource {
         return Response.ok().entity(response.build()).build();
     }
 
+    /**
+     * Evict the second-level cache of this instance.
+     * Useful after the database has been updated outside of this instance.
+     *
+     * @api {post} /app/batch/evict_cache Evict the database cache
+     * @apiName PostAppBatchEvictCache
+     * @apiGroup App
+     * @apiSuccess {String} status Status OK
+     * @apiError (client) ForbiddenError Access denied
+     * @apiPermission admin
+     * @apiVersion 1.5.0
+     *
+     * @return Response
+     */
+    @POST
+    @Path("batch/evict_cache")
+    public Response batchEvictCache() {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+        checkBaseFunction(BaseFunction.ADMIN);
+
+        EMF.evictCache();
+
+        JsonObjectBuilder response = Json.createObjectBuilder()
+                .add("status", "ok");
+        return Response.ok().entity(response.build()).build();
+    }
+
     /**
      * Clean storage.
      *
@@ -743,6 +849,7 @@ public class AppResource extends BaseResource {
         log.info("Deleting {} soft deleted documents", em.createQuery("delete Document where deleteDate is not null").executeUpdate());
         log.info("Deleting {} soft deleted users", em.createQuery("delete User where deleteDate is not null").executeUpdate());
         log.info("Deleting {} soft deleted groups", em.createQuery("delete Group where deleteDate is not null").executeUpdate());
+        ThreadLocalContext.get().clearEntityManager();
 
         // Always return OK
         JsonObjectBuilder response = Json.createObjectBuilder()
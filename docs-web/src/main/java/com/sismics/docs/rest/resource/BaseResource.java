@@ -1,18 +1,25 @@
 package com.sismics.docs.rest.resource;
 
 import com.google.common.collect.Lists;
+import com.sismics.docs.core.constant.FileProcessingPriority;
+import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.service.FileProcessingService;
 import com.sismics.docs.rest.constant.BaseFunction;
 import com.sismics.rest.exception.ForbiddenClientException;
 import com.sismics.security.IPrincipal;
 import com.sismics.security.UserPrincipal;
 import com.sismics.util.filter.SecurityFilter;
 
+import jakarta.json.Json;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.ServiceUnavailableException;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
 
 import java.security.Principal;
 import java.util.List;
@@ -106,6 +113,32 @@ public abstract class BaseResource {
         return baseFunctionSet != null && baseFunctionSet.contains(baseFunction.name());
     }
     
+    /**
+     * Checks if new files can be accepted for processing. Throw an exception if too many files are waiting.
+     *
+     * @param priority Priority of the file processing
+     */
+    void checkFileProcessingCapacity(FileProcessingPriority priority) {
+        checkFileProcessingCapacity(AppContext.getInstance().getFileProcessingService(), priority);
+    }
+
+    /**
+     * Checks if a file processing service can accept new files. Throw an exception if too many files are waiting.
+     *
+     * @param fileProcessingService File processing service
+     * @param priority Priority of the file processing
+     */
+    static void checkFileProcessingCapacity(FileProcessingService fileProcessingService, FileProcessingPriority priority) {
+        if (fileProcessingService.isSaturated(priority)) {
+            throw new ServiceUnavailableException(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, 60)
+                    .entity(Json.createObjectBuilder()
+                            .add("type", "ProcessingQueueFull")
+                            .add("message", "Too many files are waiting to be processed").build())
+                    .build());
+        }
+    }
+
     /**
      * Returns a list of ACL target ID.
      * 
@@ -4,6 +4,7 @@ import com.google.common.collect.Lists;
 import com.sismics.docs.core.constant.AclType;
 import com.sismics.docs.core.constant.ConfigType;
 import com.sismics.docs.core.constant.Constants;
+import com.sismics.docs.core.constant.FileProcessingPriority;
 import com.sismics.docs.core.constant.PermType;
 import com.sismics.docs.core.dao.AclDao;
 import com.sismics.docs.core.dao.ContributorDao;
@@ -76,7 +77,6 @@ import javax.mail.internet.MimeMessage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -461,7 +461,11 @@ public class DocumentResource extends BaseResource {
         List<String> suggestionList = Lists.newArrayList();
         SortCriteria sortCriteria = new SortCriteria(sortColumn, asc);
 
-        List<TagDto> allTagDtoList = tagDao.findByCriteria(new TagCriteria().setTargetIdList(getTargetIdList(null)), null);
+        // The tags are needed only to search by tag names
+        List<TagDto> allTagDtoList = Collections.emptyList();
+        if (DocumentSearchCriteriaUtil.hasTagCriteria(search, searchTag, searchTagNot)) {
+            allTagDtoList = tagDao.findByCriteria(new TagCriteria().setTargetIdList(getTargetIdList(null)), null);
+        }
 
         DocumentCriteria documentCriteria = DocumentSearchCriteriaUtil.parseSearchQuery(search, allTagDtoList);
         DocumentSearchCriteriaUtil.addHttpSearchParams(
@@ -489,8 +493,9 @@ public class DocumentResource extends BaseResource {
             throw new ServerException("SearchError", "Error searching in documents", e);
         }
 
-        // Find the files of the documents
-        Iterable<String> documentsIds = CollectionUtils.collect(paginatedList.getResultList(), DocumentDto::getId);
+        // Find the files and the tags accessible by the current user of the documents
+        List<String> documentsIds = Lists.newArrayList(CollectionUtils.collect(paginatedList.getResultList(), DocumentDto::getId));
+        Map<String, List<TagDto>> tagDtoMap = tagDao.findByDocumentIds(documentsIds, getTargetIdList(null));
         FileDao fileDao = new FileDao();
         List<File> filesList = null;
         Map<String, Long> filesCountByDocument = null;
@@ -501,10 +506,7 @@ public class DocumentResource extends BaseResource {
         }
 
         for (DocumentDto documentDto : paginatedList.getResultList()) {
-            // Get tags accessible by the current user on this document
-            List<TagDto> tagDtoList = tagDao.findByCriteria(new TagCriteria()
-                    .setTargetIdList(getTargetIdList(null))
-                    .setDocumentId(documentDto.getId()), new SortCriteria(1, true));
+            List<TagDto> tagDtoList = tagDtoMap.getOrDefault(documentDto.getId(), Collections.emptyList());
 
             Long filesCount;
             Collection<File> filesOfDocument = null;
@@ -889,6 +891,7 @@ public class DocumentResource extends BaseResource {
      * @apiError (server) ErrorGuessMime Error guessing mime type
      * @apiError (client) QuotaReached Quota limit reached
      * @apiError (server) FileError Error adding a file
+     * @apiError (server) ProcessingQueueFull Too many files are waiting to be processed, retry later
      * @apiPermission user
      * @apiVersion 1.5.0
      *
@@ -905,72 +908,66 @@ public class DocumentResource extends BaseResource {
 
         // Validate input data
         ValidationUtil.validateRequired(fileBodyPart, "file");
+        checkFileProcessingCapacity(FileProcessingPriority.BULK);
 
-        // Save the file to a temporary file
-        java.nio.file.Path unencryptedFile;
-        try {
-            unencryptedFile = AppContext.getInstance().getFileService().createTemporaryFile();
-            Files.copy(fileBodyPart.getValueAs(InputStream.class), unencryptedFile, StandardCopyOption.REPLACE_EXISTING);
-        } catch (IOException e) {
-            throw new ServerException("StreamError", "Error reading the input file", e);
-        }
-
-        // Read the EML file
+        // Read the EML file, the attachments are kept in temporary files
         Properties props = new Properties();
         Session mailSession = Session.getDefaultInstance(props, null);
         EmailUtil.MailContent mailContent = new EmailUtil.MailContent();
-        try (InputStream inputStream = Files.newInputStream(unencryptedFile)) {
-            Message message = new MimeMessage(mailSession, inputStream);
-            mailContent.setSubject(message.getSubject());
-            mailContent.setDate(message.getSentDate());
-            EmailUtil.parseMailContent(message, mailContent);
-        } catch (IOException | MessagingException e) {
-            throw new ServerException("StreamError", "Error reading the temporary file", e);
-        }
+        try (mailContent) {
+            try (InputStream inputStream = fileBodyPart.getValueAs(InputStream.class)) {
+                Message message = new MimeMessage(mailSession, inputStream);
+                mailContent.setSubject(message.getSubject());
+                mailContent.setDate(message.getSentDate());
+                EmailUtil.parseMailContent(message, mailContent);
+            } catch (IOException | MessagingException e) {
+                throw new ServerException("StreamError", "Error reading the input file", e);
+            }
 
-        // Create the document
-        Document document = new Document();
-        document.setUserId(principal.getId());
-        if (mailContent.getSubject() == null) {
-            document.setTitle("Imported email from EML file");
-        } else {
-            document.setTitle(StringUtils.abbreviate(mailContent.getSubject(), 100));
-        }
-        document.setDescription(StringUtils.abbreviate(mailContent.getMessage(), 4000));
-        document.setSubject(StringUtils.abbreviate(mailContent.getSubject(), 500));
-        document.setFormat("EML");
-        document.setSource("Email");
-        document.setLanguage(ConfigUtil.getConfigStringValue(ConfigType.DEFAULT_LANGUAGE));
-        if (mailContent.getDate() == null) {
-            document.setCreateDate(new Date());
-        } else {
-            document.setCreateDate(mailContent.getDate());
-        }
+            // Create the document
+            Document document = new Document();
+            document.setUserId(principal.getId());
+            if (mailContent.getSubject() == null) {
+                document.setTitle("Imported email from EML file");
+            } else {
+                document.setTitle(StringUtils.abbreviate(mailContent.getSubject(), 100));
+            }
+            document.setDescription(StringUtils.abbreviate(mailContent.getMessage(), 4000));
+            document.setSubject(StringUtils.abbreviate(mailContent.getSubject(), 500));
+            document.setFormat("EML");
+            document.setSource("Email");
+            document.setLanguage(ConfigUtil.getConfigStringValue(ConfigType.DEFAULT_LANGUAGE));
+            if (mailContent.getDate() == null) {
+                document.setCreateDate(new Date());
+            } else {
+                document.setCreateDate(mailContent.getDate());
+            }
 
-        // Save the document, create the base ACLs
-        DocumentUtil.createDocument(document, principal.getId());
+            // Save the document, create the base ACLs
+            DocumentUtil.createDocument(document, principal.getId());
 
-        // Raise a document created event
-        DocumentCreatedAsyncEvent documentCreatedAsyncEvent = new DocumentCreatedAsyncEvent();
-        documentCreatedAsyncEvent.setUserId(principal.getId());
-        documentCreatedAsyncEvent.setDocumentId(document.getId());
-        ThreadLocalContext.get().addAsyncEvent(documentCreatedAsyncEvent);
+            // Raise a document created event
+            DocumentCreatedAsyncEvent documentCreatedAsyncEvent = new DocumentCreatedAsyncEvent();
+            documentCreatedAsyncEvent.setUserId(principal.getId());
+            documentCreatedAsyncEvent.setDocumentId(document.getId());
+            ThreadLocalContext.get().addAsyncEvent(documentCreatedAsyncEvent);
 
-        // Add files to the document
-        try {
-            for (EmailUtil.FileContent fileContent : mailContent.getFileContentList()) {
-                FileUtil.createFile(fileContent.getName(), null, fileContent.getFile(), fileContent.getSize(),
-                        document.getLanguage(), principal.getId(), document.getId());
+            // Add files to the document
+            try {
+                for (EmailUtil.FileContent fileContent : mailContent.getFileContentList()) {
+                    FileUtil.createFile(fileContent.getName(), null, fileContent.getFile(), fileContent.getSize(),
+                            document.getLanguage(), principal.getId(), document.getId(), FileProcessingPriority.BULK);
+                }
+            } catch (IOException e) {
+                throw new ClientException(e.getMessage(), e.getMessage(), e);
+            } catch (Exception e) {
+                throw new ServerException("FileError", "Error adding a file", e);
             }
-        } catch (IOException e) {
-            throw new ClientException(e.getMessage(), e.getMessage(), e);
-        } catch (Exception e) {
-            throw new ServerException("FileError", "Error adding a file", e);
-        }
 
-        JsonObjectBuilder response = Json.createObjectBuilder()
-                .add("id", document.getId());
-        return Response.ok().entity(response.build()).build();
+            JsonObjectBuilder response = Json.createObjectBuilder()
+                    .add("id", document.getId());
+            return Response.ok().entity(response.build()).build();
+        }
     }
 
     /**
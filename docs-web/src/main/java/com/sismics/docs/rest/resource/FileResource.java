@@ -3,6 +3,7 @@ package com.sismics.docs.rest.resource;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.io.ByteStreams;
+import com.sismics.docs.core.constant.FileProcessingPriority;
 import com.sismics.docs.core.constant.PermType;
 import com.sismics.docs.core.dao.AclDao;
 import com.sismics.docs.core.dao.DocumentDao;
@@ -18,6 +19,7 @@ import com.sismics.docs.core.model.jpa.User;
 import com.sismics.docs.core.util.DirectoryUtil;
 import com.sismics.docs.core.util.EncryptionUtil;
 import com.sismics.docs.core.util.FileUtil;
+import com.sismics.docs.core.util.ZipUtil;
 import com.sismics.rest.exception.ClientException;
 import com.sismics.rest.exception.ForbiddenClientException;
 import com.sismics.rest.exception.ServerException;
@@ -46,11 +48,12 @@ import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.text.MessageFormat;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * File REST resources.
@@ -59,6 +62,11 @@ import java.util.zip.ZipOutputStream;
  */
 @Path("/file")
 public class FileResource extends BaseResource {
+    /**
+     * Time in seconds a generated thumbnail can be used by a client without revalidation.
+     */
+    private static final int GENERATED_MAX_AGE = 3600;
+
     /**
      * Add a file (with or without a document).
      *
@@ -69,6 +77,7 @@ public class FileResource extends BaseResource {
      * @apiGroup File
      * @apiParam {String} [id] Document ID
      * @apiParam {String} [previousFileId] ID of the file to replace by this new version
+     * @apiParam {Boolean} [bulk] If true, the file is part of a bulk import and is processed after the interactive uploads
      * @apiParam {String} file File data
      * @apiSuccess {String} status Status OK
      * @apiSuccess {String} id File ID
@@ -80,10 +89,13 @@ public class FileResource extends BaseResource {
      * @apiError (server) ErrorGuessMime Error guessing mime type
      * @apiError (client) QuotaReached Quota limit reached
      * @apiError (server) FileError Error adding a file
+     * @apiError (server) ProcessingQueueFull Too many files are waiting to be processed, retry later
      * @apiPermission user
      * @apiVersion 1.5.0
      *
      * @param documentId Document ID
+     * @param previousFileId ID of the file to replace
+     * @param bulk True if the file is part of a bulk import
      * @param fileBodyPart File to add
      * @return Response
      */
@@ -92,6 +104,7 @@ public class FileResource extends BaseResource {
     public Response add(
             @FormDataParam("id") String documentId,
             @FormDataParam("previousFileId") String previousFileId,
+            @FormDataParam("bulk") Boolean bulk,
             @FormDataParam("file") FormDataBodyPart fileBodyPart) {
         if (!authenticate()) {
             throw new ForbiddenClientException();
@@ -99,6 +112,8 @@ public class FileResource extends BaseResource {
         
         // Validate input data
         ValidationUtil.validateRequired(fileBodyPart, "file");
+        FileProcessingPriority priority = Boolean.TRUE.equals(bulk) ? FileProcessingPriority.BULK : FileProcessingPriority.INTERACTIVE;
+        checkFileProcessingCapacity(priority);
 
         // Get the document
         DocumentDto documentDto = null;
@@ -112,28 +127,19 @@ public class FileResource extends BaseResource {
             }
         }
         
-        // Keep unencrypted data temporary on disk
+        // Encrypt the uploaded data while it is received
         String name = fileBodyPart.getContentDisposition() != null ?
                 URLDecoder.decode(fileBodyPart.getContentDisposition().getFileName(), StandardCharsets.UTF_8) : null;
-        java.nio.file.Path unencryptedFile;
-        long fileSize;
-        try {
-            unencryptedFile = AppContext.getInstance().getFileService().createTemporaryFile(name);
-            Files.copy(fileBodyPart.getValueAs(InputStream.class), unencryptedFile, StandardCopyOption.REPLACE_EXISTING);
-            fileSize = Files.size(unencryptedFile);
-        } catch (IOException e) {
-            throw new ServerException("StreamError", "Error reading the input file", e);
-        }
-
-        try {
-            String fileId = FileUtil.createFile(name, previousFileId, unencryptedFile, fileSize, documentDto == null ?
-                    null : documentDto.getLanguage(), principal.getId(), documentId);
+        try (InputStream inputStream = fileBodyPart.getValueAs(InputStream.class)) {
+            String fileId = FileUtil.createFile(name, previousFileId, inputStream, documentDto == null ?
+                    null : documentDto.getLanguage(), principal.getId(), documentId, priority);
+            File file = new FileDao().getActiveById(fileId);
 
             // Always return OK
             JsonObjectBuilder response = Json.createObjectBuilder()
                     .add("status", "ok")
                     .add("id", fileId)
-                    .add("size", fileSize);
+                    .add("size", file.getSize());
             return Response.ok().entity(response.build()).build();
         } catch (IOException e) {
             throw new ClientException(e.getMessage(), e.getMessage(), e);
@@ -173,10 +179,6 @@ public class FileResource extends BaseResource {
         // Validate input data
         ValidationUtil.validateRequired(documentId, "documentId");
         
-        // Get the current user
-        UserDao userDao = new UserDao();
-        User user = userDao.getById(principal.getId());
-        
         // Get the document and the file
         DocumentDao documentDao = new DocumentDao();
         FileDao fileDao = new FileDao();
@@ -197,15 +199,13 @@ public class FileResource extends BaseResource {
         fileDao.update(file);
         
         // Raise a new file updated event and document updated event (it wasn't sent during file creation)
+        // The file is decrypted when processed
         try {
-            java.nio.file.Path storedFile = DirectoryUtil.getStorageDirectory().resolve(id);
-            java.nio.file.Path unencryptedFile = EncryptionUtil.decryptFile(storedFile, user.getPrivateKey());
             FileUtil.startProcessingFile(id);
             FileUpdatedAsyncEvent fileUpdatedAsyncEvent = new FileUpdatedAsyncEvent();
             fileUpdatedAsyncEvent.setUserId(principal.getId());
             fileUpdatedAsyncEvent.setLanguage(documentDto.getLanguage());
             fileUpdatedAsyncEvent.setFileId(file.getId());
-            fileUpdatedAsyncEvent.setUnencryptedFile(unencryptedFile);
             ThreadLocalContext.get().addAsyncEvent(fileUpdatedAsyncEvent);
             
             DocumentUpdatedAsyncEvent documentUpdatedAsyncEvent = new DocumentUpdatedAsyncEvent();
@@ -300,20 +300,13 @@ public class FileResource extends BaseResource {
             throw new NotFoundException();
         }
 
-        // Get the creating user
-        UserDao userDao = new UserDao();
-        User user = userDao.getById(file.getUserId());
-
-        // Start the processing asynchronously
+        // Start the processing asynchronously, the file is decrypted when processed
         try {
-            java.nio.file.Path storedFile = DirectoryUtil.getStorageDirectory().resolve(id);
-            java.nio.file.Path unencryptedFile = EncryptionUtil.decryptFile(storedFile, user.getPrivateKey());
             FileUtil.startProcessingFile(id);
             FileUpdatedAsyncEvent event = new FileUpdatedAsyncEvent();
             event.setUserId(principal.getId());
             event.setLanguage(documentDto.getLanguage());
             event.setFileId(file.getId());
-            event.setUnencryptedFile(unencryptedFile);
             ThreadLocalContext.get().addAsyncEvent(event);
         } catch (Exception e) {
             throw new ServerException("ProcessingError", "Error processing this file", e);
@@ -551,8 +544,13 @@ public class FileResource extends BaseResource {
      * @apiParam {String} id File ID
      * @apiParam {String} share Share ID
      * @apiParam {String="web","thumb","content"} [size] Size variation
-     * @apiSuccess {Object} file The file data is the whole response
+     * @apiHeader {String} [Range] Single byte range to return
+     * @apiHeader {String} [If-Range] Return the range only if the file still matches this date or entity tag
+     * @apiHeader {String} [If-None-Match] Entity tags already known by the client
+     * @apiSuccess {Object} file The file data is the whole response, or the requested range with a 206 status
      * @apiError (client) SizeError Size must be web or thumb
+     * @apiSuccess (304) NotModified The file matches one of the entity tags known by the client
+     * @apiError (client) RangeNotSatisfiable The requested range is outside the file
      * @apiError (client) ForbiddenError Access denied or document not visible
      * @apiError (client) NotFound File not found
      * @apiError (server) ServiceUnavailable Error reading the file
@@ -560,6 +558,11 @@ public class FileResource extends BaseResource {
      * @apiVersion 1.5.0
      *
      * @param fileId File ID
+     * @param shareId Share ID
+     * @param size Size variation
+     * @param rangeHeader Range header
+     * @param ifRangeHeader If-Range header
+     * @param ifNoneMatchHeader If-None-Match header
      * @return Response
      */
     @GET
@@ -568,7 +571,10 @@ public class FileResource extends BaseResource {
     public Response data(
             @PathParam("id") final String fileId,
             @QueryParam("share") String shareId,
-            @QueryParam("size") String size) {
+            @QueryParam("size") String size,
+            @HeaderParam("Range") String rangeHeader,
+            @HeaderParam("If-Range") String ifRangeHeader,
+            @HeaderParam("If-None-Match") String ifNoneMatchHeader) {
         authenticate();
         
         if (size != null && !Lists.newArrayList("web", "thumb", "content").contains(size)) {
@@ -585,7 +591,7 @@ public class FileResource extends BaseResource {
         boolean decrypt;
         if (size != null) {
             if (size.equals("content")) {
-                return Response.ok(Strings.nullToEmpty(file.getContent()))
+                return Response.ok(Strings.nullToEmpty(new FileDao().getContent(file.getId())))
                         .header(HttpHeaders.CONTENT_TYPE, "text/plain; charset=utf-8")
                         .build();
             }
@@ -608,17 +614,61 @@ public class FileResource extends BaseResource {
             decrypt = true; // Original files are encrypted
         }
         
+        // A stored file never changes, its generated variants change only when the file is processed again
+        String etag = null;
+        if (decrypt) {
+            etag = buildETag(file, size == null ? "data" : size);
+            if (HttpUtil.matchesETag(ifNoneMatchHeader, etag)) {
+                // The client already has this content, nothing to read or decrypt
+                Response.ResponseBuilder builder = Response.notModified()
+                        .header(HttpHeaders.ETAG, etag);
+                addCacheHeaders(builder, size, true);
+                return builder.build();
+            }
+        }
+
         // Stream the output and decrypt it if necessary
         StreamingOutput stream;
         
         // A file is always encrypted by the creator of it
         User user = userDao.getById(file.getUserId());
+
+        // The encryption doesn't change the length, a range is served by decrypting only the requested bytes
+        long length;
+        String lastModified;
+        try {
+            length = Files.size(storedFile);
+            lastModified = HttpUtil.formatHttpDate(Files.getLastModifiedTime(storedFile).toMillis());
+        } catch (IOException e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).build();
+        }
+        HttpUtil.ByteRange range = null;
+        if (ifRangeHeader == null || ifRangeHeader.equals(lastModified) || ifRangeHeader.equals(etag)) {
+            range = HttpUtil.parseRange(rangeHeader, length);
+        }
+        if (range != null && !range.isSatisfiable()) {
+            return Response.status(Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header("Content-Range", "bytes */" + length)
+                    .build();
+        }
         
         // Write the decrypted file to the output
         try {
             InputStream fileInputStream = Files.newInputStream(storedFile);
-            final InputStream responseInputStream = decrypt ?
-                    EncryptionUtil.decryptInputStream(fileInputStream, user.getPrivateKey()) : fileInputStream;
+            InputStream decryptedInputStream;
+            if (range == null) {
+                decryptedInputStream = decrypt ?
+                        EncryptionUtil.decryptInputStream(fileInputStream, user.getPrivateKey()) : fileInputStream;
+            } else {
+                if (decrypt) {
+                    decryptedInputStream = EncryptionUtil.decryptInputStream(fileInputStream, user.getPrivateKey(), range.getStart());
+                } else {
+                    ByteStreams.skipFully(fileInputStream, range.getStart());
+                    decryptedInputStream = fileInputStream;
+                }
+                decryptedInputStream = ByteStreams.limit(decryptedInputStream, range.getLength());
+            }
+            final InputStream responseInputStream = decryptedInputStream;
                     
             stream = outputStream -> {
                 try {
@@ -638,17 +688,55 @@ public class FileResource extends BaseResource {
 
         Response.ResponseBuilder builder = Response.ok(stream)
                 .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + file.getFullName("data") + "\"")
-                .header(HttpHeaders.CONTENT_TYPE, mimeType);
-        if (decrypt) {
-            // Cache real files
-            builder.header(HttpHeaders.CACHE_CONTROL, "private")
-                    .header(HttpHeaders.EXPIRES, HttpUtil.buildExpiresHeader(3_600_000L * 24L * 365L));
+                .header(HttpHeaders.CONTENT_TYPE, mimeType)
+                .header("Accept-Ranges", "bytes")
+                .header(HttpHeaders.LAST_MODIFIED, lastModified);
+        if (range == null) {
+            builder.header(HttpHeaders.CONTENT_LENGTH, length);
         } else {
+            builder.status(Status.PARTIAL_CONTENT)
+                    .header("Content-Range", "bytes " + range.getStart() + "-" + range.getEnd() + "/" + length)
+                    .header(HttpHeaders.CONTENT_LENGTH, range.getLength());
+        }
+        if (etag != null) {
+            builder.header(HttpHeaders.ETAG, etag);
+        }
+        addCacheHeaders(builder, size, decrypt);
+        return builder.build();
+    }
+
+    /**
+     * Build the entity tag of a file variant.
+     *
+     * @param file File
+     * @param variant Variant (data, web or thumb)
+     * @return Strong entity tag
+     */
+    private String buildETag(File file, String variant) {
+        Date updateDate = file.getUpdateDate() == null ? file.getCreateDate() : file.getUpdateDate();
+        return "\"" + file.getId() + "-" + file.getVersion() + "-" + variant + "-" + updateDate.getTime() + "\"";
+    }
+
+    /**
+     * Add the cache headers of a file variant.
+     *
+     * @param builder Response builder
+     * @param size Size of the variant, null for the original file
+     * @param stored True if the variant is stored, false for a temporary placeholder
+     */
+    private void addCacheHeaders(Response.ResponseBuilder builder, String size, boolean stored) {
+        if (!stored) {
             // Do not cache the temporary thumbnail
             builder.header(HttpHeaders.CACHE_CONTROL, "no-store, must-revalidate")
                     .header(HttpHeaders.EXPIRES, "0");
+        } else if (size == null) {
+            // Cache real files
+            builder.header(HttpHeaders.CACHE_CONTROL, "private")
+                    .header(HttpHeaders.EXPIRES, HttpUtil.buildExpiresHeader(3_600_000L * 24L * 365L));
+        } else {
+            // Generated variants are regenerated under the same URL, cache them for a while and revalidate with the ETag
+            builder.header(HttpHeaders.CACHE_CONTROL, "private, max-age=" + GENERATED_MAX_AGE);
         }
-        return builder.build();
     }
 
     /**
@@ -721,32 +809,24 @@ public class FileResource extends BaseResource {
      * Sent the content of a list of files.
      */
     private Response sendZippedFiles(String zipFileName, List<File> fileList) {
-        final UserDao userDao = new UserDao();
+        // Files are encrypted by their creator, load all the creators at once
+        if (!fileList.isEmpty()) {
+            Map<String, String> privateKeyMap = new HashMap<>();
+            for (User user : new UserDao().getUsers(fileList.stream().map(File::getUserId).collect(Collectors.toSet()))) {
+                privateKeyMap.put(user.getId(), user.getPrivateKey());
+            }
+            for (File file : fileList) {
+                file.setPrivateKey(privateKeyMap.get(file.getUserId()));
+            }
+        }
 
         // Create the ZIP stream
         StreamingOutput stream = outputStream -> {
-            try (ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
-                // Add each file to the ZIP stream
-                int index = 0;
-                for (File file : fileList) {
-                    java.nio.file.Path storedfile = DirectoryUtil.getStorageDirectory().resolve(file.getId());
-                    InputStream fileInputStream = Files.newInputStream(storedfile);
-
-                    // Add the decrypted file to the ZIP stream
-                    // Files are encrypted by the creator of them
-                    User user = userDao.getById(file.getUserId());
-                    try (InputStream decryptedStream = EncryptionUtil.decryptInputStream(fileInputStream, user.getPrivateKey())) {
-                        ZipEntry zipEntry = new ZipEntry(index + "-" + file.getFullName(Integer.toString(index)));
-                        zipOutputStream.putNextEntry(zipEntry);
-                        ByteStreams.copy(decryptedStream, zipOutputStream);
-                        zipOutputStream.closeEntry();
-                    } catch (Exception e) {
-                        throw new WebApplicationException(e);
-                    }
-                    index++;
-                }
+            try {
+                ZipUtil.writeZip(fileList, outputStream);
+            } catch (Exception e) {
+                throw new WebApplicationException(e);
             }
-            outputStream.close();
         };
         
         // Write to the output
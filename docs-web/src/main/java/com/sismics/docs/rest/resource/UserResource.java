@@ -337,8 +337,10 @@ public class UserResource extends BaseResource {
             .setUserAgent(StringUtils.abbreviate(request.getHeader("user-agent"), 1000));
         String token = authenticationTokenDao.create(authenticationToken);
         
-        // Cleanup old session tokens
-        authenticationTokenDao.deleteOldSessionToken(user.getId());
+        // Cleanup old session tokens, once the recent connections are written
+        if (AppContext.getInstance().getTokenActivityService().flush()) {
+            authenticationTokenDao.deleteOldSessionToken(user.getId());
+        }
 
         JsonObjectBuilder response = Json.createObjectBuilder();
         int maxAge = longLasted ? TokenBasedSecurityFilter.TOKEN_LONG_LIFETIME : -1;
@@ -590,8 +592,9 @@ public class UserResource extends BaseResource {
         } else {
             // Update the last connection date
             String authToken = getAuthToken();
-            AuthenticationTokenDao authenticationTokenDao = new AuthenticationTokenDao();
-            authenticationTokenDao.updateLastConnectionDate(authToken);
+            if (authToken != null) {
+                AppContext.getInstance().getTokenActivityService().touch(authToken);
+            }
             
             // Build the response
             response.add("anonymous", false);
@@ -794,8 +797,9 @@ public class UserResource extends BaseResource {
                         .add("create_date", authenticationToken.getCreationDate().getTime())
                         .add("ip", JsonUtil.nullable(authenticationToken.getIp()))
                         .add("user_agent", JsonUtil.nullable(authenticationToken.getUserAgent()));
-                if (authenticationToken.getLastConnectionDate() != null) {
-                    session.add("last_connection_date", authenticationToken.getLastConnectionDate().getTime());
+                Date lastConnectionDate = AppContext.getInstance().getTokenActivityService().getLastConnectionDate(authenticationToken);
+                if (lastConnectionDate != null) {
+                    session.add("last_connection_date", lastConnectionDate.getTime());
                 }
                 session.add("current", authenticationToken.getId().equals(authToken));
                 sessions.add(session);
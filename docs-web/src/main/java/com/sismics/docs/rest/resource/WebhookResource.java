@@ -1,10 +1,14 @@
 package com.sismics.docs.rest.resource;
 
+import com.sismics.docs.core.constant.WebhookDeliveryStatus;
 import com.sismics.docs.core.constant.WebhookEvent;
 import com.sismics.docs.core.dao.WebhookDao;
+import com.sismics.docs.core.dao.WebhookDeliveryDao;
 import com.sismics.docs.core.dao.criteria.WebhookCriteria;
 import com.sismics.docs.core.dao.dto.WebhookDto;
+import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.Webhook;
+import com.sismics.docs.core.service.WebhookDeliveryService;
 import com.sismics.docs.core.util.jpa.SortCriteria;
 import com.sismics.docs.rest.constant.BaseFunction;
 import com.sismics.rest.exception.ForbiddenClientException;
@@ -16,6 +20,7 @@ import jakarta.json.JsonObjectBuilder;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Response;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Webhook REST resources.
@@ -34,6 +39,13 @@ public class WebhookResource extends BaseResource {
      * @apiSuccess {String} webhooks.id ID
      * @apiSuccess {String} webhooks.event Event
      * @apiSuccess {String} webhooks.url URL
+     * @apiSuccess {Object} deliveries Webhook deliveries
+     * @apiSuccess {Number} deliveries.pending Number of deliveries waiting to be sent or retried
+     * @apiSuccess {Number} deliveries.sending Number of deliveries being sent
+     * @apiSuccess {Number} deliveries.sent Number of deliveries sent
+     * @apiSuccess {Number} deliveries.failed Number of deliveries given up after too many attempts
+     * @apiSuccess {Number} deliveries.retried Number of failed attempts retried since startup
+     * @apiSuccess {Number} deliveries.average_latency Average duration of a webhook call since startup (in milliseconds)
      * @apiError (client) ForbiddenError Access denied
      * @apiPermission admin
      * @apiVersion 1.6.0
@@ -58,8 +70,18 @@ public class WebhookResource extends BaseResource {
                     .add("create_date", webhookDto.getCreateTimestamp()));
         }
 
+        // Add the deliveries statistics
+        JsonObjectBuilder deliveries = Json.createObjectBuilder();
+        for (Map.Entry<WebhookDeliveryStatus, Long> entry : new WebhookDeliveryDao().countByStatus().entrySet()) {
+            deliveries.add(entry.getKey().name().toLowerCase(), entry.getValue());
+        }
+        WebhookDeliveryService.DeliveryStats stats = AppContext.getInstance().getWebhookDeliveryService().getStats();
+        deliveries.add("retried", stats.getRetried())
+                .add("average_latency", stats.getAverageLatency());
+
         JsonObjectBuilder response = Json.createObjectBuilder()
-                .add("webhooks", webhooks);
+                .add("webhooks", webhooks)
+                .add("deliveries", deliveries);
         return Response.ok().entity(response.build()).build();
     }
 
@@ -67,7 +89,7 @@ public class WebhookResource extends BaseResource {
      * Add a webhook.
      *
      * @api {put} /webhook Add a webhook
-     * @apiDescription Each time the specified event is raised, the webhook URL will be POST-ed with the following JSON payload: {"event": "Event name", "id": "ID of the document or file"}
+     * @apiDescription Each time the specified event is raised, the webhook URL will be POST-ed with the following JSON payload: {"event": "Event name", "id": "ID of the document or file"}. Failed calls are retried with an increasing delay.
      * @apiName PutWebhook
      * @apiGroup Webhook
      * @apiParam {String="DOCUMENT_CREATED","DOCUMENT_UPDATED","DOCUMENT_DELETED","FILE_CREATED","FILE_UPDATED","FILE_DELETED"} event Event
@@ -37,6 +37,31 @@ public class DocumentSearchCriteriaUtil {
     private static final String PARAMETER_WITH_MULTIPLE_VALUES_SEPARATOR = ",";
     private static final String WORKFLOW_ME = "me";
 
+    /**
+     * Check if a search filters by tags, the list of tags being needed to parse it only then.
+     *
+     * @param search       Search query
+     * @param searchTag    tags or parent tags
+     * @param searchNotTag tags or parent tags to ignore
+     * @return True if the search has a tag criteria
+     */
+    public static boolean hasTagCriteria(String search, String searchTag, String searchNotTag) {
+        if (searchTag != null || searchNotTag != null) {
+            return true;
+        }
+        if (Strings.isNullOrEmpty(search)) {
+            return false;
+        }
+        for (String criteria : search.split(" +")) {
+            String[] params = criteria.split(":");
+            if (params.length == 2 && !Strings.isNullOrEmpty(params[1])
+                    && ("tag".equals(params[0]) || "!tag".equals(params[0]))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Parse a query according to the specified syntax, eg.:
      * tag:assurance tag:other before:2012 after:2011-09 shared:yes lang:fra thing
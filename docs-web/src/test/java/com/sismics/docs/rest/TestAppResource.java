@@ -57,6 +57,7 @@ public class TestAppResource extends BaseJerseyTest {
         Long totalMemory = json.getJsonNumber("total_memory").longValue();
         Assert.assertTrue(totalMemory > 0 && totalMemory > freeMemory);
         Assert.assertEquals(0, json.getJsonNumber("queued_tasks").intValue());
+        Assert.assertEquals(0, json.getJsonObject("file_processing").getJsonObject("interactive").getInt("queued"));
         Assert.assertFalse(json.getBoolean("guest_login"));
         Assert.assertFalse(json.getBoolean("ocr_enabled"));
         Assert.assertEquals("eng", json.getString("default_language"));
@@ -132,6 +133,38 @@ public class TestAppResource extends BaseJerseyTest {
         Assert.assertTrue(date3 >= date4);
     }
 
+    /**
+     * Test the connection pool metrics and the database cache.
+     */
+    @Test
+    public void testPoolResource() {
+        // Login admin
+        String adminToken = adminToken();
+
+        // Check the pool metrics
+        JsonObject json = target().path("/app/pool")
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .get(JsonObject.class);
+        Assert.assertTrue(json.getInt("total") > 0);
+        Assert.assertTrue(json.getInt("active") <= json.getInt("max"));
+        Assert.assertTrue(json.getJsonNumber("acquired").longValue() > 0);
+        Assert.assertEquals(0, json.getJsonNumber("timeouts").longValue());
+
+        // Evict the database cache
+        json = target().path("/app/batch/evict_cache")
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .post(Entity.form(new Form()), JsonObject.class);
+        Assert.assertEquals("ok", json.getString("status"));
+
+        // Only admins can see the pool metrics
+        Response response = target().path("/app/pool")
+                .request()
+                .get();
+        Assert.assertEquals(Status.FORBIDDEN, Status.fromStatusCode(response.getStatus()));
+    }
+
     /**
      * Test the guest login.
      */
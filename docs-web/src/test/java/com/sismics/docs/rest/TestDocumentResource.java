@@ -125,6 +125,10 @@ public class TestDocumentResource extends BaseJerseyTest {
         Assert.assertEquals("SuperTag", tags.getJsonObject(1).getString("name"));
         Assert.assertEquals("#ffff00", tags.getJsonObject(1).getString("color"));
         Assert.assertFalse(documents.getJsonObject(0).getBoolean("active_route"));
+        tags = documents.getJsonObject(1).getJsonArray("tags");
+        Assert.assertEquals(document2Id, documents.getJsonObject(1).getString("id"));
+        Assert.assertEquals(1, tags.size());
+        Assert.assertEquals(tag2Id, tags.getJsonObject(0).getString("id"));
 
         // List all documents from document3
         json = target().path("/document/list")
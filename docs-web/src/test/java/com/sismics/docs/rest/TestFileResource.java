@@ -16,13 +16,16 @@ import jakarta.json.JsonArray;
 import jakarta.json.JsonObject;
 import jakarta.ws.rs.client.Entity;
 import jakarta.ws.rs.core.Form;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 /**
@@ -58,6 +61,53 @@ public class TestFileResource extends BaseJerseyTest {
         InputStream is = (InputStream) response.getEntity();
         byte[] fileBytes = ByteStreams.toByteArray(is);
         Assert.assertTrue(fileBytes.length > 0);
+        Assert.assertEquals("bytes", response.getHeaderString("Accept-Ranges"));
+        Assert.assertEquals(fileBytes.length, Integer.parseInt(response.getHeaderString(HttpHeaders.CONTENT_LENGTH)));
+        Assert.assertNotNull(response.getHeaderString(HttpHeaders.LAST_MODIFIED));
+        String etag = response.getHeaderString(HttpHeaders.ETAG);
+        Assert.assertNotNull(etag);
+
+        // Get the file data already known by the client
+        response = target().path("/file/" + file1Id + "/data").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, file1Token)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"unknown\", " + etag)
+                .get();
+        Assert.assertEquals(Status.NOT_MODIFIED, Status.fromStatusCode(response.getStatus()));
+        Assert.assertEquals(etag, response.getHeaderString(HttpHeaders.ETAG));
+
+        // Get a range of the file data
+        response = target().path("/file/" + file1Id + "/data").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, file1Token)
+                .header("Range", "bytes=100-1099")
+                .get();
+        Assert.assertEquals(Status.PARTIAL_CONTENT, Status.fromStatusCode(response.getStatus()));
+        Assert.assertEquals("bytes 100-1099/" + fileBytes.length, response.getHeaderString("Content-Range"));
+        Assert.assertArrayEquals(Arrays.copyOfRange(fileBytes, 100, 1100), ByteStreams.toByteArray((InputStream) response.getEntity()));
+
+        // Get the end of the file data
+        response = target().path("/file/" + file1Id + "/data").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, file1Token)
+                .header("Range", "bytes=-10")
+                .header("If-Range", etag)
+                .get();
+        Assert.assertEquals(Status.PARTIAL_CONTENT, Status.fromStatusCode(response.getStatus()));
+        Assert.assertArrayEquals(Arrays.copyOfRange(fileBytes, fileBytes.length - 10, fileBytes.length), ByteStreams.toByteArray((InputStream) response.getEntity()));
+
+        // The whole file is returned if it has been modified
+        response = target().path("/file/" + file1Id + "/data").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, file1Token)
+                .header("Range", "bytes=100-1099")
+                .header("If-Range", "Thu, 01 Jan 1970 00:00:00 GMT")
+                .get();
+        Assert.assertEquals(Status.OK, Status.fromStatusCode(response.getStatus()));
+        Assert.assertEquals(fileBytes.length, ByteStreams.toByteArray((InputStream) response.getEntity()).length);
+
+        // Get a range outside the file
+        response = target().path("/file/" + file1Id + "/data").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, file1Token)
+                .header("Range", "bytes=" + fileBytes.length + "-")
+                .get();
+        Assert.assertEquals(Status.REQUESTED_RANGE_NOT_SATISFIABLE, Status.fromStatusCode(response.getStatus()));
         
         // Get the thumbnail data
         response = target().path("/file/" + file1Id + "/data")
@@ -69,6 +119,19 @@ public class TestFileResource extends BaseJerseyTest {
         is = (InputStream) response.getEntity();
         fileBytes = ByteStreams.toByteArray(is);
         Assert.assertTrue(fileBytes.length > 0);
+        String thumbnailEtag = response.getHeaderString(HttpHeaders.ETAG);
+        Assert.assertNotNull(thumbnailEtag);
+        Assert.assertNotEquals(etag, thumbnailEtag);
+        Assert.assertTrue(response.getHeaderString(HttpHeaders.CACHE_CONTROL).contains("max-age"));
+
+        // Get the thumbnail data already known by the client
+        response = target().path("/file/" + file1Id + "/data")
+                .queryParam("size", "thumb")
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, file1Token)
+                .header(HttpHeaders.IF_NONE_MATCH, "W/" + thumbnailEtag)
+                .get();
+        Assert.assertEquals(Status.NOT_MODIFIED, Status.fromStatusCode(response.getStatus()));
         
         // Get the content data
         response = target().path("/file/" + file1Id + "/data")
@@ -275,7 +338,10 @@ public class TestFileResource extends BaseJerseyTest {
         Assert.assertEquals(Status.OK, Status.fromStatusCode(response.getStatus()));
         InputStream is = (InputStream) response.getEntity();
         ZipInputStream zipInputStream = new ZipInputStream(is);
-        Assert.assertEquals(zipInputStream.getNextEntry().getName(), "0-PIA00452.jpg");
+        ZipEntry zipEntry = zipInputStream.getNextEntry();
+        Assert.assertEquals(zipEntry.getName(), "0-PIA00452.jpg");
+        Assert.assertEquals(ZipEntry.STORED, zipEntry.getMethod()); // Already compressed
+        Assert.assertEquals(163510, ByteStreams.toByteArray(zipInputStream).length);
         Assert.assertNull(zipInputStream.getNextEntry());
 
         // Fail if we don't have access to the document
@@ -472,6 +538,49 @@ public class TestFileResource extends BaseJerseyTest {
         Assert.assertEquals(FILE_EINSTEIN_ROOSEVELT_LETTER_PNG_SIZE * 2, getUserQuota(fileQuotaToken));
     }
 
+    /**
+     * Test a file uploaded by a bulk import.
+     *
+     * @throws Exception e
+     */
+    @Test
+    public void testBulkUpload() throws Exception {
+        // Login file_bulk
+        clientUtil.createUser("file_bulk");
+        String fileBulkToken = clientUtil.login("file_bulk");
+
+        // Create a document
+        String document1Id = clientUtil.createDocument(fileBulkToken);
+
+        // Add a file processed as a bulk import
+        try (InputStream is = Resources.getResource(FILE_DOCUMENT_TXT).openStream()) {
+            StreamDataBodyPart streamDataBodyPart = new StreamDataBodyPart("file", is, "document.txt");
+            try (FormDataMultiPart multiPart = new FormDataMultiPart()) {
+                JsonObject json = target()
+                        .register(MultiPartFeature.class)
+                        .path("/file").request()
+                        .cookie(TokenBasedSecurityFilter.COOKIE_NAME, fileBulkToken)
+                        .put(Entity.entity(
+                                multiPart
+                                        .field("id", document1Id)
+                                        .field("bulk", "true")
+                                        .bodyPart(streamDataBodyPart),
+                                MediaType.MULTIPART_FORM_DATA_TYPE), JsonObject.class);
+                Assert.assertEquals("ok", json.getString("status"));
+            }
+        }
+
+        // The file is processed like any other file
+        JsonObject json = target().path("/file/list")
+                .queryParam("id", document1Id)
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, fileBulkToken)
+                .get(JsonObject.class);
+        JsonArray files = json.getJsonArray("files");
+        Assert.assertEquals(1, files.size());
+        Assert.assertEquals("text/plain", files.getJsonObject(0).getString("mimetype"));
+    }
+
     private long getUserQuota(String userToken) {
         return target().path("/user").request()
                 .cookie(TokenBasedSecurityFilter.COOKIE_NAME, userToken)
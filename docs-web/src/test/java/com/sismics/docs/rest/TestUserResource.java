@@ -140,6 +140,12 @@ public class TestUserResource extends BaseJerseyTest {
         String bobToken = clientUtil.login("bob");
         String bobToken2 = clientUtil.login("bob");
 
+        // Bob connects with his first session
+        json = target().path("/user").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, bobToken)
+                .get(JsonObject.class);
+        Assert.assertFalse(json.getBoolean("anonymous"));
+
         // List sessions
         response = target().path("/user/session").request()
                 .cookie(TokenBasedSecurityFilter.COOKIE_NAME, bobToken)
@@ -150,6 +156,13 @@ public class TestUserResource extends BaseJerseyTest {
         JsonObject session = json.getJsonArray("sessions").getJsonObject(0);
         Assert.assertEquals("127.0.0.1", session.getString("ip"));
         Assert.assertTrue(session.getString("user_agent").startsWith("Jersey"));
+        int connectedSessionCount = 0;
+        for (int i = 0; i < json.getJsonArray("sessions").size(); i++) {
+            if (json.getJsonArray("sessions").getJsonObject(i).containsKey("last_connection_date")) {
+                connectedSessionCount++;
+            }
+        }
+        Assert.assertEquals(1, connectedSessionCount);
         
         // Delete all sessions
         response = target().path("/user/session").request()
@@ -71,6 +71,41 @@ public class TestWebhookResource extends BaseJerseyTest {
         Assert.assertEquals("DOCUMENT_CREATED", webhook.getString("event"));
         Assert.assertEquals("http://localhost:" + getPort() + "/docs/thirdpartywebhook", webhook.getString("url"));
         Assert.assertNotNull(webhook.getJsonNumber("create_date"));
+        JsonObject deliveries = json.getJsonObject("deliveries");
+        Assert.assertEquals(1, deliveries.getJsonNumber("sent").longValue());
+        Assert.assertEquals(0, deliveries.getJsonNumber("pending").longValue());
+
+        // Create a webhook to a missing endpoint
+        target().path("/webhook").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .put(Entity.form(new Form()
+                        .param("event", "DOCUMENT_UPDATED")
+                        .param("url", "http://localhost:" + getPort() + "/docs/thirdpartywebhook/missing")), JsonObject.class);
+
+        // Update the document
+        target().path("/document/" + document1Id).request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, webhook1Token)
+                .post(Entity.form(new Form()
+                        .param("title", "Webhook document 1 updated")
+                        .param("language", "eng")), JsonObject.class);
+
+        // The failed delivery is waiting to be retried
+        json = target().path("/webhook")
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .get(JsonObject.class);
+        deliveries = json.getJsonObject("deliveries");
+        Assert.assertEquals(1, deliveries.getJsonNumber("sent").longValue());
+        Assert.assertEquals(1, deliveries.getJsonNumber("pending").longValue());
+        Assert.assertEquals(1, deliveries.getJsonNumber("retried").longValue());
+        webhooks = json.getJsonArray("webhooks");
+        for (int i = 0; i < webhooks.size(); i++) {
+            if ("DOCUMENT_UPDATED".equals(webhooks.getJsonObject(i).getString("event"))) {
+                target().path("/webhook/" + webhooks.getJsonObject(i).getString("id")).request()
+                        .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                        .delete(JsonObject.class);
+            }
+        }
 
         // Delete a webhook
         target().path("/webhook/" + webhookId).request()
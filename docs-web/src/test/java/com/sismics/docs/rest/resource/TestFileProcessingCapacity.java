@@ -0,0 +1,59 @@
+package com.sismics.docs.rest.resource;
+
+import com.sismics.docs.core.constant.FileProcessingPriority;
+import com.sismics.docs.core.service.FileProcessingService;
+import org.junit.Assert;
+import org.junit.Test;
+
+import jakarta.ws.rs.ServiceUnavailableException;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test of the admission of new files for processing.
+ *
+ * @author bgamard
+ */
+public class TestFileProcessingCapacity {
+    @Test
+    public void testQueueFull() throws Exception {
+        FileProcessingService fileProcessingService = new FileProcessingService(1, 1);
+        fileProcessingService.startAsync().awaitRunning();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // Keep the only thread busy, then fill the bulk queue
+            fileProcessingService.submit(FileProcessingPriority.BULK, () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // NOP
+                }
+            });
+            Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+            fileProcessingService.submit(FileProcessingPriority.BULK, () -> {});
+
+            // New bulk files are refused with a retry delay
+            try {
+                BaseResource.checkFileProcessingCapacity(fileProcessingService, FileProcessingPriority.BULK);
+                Assert.fail();
+            } catch (ServiceUnavailableException e) {
+                Response response = e.getResponse();
+                Assert.assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), response.getStatus());
+                Assert.assertEquals("60", response.getHeaderString(HttpHeaders.RETRY_AFTER));
+            }
+
+            // Interactive files are still accepted
+            BaseResource.checkFileProcessingCapacity(fileProcessingService, FileProcessingPriority.INTERACTIVE);
+        } finally {
+            release.countDown();
+            fileProcessingService.stopAsync().awaitTerminated();
+        }
+
+        // Bulk files are accepted again once processed
+        BaseResource.checkFileProcessingCapacity(fileProcessingService, FileProcessingPriority.BULK);
+    }
+}
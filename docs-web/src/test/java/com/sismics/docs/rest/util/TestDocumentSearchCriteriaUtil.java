@@ -489,4 +489,14 @@ public class TestDocumentSearchCriteriaUtil extends BaseTransactionalTest {
         Assert.assertTrue(documentCriteria.getActiveRoute());
     }
 
+    @Test
+    public void testHasTagCriteria() {
+        Assert.assertFalse(DocumentSearchCriteriaUtil.hasTagCriteria(null, null, null));
+        Assert.assertFalse(DocumentSearchCriteriaUtil.hasTagCriteria("title:tag lang:fra tag", null, null));
+        Assert.assertTrue(DocumentSearchCriteriaUtil.hasTagCriteria("lang:fra tag:assurance", null, null));
+        Assert.assertTrue(DocumentSearchCriteriaUtil.hasTagCriteria("!tag:assurance", null, null));
+        Assert.assertTrue(DocumentSearchCriteriaUtil.hasTagCriteria(null, "assurance", null));
+        Assert.assertTrue(DocumentSearchCriteriaUtil.hasTagCriteria(null, null, "assurance"));
+    }
+
 }